@@ -0,0 +1,131 @@
+package com.glacio.nomad.benchmarks;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a server for the shop code to run outside Minecraft:
+ * item meta that remembers its name and lore, and inventories backed by an
+ * array. Every other server method returns a default value.
+ */
+final class BenchServer {
+
+    private static final Logger LOGGER = Logger.getLogger("NomadBench");
+
+    private BenchServer() {
+    }
+
+    static synchronized void install() {
+        if (Bukkit.getServer() != null) {
+            return;
+        }
+        ItemFactory itemFactory = proxy(ItemFactory.class, (self, method, args) -> switch (method.getName()) {
+            case "getItemMeta" -> newMeta(new HashMap<>());
+            case "isApplicable" -> true;
+            case "asMetaFor" -> args[0];
+            case "updateMaterial" -> args[1];
+            case "equals" -> args.length == 2 ? args[0] == args[1] : self == args[0];
+            default -> defaultValue(self, method, args);
+        });
+        Server server = proxy(Server.class, (self, method, args) -> switch (method.getName()) {
+            case "getLogger" -> LOGGER;
+            case "getName", "getVersion", "getBukkitVersion" -> "bench";
+            case "getItemFactory" -> itemFactory;
+            case "createInventory" -> newInventory((InventoryHolder) args[0], args[1] instanceof Integer size ? size : 27);
+            default -> defaultValue(self, method, args);
+        });
+        Bukkit.setServer(server);
+    }
+
+    // Meta state is a property map keyed by the getter/setter suffix, e.g. "DisplayName"
+    private static ItemMeta newMeta(Map<String, Object> properties) {
+        return proxy(ItemMeta.class, (self, method, args) -> {
+            String name = method.getName();
+            if (name.equals("clone")) {
+                return newMeta(new HashMap<>(properties));
+            }
+            if (name.startsWith("set") && args != null && args.length == 1) {
+                properties.put(name.substring(3), args[0]);
+                return null;
+            }
+            if (name.startsWith("get") && (args == null || args.length == 0) && properties.containsKey(name.substring(3))) {
+                return properties.get(name.substring(3));
+            }
+            if (name.startsWith("has") && (args == null || args.length == 0)) {
+                return properties.containsKey(name.substring(3));
+            }
+            return defaultValue(self, method, args);
+        });
+    }
+
+    private static Inventory newInventory(InventoryHolder holder, int size) {
+        ItemStack[] slots = new ItemStack[size];
+        return proxy(Inventory.class, (self, method, args) -> switch (method.getName()) {
+            case "getSize" -> size;
+            case "getHolder" -> holder;
+            case "getContents", "getStorageContents" -> slots.clone();
+            case "getItem" -> slots[(Integer) args[0]];
+            case "setItem" -> {
+                // The server copies stacks on the way in, so do the same
+                ItemStack stack = (ItemStack) args[1];
+                slots[(Integer) args[0]] = stack == null ? null : stack.clone();
+                yield null;
+            }
+            case "setContents", "setStorageContents" -> {
+                ItemStack[] items = (ItemStack[]) args[0];
+                for (int i = 0; i < size; i++) {
+                    ItemStack stack = i < items.length ? items[i] : null;
+                    slots[i] = stack == null ? null : stack.clone();
+                }
+                yield null;
+            }
+            default -> defaultValue(self, method, args);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BenchServer.class.getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object defaultValue(Object self, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return args != null && args.length == 1 && self == args[0];
+            case "hashCode":
+                return System.identityHashCode(self);
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "@bench";
+            default:
+                break;
+        }
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0.0;
+        if (type == float.class) return 0.0f;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return '\0';
+        return null;
+    }
+
+    static Material[] itemMaterials() {
+        return new Material[] {Material.DIAMOND, Material.EMERALD, Material.GOLDEN_APPLE, Material.IRON_INGOT,
+            Material.GOLD_INGOT, Material.NETHERITE_INGOT, Material.ENCHANTED_GOLDEN_APPLE, Material.BREAD};
+    }
+}
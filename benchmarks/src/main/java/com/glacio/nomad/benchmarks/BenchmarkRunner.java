@@ -0,0 +1,37 @@
+package com.glacio.nomad.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, writing JSON results
+ * to results/nomad-&lt;version&gt;.json unless -rf/-rff say otherwise, so runs
+ * of different releases can be compared side by side.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+            if (!commandLine.getResult().hasValue()) {
+                String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+                File results = new File("results");
+                results.mkdirs();
+                options.result(new File(results, "nomad-" + (version != null ? version : "dev") + ".json").getPath());
+            }
+        }
+
+        new Runner(options.build()).run();
+    }
+}
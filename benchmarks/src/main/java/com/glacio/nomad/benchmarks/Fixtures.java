@@ -0,0 +1,47 @@
+package com.glacio.nomad.benchmarks;
+
+import com.glacio.nomad.database.DatabaseManager;
+import com.glacio.nomad.metrics.MetricsRegistry;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/** Shared setup: a quiet logger and a throwaway SQLite database. */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    // Per-purchase logging and the expected queue-full warnings would otherwise flood the output
+    static Logger quietLogger() {
+        Logger logger = Logger.getLogger("NomadBench.quiet");
+        logger.setLevel(Level.SEVERE);
+        return logger;
+    }
+
+    static DatabaseManager openDatabase(Path dataFolder, YamlConfiguration config) {
+        DatabaseManager database = new DatabaseManager(dataFolder.toFile(), config, "bench", quietLogger(),
+            new MetricsRegistry());
+        if (!database.connect()) {
+            throw new IllegalStateException("Could not open the benchmark database in " + dataFolder);
+        }
+        return database;
+    }
+
+    static void deleteTree(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
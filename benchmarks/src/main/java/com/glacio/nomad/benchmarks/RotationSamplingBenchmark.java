@@ -0,0 +1,93 @@
+package com.glacio.nomad.benchmarks;
+
+import com.glacio.nomad.pool.ItemPool;
+import com.glacio.nomad.pool.PoolEntry;
+import com.glacio.nomad.rotation.WeightedSampler;
+import com.glacio.nomad.shop.ShopCatalog;
+import org.bukkit.Material;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * The selection step of {@code refreshDailyItems} as the item pool grows:
+ * drawing the daily items, building the sampler after the pool changed, and
+ * the full draw plus menu compile that a rotation performs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RotationSamplingBenchmark {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int poolSize;
+
+    @Param({"false", "true"})
+    public boolean weighted;
+
+    @Param({"5"})
+    public int dailyItemCount;
+
+    private ItemPool pool;
+    private double[] weights;
+    private Logger logger;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchServer.install();
+        logger = Fixtures.quietLogger();
+
+        Material[] materials = BenchServer.itemMaterials();
+        SplittableRandom random = new SplittableRandom(42);
+        List<PoolEntry> entries = new ArrayList<>(poolSize);
+        weights = new double[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            double weight = weighted ? 0.1 + random.nextDouble(10.0) : 1.0;
+            weights[i] = weight;
+            entries.add(new PoolEntry(i + 1, materials[i % materials.length].name(), "&bItem " + i,
+                1.0 + i % 200, weight, PoolEntry.UNLIMITED, 0));
+        }
+        pool = new ItemPool(entries, poolSize + 1);
+        // Warm the pool's cached sampler, as a running server would have
+        pool.sample(dailyItemCount, 0L);
+    }
+
+    @Benchmark
+    public List<PoolEntry> sample() {
+        return pool.sample(dailyItemCount, seed++);
+    }
+
+    @Benchmark
+    public WeightedSampler buildSampler() {
+        return new WeightedSampler(weights);
+    }
+
+    @Benchmark
+    public ShopCatalog sampleAndCompile() {
+        List<Map<String, Object>> items = new ArrayList<>(dailyItemCount);
+        for (PoolEntry entry : pool.sample(dailyItemCount, seed++)) {
+            items.add(entry.toItemData());
+        }
+        return ShopCatalog.compile(1, items, 27, ShopCatalog.DEFAULT_SLOTS, logger);
+    }
+}
@@ -0,0 +1,103 @@
+package com.glacio.nomad.benchmarks;
+
+import com.glacio.nomad.shop.ShopCatalog;
+import com.glacio.nomad.shop.ShopItem;
+import com.glacio.nomad.shop.ShopMenuHolder;
+import com.glacio.nomad.shop.StockLedger;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Menu work done on the main thread: building the shop inventory the way
+ * {@code openMerchantMenu} does, compiling a rotation into a catalog, and
+ * the slot lookup the click handler performs on every click.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopMenuBenchmark {
+
+    // Limited items get their icon rebuilt from the ledger on every open
+    @Param({"false", "true"})
+    public boolean limitedStock;
+
+    private List<Map<String, Object>> dailyItems;
+    private ShopCatalog catalog;
+    private StockLedger ledger;
+    private UUID viewer;
+    private int slot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchServer.install();
+        Material[] materials = BenchServer.itemMaterials();
+        dailyItems = new ArrayList<>();
+        for (int i = 0; i < ShopCatalog.DEFAULT_SLOTS.length; i++) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("material", materials[i % materials.length].name());
+            data.put("name", "&bDaily Item " + i);
+            data.put("price", 25.0 * (i + 1));
+            if (limitedStock) {
+                data.put("stock", 64);
+                data.put("player-limit", 16);
+            }
+            dailyItems.add(data);
+        }
+        catalog = compile();
+        ledger = StockLedger.forCatalog(1L, catalog);
+        viewer = UUID.randomUUID();
+    }
+
+    private ShopCatalog compile() {
+        return ShopCatalog.compile(1, dailyItems, 27, ShopCatalog.DEFAULT_SLOTS, Fixtures.quietLogger());
+    }
+
+    @Benchmark
+    public Inventory openMenu() {
+        ShopMenuHolder holder = new ShopMenuHolder(viewer, 0, catalog, ledger);
+        Inventory inventory = Bukkit.createInventory(holder, catalog.getSize(), "Nomad Merchant");
+        holder.setInventory(inventory);
+        inventory.setContents(catalog.contents(ledger));
+        return inventory;
+    }
+
+    @Benchmark
+    public ShopCatalog compileCatalog() {
+        return compile();
+    }
+
+    @Benchmark
+    public void clickLookup(Blackhole blackhole) {
+        // Walks every slot so hits and misses are both measured
+        int rawSlot = slot++ % catalog.getSize();
+        ShopItem item = catalog.itemAt(rawSlot);
+        blackhole.consume(item);
+        if (item != null) {
+            blackhole.consume(ledger.available(item.index(), viewer));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.glacio.nomad.benchmarks;
+
+import com.glacio.nomad.database.DatabaseManager;
+import com.glacio.nomad.database.Leaderboard;
+import com.glacio.nomad.database.PlayerStats;
+import com.glacio.nomad.database.PurchaseCursor;
+import com.glacio.nomad.database.PurchasePage;
+import com.glacio.nomad.database.TopItem;
+import com.glacio.nomad.database.TopSpender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries behind each {@code /nomad stats} view, against a purchases
+ * table of the given size. Rows are spread over {@code rows / 50} players,
+ * so a history lookup sees about 50 purchases per player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsQueryBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+    private static final String[] MATERIALS = {"DIAMOND", "EMERALD", "GOLDEN_APPLE", "IRON_INGOT", "GOLD_INGOT",
+        "NETHERITE_INGOT", "ENCHANTED_GOLDEN_APPLE", "BREAD", "COAL", "REDSTONE"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path dataFolder;
+    private DatabaseManager database;
+    private UUID[] players;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        dataFolder = Files.createTempDirectory("nomad-bench-stats");
+        database = Fixtures.openDatabase(dataFolder, new YamlConfiguration());
+
+        players = new UUID[Math.max(1, rows / 50)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+        populate();
+        // player_stats and item_popularity are derived from purchases
+        database.rebuildAggregates().join();
+        random = new SplittableRandom(7);
+    }
+
+    // Bulk load through a separate connection; the journal path is measured by PurchaseRecordingBenchmark
+    private void populate() throws SQLException {
+        String insert = """
+            INSERT INTO purchases (player_uuid, player_name, item_material, item_name, price, quantity,
+                                   purchase_date, purchased_at, server_name)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+        String url = "jdbc:sqlite:" + dataFolder.resolve("database.db").toAbsolutePath();
+        long start = System.currentTimeMillis() - rows * 60_000L;
+        SplittableRandom random = new SplittableRandom(1);
+        try (Connection connection = DriverManager.getConnection(url);
+             PreparedStatement pstmt = connection.prepareStatement(insert)) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < rows; i++) {
+                int player = random.nextInt(players.length);
+                String material = MATERIALS[random.nextInt(MATERIALS.length)];
+                int quantity = random.nextInt(10) == 0 ? 64 : 1;
+                long purchasedAt = start + i * 60_000L;
+                pstmt.setString(1, players[player].toString());
+                pstmt.setString(2, "Player" + player);
+                pstmt.setString(3, material);
+                pstmt.setString(4, material);
+                pstmt.setDouble(5, 10.0 * quantity);
+                pstmt.setInt(6, quantity);
+                pstmt.setString(7, LocalDateTime.ofInstant(Instant.ofEpochMilli(purchasedAt), ZoneId.systemDefault()).toString());
+                pstmt.setLong(8, purchasedAt);
+                pstmt.setString(9, "bench");
+                pstmt.addBatch();
+                if (i % 10_000 == 9_999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            connection.commit();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.disconnect();
+        Fixtures.deleteTree(dataFolder);
+    }
+
+    private UUID anyPlayer() {
+        return players[random.nextInt(players.length)];
+    }
+
+    @Benchmark
+    public PurchasePage historyFirstPage() throws SQLException {
+        return database.getPlayerPurchases(anyPlayer(), null, PAGE_SIZE);
+    }
+
+    // Jumping straight to page 5 walks the earlier pages by keyset, as StatsCommand does
+    @Benchmark
+    public PurchasePage historyFifthPage() throws SQLException {
+        UUID player = anyPlayer();
+        PurchaseCursor cursor = null;
+        PurchasePage page = database.getPlayerPurchases(player, null, PAGE_SIZE);
+        for (int i = 1; i < 5 && page.hasNext(); i++) {
+            cursor = page.next();
+            page = database.getPlayerPurchases(player, cursor, PAGE_SIZE);
+        }
+        return page;
+    }
+
+    @Benchmark
+    public PlayerStats playerStats() throws SQLException {
+        return database.getPlayerStats(anyPlayer());
+    }
+
+    // Served from the in-memory leaderboards
+    @Benchmark
+    public List<TopSpender> topSpenders() {
+        return database.getTopSpenders(10);
+    }
+
+    @Benchmark
+    public List<TopItem> topItems() {
+        return database.getTopItems(10);
+    }
+
+    @Benchmark
+    public Leaderboard.Rank spenderRank() {
+        return database.getSpenderRank(anyPlayer());
+    }
+}
@@ -8,35 +8,107 @@ import org.bukkit.Sound;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.IllegalPluginAccessException;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 import com.glacio.nomad.database.DatabaseManager;
+import com.glacio.nomad.database.PlayerSession;
 import com.glacio.nomad.commands.StatsCommand;
+import com.glacio.nomad.rotation.RefreshSchedule;
+import com.glacio.nomad.rotation.RotationState;
+import com.glacio.nomad.rotation.RotationStateStore;
+import com.glacio.nomad.commands.PoolCommand;
+import com.glacio.nomad.pool.ItemPool;
+import com.glacio.nomad.pool.ItemPoolStore;
+import com.glacio.nomad.pool.PoolEntry;
+import com.glacio.nomad.pricing.DynamicPricing;
+import com.glacio.nomad.pricing.PricingSettings;
+import com.glacio.nomad.shop.ShopCatalog;
+import com.glacio.nomad.shop.ShopItem;
+import com.glacio.nomad.shop.ShopMenuHolder;
+import com.glacio.nomad.shop.QuantityMenuHolder;
+import com.glacio.nomad.shop.PurchasePipeline;
+import com.glacio.nomad.shop.ShopViews;
+import com.glacio.nomad.shop.StockLedger;
+import com.glacio.nomad.shop.StockStore;
+import com.glacio.nomad.io.AtomicFileWriter;
+import com.glacio.nomad.metrics.LatencyHistogram;
+import com.glacio.nomad.metrics.MetricsHttpServer;
+import com.glacio.nomad.metrics.MetricsRegistry;
+import com.glacio.nomad.metrics.PrometheusFormat;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 
 public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
 
+    // Tick delays drift when the server lags, so long waits are split and re-checked against the clock
+    private static final long MAX_TIMER_DELAY_TICKS = 20L * 60 * 5;
+    private static final long STARTUP_JOIN_TIMEOUT_MS = 10_000L;
+    private static final DateTimeFormatter CLOCK_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
     private List<Map<String, Object>> currentDailyItems = new ArrayList<>();
-    private String menuTitle;
+    private volatile ShopCatalog catalog = ShopCatalog.empty();
+    private volatile NomadSettings settings;
     private static Economy econ = null;
-    private BukkitRunnable refreshScheduler;
+    private BukkitTask refreshTimer;
+    private volatile Instant lastRefreshAt;
+    private volatile Instant nextRefreshAt;
+    private long rotationSeed;
+    // From /nomad settime, kept in rotation-state.yml; 0 = config.yml's interval
+    private int refreshIntervalOverride;
+    private RotationStateStore rotationStore;
+    private ItemPool itemPool;
+    private ItemPoolStore poolStore;
+    private PoolCommand poolCommand;
+    private volatile StockLedger stockLedger;
+    private StockStore stockStore;
+    private ShopViews shopViews;
+    private BukkitTask stockSaveTask;
+    private PurchasePipeline purchasePipeline;
     private DatabaseManager databaseManager;
     private StatsCommand statsCommand;
+    private DynamicPricing pricing;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram clickTimes = metrics.histogram("nomad_click_seconds", "Main-thread time handling a click in a Nomad menu");
+    private final LatencyHistogram menuOpenTimes = metrics.histogram("nomad_menu_open_seconds", "Time to build and open the shop menu");
+    private final LatencyHistogram refreshTimes = metrics.histogram("nomad_refresh_seconds", "Time to roll a new rotation");
+    private AtomicFileWriter metricsFileWriter;
+    private BukkitTask metricsFileTask;
+    private MetricsHttpServer metricsHttpServer;
+    private volatile StartupStage startupStage = StartupStage.ROTATION;
+    private volatile boolean disabling;
+    private Thread startupThread;
 
     @Override
     public void onEnable() {
         getLogger().info("=== Starting Nomad v" + getDescription().getVersion() + " ===");
+        long enableStart = System.nanoTime();
         
         try {
             // Save default config if it doesn't exist
@@ -48,6 +120,14 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
             try {
                 loadConfigData();
                 getLogger().info("Configuration loaded successfully!");
+            } catch (SettingsException e) {
+                getLogger().severe("Failed to load configuration!");
+                for (String problem : e.getProblems()) {
+                    getLogger().severe(" - " + problem);
+                }
+                getLogger().severe("Disabling plugin due to configuration error!");
+                getServer().getPluginManager().disablePlugin(this);
+                return;
             } catch (Exception e) {
                 getLogger().severe("Failed to load configuration! " + e.getMessage());
                 getLogger().severe("Disabling plugin due to configuration error!");
@@ -55,12 +135,17 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
                 return;
             }
             
+            shopViews = new ShopViews(this, this::unitsBought);
+            
             // Setup economy (Vault)
             getLogger().info("Setting up Vault economy...");
             if (!setupEconomy()) {
                 getLogger().warning("Vault or an economy plugin was not found. Purchase features will be disabled.");
             } else {
-                getLogger().info("Vault economy integration successful!");
+                purchasePipeline = new PurchasePipeline(this, econ, shopViews,
+                    settings.isAsyncEconomy(), settings.getEconomyThreads());
+                getLogger().info("Vault economy integration successful!"
+                    + (settings.isAsyncEconomy() ? " Economy calls run off the main thread." : ""));
             }
 
             // Register command
@@ -87,34 +172,16 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
                 return;
             }
 
-            // Start scheduler
-            getLogger().info("Starting scheduler...");
-            try {
-                startRefreshScheduler();
-                getLogger().info("Scheduler started successfully!");
-            } catch (Exception e) {
-                getLogger().severe("Failed to start scheduler: " + e.getMessage());
-                e.printStackTrace();
-                // Don't disable the plugin for scheduler errors
-            }
+            databaseManager = new DatabaseManager(this);
+            startMetricsExport();
             
-            // Initialize database
-            getLogger().info("Initializing database...");
-            try {
-                databaseManager = new DatabaseManager(this);
-                if (databaseManager.connect()) {
-                    getLogger().info("Database initialized successfully!");
-                    statsCommand = new StatsCommand(this, databaseManager);
-                } else {
-                    getLogger().warning("Database initialization failed, continuing without database features.");
-                }
-            } catch (Exception e) {
-                getLogger().severe("Failed to initialize database: " + e.getMessage());
-                e.printStackTrace();
-                // Don't disable the plugin for database errors
-            }
+            // Files and the database load in the background; commands report the stage until it is done
+            startupThread = new Thread(this::runStartup, "Nomad-Startup");
+            startupThread.setDaemon(true);
+            startupThread.start();
             
-            getLogger().info("Nomad plugin has been enabled successfully!");
+            getLogger().info("Nomad plugin has been enabled in " + millis(System.nanoTime() - enableStart)
+                + ", warming up in the background...");
         } catch (Exception e) {
             getLogger().severe("Failed to enable Nomad plugin: " + e.getMessage());
             e.printStackTrace();
@@ -122,6 +189,113 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
         }
     }
 
+    /**
+     * The slow part of startup, on its own thread: rotation files, then the
+     * database (migrations, archive index, leaderboards), then statement
+     * preparation. Bukkit-side wiring is finished on the server thread.
+     */
+    private void runStartup() {
+        long startupStart = System.nanoTime();
+        long stageStart = startupStart;
+        if (settings.getPricing().enabled()) {
+            pricing = new DynamicPricing(settings.getPricing(), getDataFolder().toPath().resolve("price-history.bin"),
+                metrics, getLogger());
+            pricing.load();
+        }
+        try {
+            loadRotation();
+        } catch (Exception e) {
+            getLogger().log(Level.SEVERE, "Failed to load the item pool and rotation, disabling Nomad", e);
+            onServerThread(() -> getServer().getPluginManager().disablePlugin(this));
+            return;
+        }
+        stageStart = advance(StartupStage.DATABASE, stageStart);
+        if (disabling) {
+            return;
+        }
+
+        getLogger().info("Initializing database...");
+        boolean connected = false;
+        try {
+            connected = databaseManager.connect();
+            if (connected) {
+                getLogger().info("Database initialized successfully!");
+            } else {
+                getLogger().warning("Database initialization failed, continuing without database features.");
+            }
+        } catch (Exception e) {
+            getLogger().log(Level.SEVERE, "Failed to initialize database", e);
+            // Don't disable the plugin for database errors
+        }
+        stageStart = advance(StartupStage.STATEMENTS, stageStart);
+        if (disabling) {
+            // onDisable may have given up on this thread and disconnected already
+            if (connected) {
+                databaseManager.disconnect();
+            }
+            return;
+        }
+
+        if (connected) {
+            try {
+                databaseManager.prepareStatements();
+            } catch (SQLException e) {
+                // Only the first queries get slower; they prepare on demand
+                getLogger().warning("Could not prepare stats queries ahead of time: " + e.getMessage());
+            }
+        }
+        boolean databaseReady = connected;
+        long statementsStart = stageStart;
+        onServerThread(() -> finishStartup(databaseReady, startupStart, statementsStart));
+    }
+
+    private void finishStartup(boolean databaseReady, long startupStart, long stageStart) {
+        long saveTicks = 20L * settings.getStockSaveIntervalSeconds();
+        stockSaveTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+            () -> stockStore.saveIfDirty(stockLedger), saveTicks, saveTicks);
+
+        try {
+            startRefreshScheduler();
+        } catch (Exception e) {
+            getLogger().severe("Failed to start scheduler: " + e.getMessage());
+            e.printStackTrace();
+            // Don't disable the plugin for scheduler errors
+        }
+
+        if (pricing != null) {
+            pricing.start(() -> catalog, priced -> onServerThread(() -> publishPrices(priced)));
+        }
+
+        if (databaseReady) {
+            statsCommand = new StatsCommand(this, databaseManager);
+            databaseManager.getSessions().setUpdateListener(player -> onServerThread(() -> shopViews.refresh(player)));
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                databaseManager.loadSession(player.getUniqueId());
+            }
+        }
+        advance(StartupStage.READY, stageStart);
+        getLogger().info("Nomad is ready, startup took " + millis(System.nanoTime() - startupStart) + ".");
+    }
+
+    // Records how long the current stage took and moves on to the next one
+    private long advance(StartupStage next, long stageStart) {
+        metrics.histogram(MetricsRegistry.labeled("nomad_startup_stage_seconds", "stage", startupStage.getMetricName()),
+            "Time spent in each background startup stage").recordSince(stageStart);
+        startupStage = next;
+        return System.nanoTime();
+    }
+
+    private void onServerThread(Runnable task) {
+        if (disabling) {
+            return;
+        }
+        try {
+            Bukkit.getScheduler().runTask(this, task);
+        } catch (IllegalPluginAccessException e) {
+            // Disabled while the startup was running; onDisable cleans up
+        }
+    }
+
     private boolean setupEconomy() {
         if (getServer().getPluginManager().getPlugin("Vault") == null) {
             return false;
@@ -134,76 +308,213 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
         return econ != null;
     }
 
-    private void loadConfigData() {
+    /**
+     * Validates config.yml from disk before anything is applied, so a bad
+     * edit leaves the running settings untouched.
+     */
+    private NomadSettings readSettings() throws SettingsException {
+        File configFile = new File(getDataFolder(), "config.yml");
+        YamlConfiguration fresh = new YamlConfiguration();
+        try {
+            fresh.load(configFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new SettingsException(List.of("config.yml could not be read: " + e.getMessage()));
+        }
+        return NomadSettings.load(fresh);
+    }
+
+    private void loadConfigData() throws SettingsException {
+        NomadSettings loaded = readSettings();
         reloadConfig();
-        menuTitle = ChatColor.translateAlternateColorCodes('&', getConfig().getString("menu-title", "&6Nomad"));
-        
-        String lastRefresh = getConfig().getString("last-refresh-date", "");
-        String today = LocalDate.now().toString();
+        settings = refreshIntervalOverride > 0 ? loaded.withRefreshIntervalMinutes(refreshIntervalOverride) : loaded;
+        if (pricing != null) {
+            pricing.configure(settings.getPricing());
+        }
+
+        // The first load happens on the startup thread, see loadRotation()
+        if (rotationStore != null) {
+            compileCatalog();
+            // Menu slots may have changed which items fit; keep what was already sold
+            stockLedger = stockLedger.carriedOver(catalog);
+        }
+    }
 
-        if (!today.equals(lastRefresh) || getConfig().getList("current-daily-items") == null || getConfig().getList("current-daily-items").isEmpty()) {
-            refreshDailyItems();
-        } else {
-            loadCurrentItemsFromConfig();
+    /** Loads the item pool, the stores and the current rotation. Runs once, on the startup thread. */
+    private void loadRotation() {
+        loadItemPool();
+        rotationStore = new RotationStateStore(new File(getDataFolder(), "rotation-state.yml"), getLogger());
+        stockStore = new StockStore(new File(getDataFolder(), "rotation-stock.yml"), getLogger());
+        restoreRotation();
+    }
+
+    private void loadItemPool() {
+        poolStore = new ItemPoolStore(new File(getDataFolder(), "item-pool.yml"), getLogger());
+        itemPool = poolStore.load();
+        if (itemPool == null) {
+            // First start on this version: seed the pool from config.yml once
+            List<String> problems = new ArrayList<>();
+            itemPool = new ItemPool();
+            itemPool.addAll(ItemPoolStore.parseItemList(getConfig().getMapList("item-pool"), problems));
+            for (String problem : problems) {
+                getLogger().warning("Skipping item-pool " + problem);
+            }
+            poolStore.save(itemPool);
+            getLogger().info("Created item-pool.yml with " + itemPool.size() + " entries from config.yml");
         }
+        poolCommand = new PoolCommand(this, itemPool, poolStore);
     }
 
-    private void loadCurrentItemsFromConfig() {
+    private void restoreRotation() {
+        RotationState state = rotationStore.load();
+        boolean migrated = false;
+        if (state == null) {
+            state = readLegacyRotation();
+            migrated = state != null;
+        }
+
         currentDailyItems.clear();
-        List<?> list = getConfig().getList("current-daily-items");
-        if (list != null) {
-            for (Object obj : list) {
-                if (obj instanceof Map) {
-                    currentDailyItems.add((Map<String, Object>) obj);
-                }
+        lastRefreshAt = null;
+        if (state != null) {
+            currentDailyItems.addAll(state.items());
+            lastRefreshAt = state.refreshedAt() > 0 ? Instant.ofEpochMilli(state.refreshedAt()) : null;
+            rotationSeed = state.seed();
+            refreshIntervalOverride = state.intervalMinutes();
+            if (refreshIntervalOverride > 0) {
+                settings = settings.withRefreshIntervalMinutes(refreshIntervalOverride);
+            }
+        }
+
+        compileCatalog();
+        stockLedger = StockLedger.forCatalog(lastRefreshAt != null ? lastRefreshAt.toEpochMilli() : 0L, catalog);
+        stockStore.restore(stockLedger);
+
+        Instant now = Instant.now();
+        if (currentDailyItems.isEmpty() || settings.getRefreshSchedule().isDue(lastRefreshAt, now)) {
+            refreshDailyItems(settings.getRefreshSchedule().previousBoundary(now));
+        } else if (migrated) {
+            rotationStore.save(state);
+            getLogger().info("Moved rotation state from config.yml to rotation-state.yml");
+        }
+    }
+
+    // Rotation state used to live in config.yml; read it once so upgrades keep the current items
+    private RotationState readLegacyRotation() {
+        List<Map<?, ?>> legacyItems = getConfig().getMapList("current-daily-items");
+        if (legacyItems.isEmpty()) {
+            return null;
+        }
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Map<?, ?> legacy : legacyItems) {
+            Map<String, Object> item = new HashMap<>();
+            for (Map.Entry<?, ?> entry : legacy.entrySet()) {
+                item.put(entry.getKey().toString(), entry.getValue());
+            }
+            items.add(item);
+        }
+
+        long refreshedAt = getConfig().getLong("last-refresh-at", 0L);
+        String legacyDate = getConfig().getString("last-refresh-date", "");
+        if (refreshedAt <= 0 && legacyDate != null && !legacyDate.isEmpty()) {
+            // Only the date was stored; treat it as that day's refresh-hour rotation
+            try {
+                refreshedAt = LocalDate.parse(legacyDate).atTime(settings.getRefreshHour(), 0)
+                    .atZone(settings.getTimezone()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                refreshedAt = 0L;
             }
         }
+        return new RotationState(refreshedAt, 0L, items, 0);
+    }
+    
+    // Rebuilds the menu layout; call whenever currentDailyItems changes
+    private void compileCatalog() {
+        ShopCatalog compiled = ShopCatalog.compile(catalog.getVersion() + 1, currentDailyItems,
+            settings.getMenuSize(), settings.getMenuSlots(), getLogger());
+        catalog = pricing != null ? compiled.withPrices(pricing.prices(compiled.getItems())) : compiled;
     }
 
-    private void refreshDailyItems() {
-        List<Map<?, ?>> pool = getConfig().getMapList("item-pool");
-        if (pool.isEmpty()) return;
+    // New dynamic prices for the rotation they were computed from; a newer rotation prices itself
+    private void publishPrices(ShopCatalog priced) {
+        if (priced.getVersion() != catalog.getVersion()) {
+            return;
+        }
+        catalog = priced;
+        shopViews.repriced(priced);
+    }
 
-        List<Map<?, ?>> shuffledPool = new ArrayList<>(pool);
-        Collections.shuffle(shuffledPool, new Random());
+    /**
+     * Rolls a new rotation. The picks depend only on the pool and the seed
+     * derived from {@code rotationAt}, so a logged rotation can be replayed.
+     */
+    private void refreshDailyItems(Instant rotationAt) {
+        if (itemPool.isEmpty()) {
+            getLogger().warning("The item pool is empty, keeping the current daily items");
+            return;
+        }
 
+        long start = System.nanoTime();
+        long seed = settings.getRefreshSchedule().seedFor(rotationAt);
         currentDailyItems.clear();
-        int count = getConfig().getInt("daily-item-count", 5);
-        int itemsToAdd = Math.min(count, shuffledPool.size());
-        
-        for (int i = 0; i < itemsToAdd; i++) {
-            Map<String, Object> itemData = new HashMap<>();
-            Map<?, ?> source = shuffledPool.get(i);
-            for (Map.Entry<?, ?> entry : source.entrySet()) {
-                itemData.put(entry.getKey().toString(), entry.getValue());
-            }
-            currentDailyItems.add(itemData);
+        for (PoolEntry entry : itemPool.sample(settings.getDailyItemCount(), seed)) {
+            currentDailyItems.add(entry.toItemData());
         }
+        compileCatalog();
+
+        lastRefreshAt = Instant.now();
+        rotationSeed = seed;
+        stockLedger = StockLedger.forCatalog(lastRefreshAt.toEpochMilli(), catalog);
+        stockStore.saveIfDirty(stockLedger);
+        saveRotationState();
+        refreshTimes.recordSince(start);
+        getLogger().info("Daily items rotated (seed " + Long.toHexString(seed) + ", " + currentDailyItems.size()
+            + " of " + itemPool.size() + " pool entries)");
+    }
 
-        getConfig().set("current-daily-items", currentDailyItems);
-        getConfig().set("last-refresh-date", LocalDate.now().toString());
-        saveConfig();
+    private void saveRotationState() {
+        rotationStore.save(new RotationState(lastRefreshAt != null ? lastRefreshAt.toEpochMilli() : 0L, rotationSeed,
+            currentDailyItems, refreshIntervalOverride));
     }
 
+    /**
+     * Computes the next rotation deadline and arms a single task for it,
+     * refreshing first if a rotation was missed. Call again whenever the
+     * refresh settings change.
+     */
     private void startRefreshScheduler() {
-        if (refreshScheduler != null) {
-            refreshScheduler.cancel();
+        cancelRefreshTimer();
+
+        Instant now = Instant.now();
+        RefreshSchedule schedule = settings.getRefreshSchedule();
+        if (schedule.isDue(lastRefreshAt, now)) {
+            refreshDailyItems(schedule.previousBoundary(now));
+        }
+        nextRefreshAt = schedule.nextBoundary(now);
+        armRefreshTimer();
+    }
+
+    private void armRefreshTimer() {
+        long millis = Duration.between(Instant.now(), nextRefreshAt).toMillis();
+        long ticks = Math.min(MAX_TIMER_DELAY_TICKS, Math.max(1L, (millis + 49) / 50));
+        refreshTimer = Bukkit.getScheduler().runTaskLater(this, this::onRefreshTimer, ticks);
+    }
+
+    private void onRefreshTimer() {
+        refreshTimer = null;
+        Instant now = Instant.now();
+        if (now.isBefore(nextRefreshAt)) {
+            armRefreshTimer();
+            return;
+        }
+        refreshDailyItems(nextRefreshAt);
+        nextRefreshAt = settings.getRefreshSchedule().nextBoundary(now);
+        armRefreshTimer();
+    }
+
+    private void cancelRefreshTimer() {
+        if (refreshTimer != null) {
+            refreshTimer.cancel();
+            refreshTimer = null;
         }
-        
-        refreshScheduler = new BukkitRunnable() {
-            @Override
-            public void run() {
-                int refreshHour = getConfig().getInt("refresh-hour", 18);
-                LocalTime now = LocalTime.now();
-                String lastRefresh = getConfig().getString("last-refresh-date", "");
-                String today = LocalDate.now().toString();
-
-                if (now.getHour() >= refreshHour && !today.equals(lastRefresh)) {
-                    refreshDailyItems();
-                }
-            }
-        };
-        refreshScheduler.runTaskTimer(this, 20L * 30, 20L * 60);
     }
 
     @Override
@@ -214,12 +525,19 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
         }
 
         String subCommand = args[0].toLowerCase();
-        String permission = getConfig().getString("permissions." + subCommand, "nomad.use");
+        String permission = settings.getPermission(subCommand);
         
         if (!sender.hasPermission(permission)) {
             sender.sendMessage(ChatColor.RED + "Bu komutu kullanmak için yetkiniz yok!");
             return true;
         }
+        
+        StartupStage stage = startupStage;
+        if (stage != StartupStage.READY && !subCommand.equals("help") && !subCommand.equals("metrics")) {
+            sender.sendMessage(ChatColor.YELLOW + "Nomad hâlâ başlatılıyor (" + stage.getDescription()
+                + "), lütfen birkaç saniye bekleyin.");
+            return true;
+        }
 
         switch (subCommand) {
             case "reload":
@@ -231,9 +549,12 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
             case "settime":
                 return handleSetTime(sender, args);
             case "pool":
-                return handlePool(sender, args);
+                String[] poolArgs = Arrays.copyOfRange(args, 1, args.length);
+                return poolCommand.handlePool(sender, poolArgs);
             case "when":
                 return handleWhen(sender);
+            case "metrics":
+                return handleMetrics(sender);
             case "shop":
                 if (sender instanceof Player) {
                     openMerchantMenu((Player) sender);
@@ -256,119 +577,162 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
     }
 
     private void openMerchantMenu(Player player) {
-        int size = 27;
-        Inventory inv = Bukkit.createInventory(null, size, menuTitle);
-        int[] slots = {11, 12, 13, 14, 15, 10, 16}; 
-        
-        for (int i = 0; i < Math.min(currentDailyItems.size(), slots.length); i++) {
-            Map<String, Object> data = currentDailyItems.get(i);
-            try {
-                Material mat = Material.valueOf((String) data.get("material"));
-                ItemStack item = new ItemStack(mat);
-                ItemMeta meta = item.getItemMeta();
-
-                if (meta != null) {
-                    String name = (String) data.get("name");
-                    if (name != null) meta.setDisplayName(ChatColor.translateAlternateColorCodes('&', name));
-
-                    List<String> lore = new ArrayList<>();
-                    lore.add("");
-                    lore.add(ChatColor.GRAY + "Fiyat: " + ChatColor.GOLD + data.get("price") + " Para");
-                    lore.add("");
-                    lore.add(ChatColor.YELLOW + "Satın almak için tıklayın!");
-                    meta.setLore(lore);
-                    item.setItemMeta(meta);
-                }
-                inv.setItem(slots[i], item);
-            } catch (Exception ignored) {}
-        }
+        long start = System.nanoTime();
+        ShopCatalog current = catalog;
+        StockLedger ledger = stockLedger;
+        ShopMenuHolder holder = new ShopMenuHolder(player.getUniqueId(), 0, current, ledger);
+        Inventory inv = Bukkit.createInventory(holder, current.getSize(), settings.getMenuTitle());
+        holder.setInventory(inv);
+        inv.setContents(shopViews.contents(holder));
         player.openInventory(inv);
+        shopViews.opened(holder);
         
         // Play sound effect when menu opens
-        try {
-            String soundName = getConfig().getString("sounds.open-menu", "BLOCK_CHEST_OPEN");
-            Sound sound = Sound.valueOf(soundName);
+        playSound(player, settings.getOpenMenuSound());
+        menuOpenTimes.recordSince(start);
+    }
+
+    private void playSound(Player player, Sound sound) {
+        if (sound != null) {
             player.playSound(player.getLocation(), sound, 1.0f, 1.0f);
-        } catch (Exception e) {
-            if (getConfig().getBoolean("debug", false)) {
-                getLogger().warning("Failed to play open-menu sound: " + e.getMessage());
-            }
         }
     }
 
-    @EventHandler
+    // LOW so the click is already cancelled when other plugins see it
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
-        if (!event.getView().getTitle().equals(menuTitle)) return;
+        InventoryHolder menu = event.getInventory().getHolder();
+        if (!(menu instanceof ShopMenuHolder) && !(menu instanceof QuantityMenuHolder)) return;
+        long start = System.nanoTime();
+        try {
+            if (menu instanceof QuantityMenuHolder quantityMenu) {
+                event.setCancelled(true);
+                if (event.getWhoClicked() instanceof Player player) {
+                    onQuantityClick(player, quantityMenu, event.getRawSlot());
+                }
+            } else {
+                onShopClick(event, (ShopMenuHolder) menu);
+            }
+        } finally {
+            clickTimes.recordSince(start);
+        }
+    }
+
+    private void onShopClick(InventoryClickEvent event, ShopMenuHolder holder) {
         event.setCancelled(true);
         
         if (event.getCurrentItem() == null || event.getCurrentItem().getType() == Material.AIR) return;
+        if (!(event.getWhoClicked() instanceof Player player)) return;
         
-        Player player = (Player) event.getWhoClicked();
-        int slot = event.getRawSlot();
+        ShopItem shopItem = holder.getCatalog().itemAt(event.getRawSlot());
+        if (shopItem == null) return;
         
-        int[] slots = {11, 12, 13, 14, 15, 10, 16};
-        int itemIndex = -1;
-        for (int i = 0; i < slots.length; i++) {
-            if (slots[i] == slot) {
-                itemIndex = i;
-                break;
-            }
-        }
+        if (isOutdated(player, holder.getRotationVersion())) return;
         
-        if (itemIndex == -1 || itemIndex >= currentDailyItems.size()) return;
+        if (purchasePipeline == null) {
+            player.sendMessage(ChatColor.RED + "Ekonomi sistemi bagli degil!");
+            return;
+        }
         
-        Map<String, Object> itemData = currentDailyItems.get(itemIndex);
-        double price = Double.parseDouble(itemData.get("price").toString());
-        Material mat = Material.valueOf((String) itemData.get("material"));
+        if (event.isRightClick() && !event.isShiftClick()) {
+            Inventory selector = QuantityMenuHolder.create(holder.getCatalog(), holder.getLedger(), shopItem);
+            Bukkit.getScheduler().runTask(this, () -> {
+                if (player.isOnline()) player.openInventory(selector);
+            });
+            return;
+        }
         
-        if (econ == null) {
+        int quantity = 1;
+        if (event.isShiftClick()) {
+            // One stack, or whatever is left of it; sold-out items still go through to report why
+            int available = holder.getLedger().available(shopItem.index(), player.getUniqueId());
+            quantity = Math.max(1, Math.min(shopItem.material().getMaxStackSize(), available));
+        }
+        purchasePipeline.purchase(player, holder.getLedger(), shopItem, quantity);
+    }
+
+    private void onQuantityClick(Player player, QuantityMenuHolder menu, int rawSlot) {
+        if (rawSlot == QuantityMenuHolder.BACK_SLOT) {
+            Bukkit.getScheduler().runTask(this, () -> {
+                if (player.isOnline()) openMerchantMenu(player);
+            });
+            return;
+        }
+        int quantity = menu.quantityAt(rawSlot);
+        if (quantity <= 0 || isOutdated(player, menu.getCatalog().getVersion())) return;
+        if (purchasePipeline == null) {
             player.sendMessage(ChatColor.RED + "Ekonomi sistemi bagli degil!");
             return;
         }
-        
-        if (econ.getBalance(player) >= price) {
-            econ.withdrawPlayer(player, price);
-            player.getInventory().addItem(new ItemStack(mat, 1));
-            player.sendMessage(ChatColor.GREEN + "Başarıyla satın aldınız: " + ChatColor.YELLOW + mat.name() + ChatColor.GREEN + " (-" + price + " Para)");
-            
-            // Record purchase in database
-            if (databaseManager != null) {
-                String itemName = (String) itemData.get("name");
-                if (itemName == null) itemName = mat.name();
-                databaseManager.recordPurchase(player.getUniqueId(), player.getName(), mat.name(), itemName, price);
-            }
-            
-            // Play success sound
-            try {
-                String soundName = getConfig().getString("sounds.purchase", "ENTITY_PLAYER_LEVELUP");
-                Sound sound = Sound.valueOf(soundName);
-                player.playSound(player.getLocation(), sound, 1.0f, 1.0f);
-            } catch (Exception e) {
-                if (getConfig().getBoolean("debug", false)) {
-                    getLogger().warning("Failed to play purchase sound: " + e.getMessage());
-                }
-            }
-        } else {
-            player.sendMessage(ChatColor.RED + "Yeterli paranız yok! Gereken: " + price + " Para");
-            
-            // Play error sound
-            try {
-                String soundName = getConfig().getString("sounds.error", "ENTITY_VILLAGER_NO");
-                Sound sound = Sound.valueOf(soundName);
-                player.playSound(player.getLocation(), sound, 1.0f, 1.0f);
-            } catch (Exception e) {
-                if (getConfig().getBoolean("debug", false)) {
-                    getLogger().warning("Failed to play error sound: " + e.getMessage());
-                }
-            }
+        purchasePipeline.purchase(player, menu.getLedger(), menu.getItem(), quantity);
+    }
+
+    // The rotation changed while the menu was open; show the new items instead
+    private boolean isOutdated(Player player, int menuVersion) {
+        if (menuVersion == catalog.getVersion()) {
+            return false;
+        }
+        player.sendMessage(ChatColor.YELLOW + "Ürünler yenilendi, menü güncelleniyor.");
+        Bukkit.getScheduler().runTask(this, () -> {
+            if (player.isOnline()) openMerchantMenu(player);
+        });
+        return true;
+    }
+
+    // Sessions are loaded ahead of time so /nomad stats and the shop lore need no query
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (databaseManager != null) {
+            databaseManager.loadSession(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        if (databaseManager != null) {
+            databaseManager.evictSession(event.getPlayer().getUniqueId());
+        }
+    }
+
+    private long unitsBought(UUID player, String material) {
+        DatabaseManager current = databaseManager;
+        PlayerSession session = current != null ? current.getSession(player) : null;
+        return session != null ? session.unitsBought(material) : 0L;
+    }
+
+    @EventHandler
+    public void onInventoryClose(InventoryCloseEvent event) {
+        if (event.getInventory().getHolder() instanceof ShopMenuHolder holder) {
+            shopViews.closed(holder);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        InventoryHolder holder = event.getInventory().getHolder();
+        if (holder instanceof ShopMenuHolder || holder instanceof QuantityMenuHolder) {
+            event.setCancelled(true);
         }
     }
 
     private boolean handleReload(CommandSender sender) {
-        reloadConfig();
-        loadConfigData();
+        try {
+            loadConfigData();
+        } catch (SettingsException e) {
+            sender.sendMessage(ChatColor.RED + "Yapılandırma hatalı, değişiklikler uygulanmadı:");
+            for (String problem : e.getProblems()) {
+                sender.sendMessage(ChatColor.GRAY + " - " + problem);
+                getLogger().warning("Config problem: " + problem);
+            }
+            return true;
+        }
         startRefreshScheduler();
         sender.sendMessage(ChatColor.GREEN + "Nomad yapılandırması yeniden yüklendi!");
+        PricingSettings pricingSettings = settings.getPricing();
+        if (pricingSettings.enabled() != (pricing != null)
+                || (pricing != null && pricingSettings.historyDays() != pricing.getHistoryDays())) {
+            sender.sendMessage(ChatColor.YELLOW + "dynamic-pricing.enabled ve history-days değişiklikleri yeniden başlatmadan sonra geçerli olur.");
+        }
         return true;
     }
 
@@ -384,9 +748,12 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
             sender.sendMessage(ChatColor.RED + "--- Admin Komutları ---");
             sender.sendMessage(ChatColor.YELLOW + "/nomad reload" + ChatColor.GRAY + " - Yapılandırmayı yeniden yükler");
             sender.sendMessage(ChatColor.YELLOW + "/nomad refresh" + ChatColor.GRAY + " - Günlük ürünleri yeniler");
-            sender.sendMessage(ChatColor.YELLOW + "/nomad settime <dakika>" + ChatColor.GRAY + " - Yenileme süresini ayarlar");
-            sender.sendMessage(ChatColor.YELLOW + "/nomad pool" + ChatColor.GRAY + " - Ürün havuzunu gösterir");
+            sender.sendMessage(ChatColor.YELLOW + "/nomad settime <dakika|reset>" + ChatColor.GRAY + " - Yenileme süresini ayarlar");
+            sender.sendMessage(ChatColor.YELLOW + "/nomad pool [sayfa]" + ChatColor.GRAY + " - Ürün havuzunu gösterir");
+            sender.sendMessage(ChatColor.YELLOW + "/nomad pool search <metin>" + ChatColor.GRAY + " - Havuzda ürün arar");
             sender.sendMessage(ChatColor.YELLOW + "/nomad pool add/remove" + ChatColor.GRAY + " - Ürün havuzunu yönetir");
+            sender.sendMessage(ChatColor.YELLOW + "/nomad pool import/export <dosya>" + ChatColor.GRAY + " - Havuzu dosyadan yükler/dosyaya yazar");
+            sender.sendMessage(ChatColor.YELLOW + "/nomad metrics" + ChatColor.GRAY + " - Performans metriklerini gösterir");
         }
         
         sender.sendMessage(ChatColor.AQUA + "--- Oyuncu Komutları ---");
@@ -397,14 +764,33 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
     }
 
     private boolean handleRefresh(CommandSender sender) {
-        refreshDailyItems();
+        refreshDailyItems(Instant.now());
         sender.sendMessage(ChatColor.GREEN + "Günlük ürünler başarıyla yenilendi!");
         return true;
     }
 
     private boolean handleSetTime(CommandSender sender, String[] args) {
         if (args.length < 2) {
-            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad settime <dakika>");
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad settime <dakika|reset>");
+            return true;
+        }
+        if (rotationStore == null) {
+            sender.sendMessage(ChatColor.RED + "Eklenti henüz başlatılıyor, lütfen biraz bekleyin.");
+            return true;
+        }
+
+        if (args[1].equalsIgnoreCase("reset")) {
+            refreshIntervalOverride = 0;
+            try {
+                settings = readSettings();
+            } catch (SettingsException e) {
+                sender.sendMessage(ChatColor.RED + "config.yml okunamadı, süre değiştirilmedi.");
+                return true;
+            }
+            saveRotationState();
+            startRefreshScheduler();
+            sender.sendMessage(ChatColor.GREEN + "Yenileme süresi config.yml'deki " + settings.getRefreshIntervalMinutes()
+                + " dakikaya döndü.");
             return true;
         }
 
@@ -415,8 +801,10 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
                 return true;
             }
 
-            getConfig().set("refresh-interval-minutes", minutes);
-            saveConfig();
+            // Kept with the rotation state; config.yml is never rewritten
+            refreshIntervalOverride = minutes;
+            settings = settings.withRefreshIntervalMinutes(minutes);
+            saveRotationState();
             startRefreshScheduler();
             
             sender.sendMessage(ChatColor.GREEN + "Yenileme süresi " + minutes + " dakika olarak ayarlandı!");
@@ -427,152 +815,212 @@ public class Nomad extends JavaPlugin implements CommandExecutor, Listener {
         }
     }
 
-    private boolean handlePool(CommandSender sender, String[] args) {
-        if (args.length == 1) {
-            showPool(sender);
+    private boolean handleWhen(CommandSender sender) {
+        Instant now = Instant.now();
+        Instant deadline = nextRefreshAt != null ? nextRefreshAt : settings.getRefreshSchedule().nextBoundary(now);
+        long minutes = Math.max(0L, (Duration.between(now, deadline).toSeconds() + 59) / 60);
+        String clock = CLOCK_FORMAT.format(deadline.atZone(settings.getTimezone()));
+
+        sender.sendMessage(ChatColor.YELLOW + "Sonraki ürün yenilemesine " + minutes + " dakika kaldı. "
+            + ChatColor.GRAY + "(" + clock + ")");
+        return true;
+    }
+    
+    private boolean handleMetrics(CommandSender sender) {
+        if (!sender.hasPermission("nomad.admin")) {
+            sender.sendMessage(ChatColor.RED + "Bu komutu kullanmak için yetkiniz yok!");
             return true;
         }
 
-        String action = args[1].toLowerCase();
-        if (action.equals("add")) {
-            return handlePoolAdd(sender, args);
-        } else if (action.equals("remove")) {
-            return handlePoolRemove(sender, args);
-        } else {
-            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool <add/remove>");
-            return true;
+        sender.sendMessage(ChatColor.GOLD + "=== Nomad Metrikleri ===");
+        boolean any = false;
+        for (Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            if (snapshot.count() == 0) {
+                continue;
+            }
+            any = true;
+            sender.sendMessage(ChatColor.YELLOW + metricLabel(entry.getKey()) + ": " + ChatColor.WHITE + snapshot.count()
+                + ChatColor.GRAY + " işlem, p50 " + millis(snapshot.percentileNanos(0.5))
+                + ", p99 " + millis(snapshot.percentileNanos(0.99))
+                + ", en fazla " + millis(snapshot.maxNanos()));
+        }
+        StringBuilder counters = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : metrics.getCounters().entrySet()) {
+            long value = entry.getValue().sum();
+            if (value == 0) {
+                continue;
+            }
+            if (counters.length() > 0) {
+                counters.append(", ");
+            }
+            counters.append(metricLabel(entry.getKey())).append('=').append(value);
         }
+        if (counters.length() > 0) {
+            any = true;
+            sender.sendMessage(ChatColor.GRAY + counters.toString());
+        }
+        metrics.getGauges().forEach((name, value) -> sender.sendMessage(ChatColor.YELLOW + metricLabel(name) + ": "
+            + ChatColor.WHITE + String.format("%.0f", value.getAsDouble())));
+        if (!any) {
+            sender.sendMessage(ChatColor.GRAY + "Henüz ölçüm yok.");
+        }
+        return true;
     }
 
-    private void showPool(CommandSender sender) {
-        List<Map<?, ?>> pool = getConfig().getMapList("item-pool");
-        sender.sendMessage(ChatColor.GOLD + "=== Ürün Havuzu ===");
-        
-        if (pool.isEmpty()) {
-            sender.sendMessage(ChatColor.GRAY + "Havuzda ürün bulunmuyor.");
-            return;
+    // nomad_purchase_stage_seconds{stage="economy"} -> purchase_stage[economy]
+    private static String metricLabel(String name) {
+        String family = MetricsRegistry.family(name).replaceFirst("^nomad_", "").replaceFirst("_(seconds|total)$", "");
+        String labels = MetricsRegistry.labels(name);
+        if (labels.isEmpty()) {
+            return family;
         }
+        return family + "[" + labels.substring(labels.indexOf('=') + 1).replace("\"", "") + "]";
+    }
 
-        for (int i = 0; i < pool.size(); i++) {
-            Map<?, ?> item = pool.get(i);
-            String material = (String) item.get("material");
-            String name = (String) item.get("name");
-            String price = item.get("price").toString();
-            
-            sender.sendMessage(ChatColor.YELLOW + String.valueOf(i + 1) + ". " + ChatColor.WHITE + 
-                (name != null ? name : material) + ChatColor.GRAY + " - " + ChatColor.GOLD + price + " Para");
-        }
+    private static String millis(long nanos) {
+        return String.format("%.2f ms", nanos / 1_000_000.0);
     }
 
-    private boolean handlePoolAdd(CommandSender sender, String[] args) {
-        if (args.length < 5) {
-            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool add <materyal> <isim> <fiyat>");
-            return true;
+    /** Starts the optional Prometheus exports; read at startup. */
+    private void startMetricsExport() {
+        if (!settings.getMetricsFile().isEmpty()) {
+            Path target = Paths.get(settings.getMetricsFile());
+            if (!target.isAbsolute()) {
+                target = getDataFolder().toPath().resolve(target);
+            }
+            AtomicFileWriter writer = new AtomicFileWriter(target, "Nomad-MetricsWriter", getLogger());
+            long period = settings.getMetricsFileIntervalSeconds() * 20L;
+            metricsFileWriter = writer;
+            metricsFileTask = Bukkit.getScheduler().runTaskTimerAsynchronously(this,
+                () -> writer.submit(PrometheusFormat.render(metrics)), period, period);
+            getLogger().info("Writing metrics to " + target);
         }
-
-        String material = args[2].toUpperCase();
-        String name = ChatColor.translateAlternateColorCodes('&', String.join(" ", Arrays.copyOfRange(args, 3, args.length - 1)));
-        
-        try {
-            double price = Double.parseDouble(args[args.length - 1]);
-            
+        if (settings.getMetricsHttpPort() > 0) {
             try {
-                Material.valueOf(material);
-            } catch (IllegalArgumentException e) {
-                sender.sendMessage(ChatColor.RED + "Geçersiz materyal: " + material);
-                return true;
+                metricsHttpServer = new MetricsHttpServer(metrics, settings.getMetricsHttpBind(), settings.getMetricsHttpPort());
+                metricsHttpServer.start();
+                getLogger().info("Serving metrics on http://" + settings.getMetricsHttpBind() + ":"
+                    + settings.getMetricsHttpPort() + "/metrics");
+            } catch (IOException e) {
+                getLogger().warning("Could not start the metrics HTTP server: " + e.getMessage());
+                metricsHttpServer = null;
             }
-
-            List<Map<?, ?>> pool = getConfig().getMapList("item-pool");
-            Map<String, Object> newItem = new HashMap<>();
-            newItem.put("material", material);
-            newItem.put("name", name);
-            newItem.put("price", price);
-            
-            pool.add(newItem);
-            getConfig().set("item-pool", pool);
-            saveConfig();
-            
-            sender.sendMessage(ChatColor.GREEN + "Ürün havuza eklendi: " + name + " (" + material + ")");
-            return true;
-        } catch (NumberFormatException e) {
-            sender.sendMessage(ChatColor.RED + "Geçersiz fiyat: " + args[args.length - 1]);
-            return true;
         }
     }
 
-    private boolean handlePoolRemove(CommandSender sender, String[] args) {
-        if (args.length < 3) {
-            sender.sendMessage(ChatColor.RED + "Kullanım: /noma<d pool remove <numara>");
-            return true;
+    private void stopMetricsExport() {
+        if (metricsFileTask != null) {
+            metricsFileTask.cancel();
+            metricsFileTask = null;
         }
+        if (metricsFileWriter != null) {
+            // One last snapshot so the file covers everything up to shutdown
+            metricsFileWriter.submit(PrometheusFormat.render(metrics));
+            metricsFileWriter.close();
+            metricsFileWriter = null;
+        }
+        if (metricsHttpServer != null) {
+            metricsHttpServer.stop();
+            metricsHttpServer = null;
+        }
+    }
 
-        try {
-            int index = Integer.parseInt(args[2]) - 1;
-            List<Map<?, ?>> pool = getConfig().getMapList("item-pool");
-            
-            if (index < 0 || index >= pool.size()) {
-                sender.sendMessage(ChatColor.RED + "Geçersiz numara! 1-" + pool.size() + " arası bir numara girin.");
-                return true;
-            }
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
 
-            Map<?, ?> removed = pool.remove(index);
-            getConfig().set("item-pool", pool);
-            saveConfig();
-            
-            sender.sendMessage(ChatColor.GREEN + "Ürün havuzdan kaldırıldı: " + removed.get("name"));
-            return true;
-        } catch (NumberFormatException e) {
-            sender.sendMessage(ChatColor.RED + "Geçersiz numara: " + args[2]);
-            return true;
-        }
+    /** Null unless dynamic-pricing is enabled. */
+    public DynamicPricing getPricing() {
+        return pricing;
     }
 
-    private boolean handleWhen(CommandSender sender) {
-        String lastRefresh = getConfig().getString("last-refresh-date", "");
-        String today = LocalDate.now().toString();
-        int refreshHour = getConfig().getInt("refresh-hour", 18);
-        int refreshInterval = getConfig().getInt("refresh-interval-minutes", 1440);
-        
-        LocalTime now = LocalTime.now();
-        
-        if (today.equals(lastRefresh)) {
-            LocalTime refreshTime = LocalTime.of(refreshHour, 0);
-            if (now.isBefore(refreshTime)) {
-                long minutesUntilRefresh = java.time.Duration.between(now, refreshTime).toMinutes();
-                sender.sendMessage(ChatColor.YELLOW + "Sonraki ürün yenilemesine " + minutesUntilRefresh + " dakika kaldı.");
-            } else {
-                long minutesUntilNext = refreshInterval * 60 - (now.toSecondOfDay() - refreshTime.toSecondOfDay()) / 60;
-                sender.sendMessage(ChatColor.YELLOW + "Sonraki ürün yenilemesine " + minutesUntilNext + " dakika kaldı.");
-            }
-        } else {
-            LocalTime refreshTime = LocalTime.of(refreshHour, 0);
-            if (now.isAfter(refreshTime)) {
-                long minutesUntilTomorrow = (24 * 60 - now.toSecondOfDay() / 60) + refreshHour * 60;
-                sender.sendMessage(ChatColor.YELLOW + "Sonraki ürün yenilemesine " + minutesUntilTomorrow + " dakika kaldı.");
-            } else {
-                long minutesUntilRefresh = java.time.Duration.between(now, refreshTime).toMinutes();
-                sender.sendMessage(ChatColor.YELLOW + "Sonraki ürün yenilemesine " + minutesUntilRefresh + " dakika kaldı.");
-            }
-        }
-        
-        return true;
+    public DatabaseManager getDatabaseManager() {
+        return databaseManager;
+    }
+    
+    public NomadSettings getSettings() {
+        return settings;
+    }
+    
+    /** When the current rotation started, or null before the first one. */
+    public Instant getLastRefreshAt() {
+        return lastRefreshAt;
     }
     
     @Override
     public void onDisable() {
         getLogger().info("=== Disabling Nomad v" + getDescription().getVersion() + " ===");
         
+        // A startup still running owns the stores and the database until it returns
+        disabling = true;
+        if (startupThread != null) {
+            if (startupThread.isAlive()) {
+                getLogger().info("Waiting for the background startup to finish...");
+            }
+            try {
+                startupThread.join(STARTUP_JOIN_TIMEOUT_MS);
+                if (startupThread.isAlive()) {
+                    // A hung migration or connect must not hold up the server's shutdown
+                    startupThread.interrupt();
+                    startupThread.join(1000L);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (startupThread.isAlive()) {
+                getLogger().warning("Background startup did not finish within " + (STARTUP_JOIN_TIMEOUT_MS / 1000)
+                    + "s (stuck in the " + startupStage.getMetricName() + " stage), abandoning it; "
+                    + "anything it opens after this is closed when it returns.");
+            }
+            startupThread = null;
+        }
+        
         // Cancel scheduler
-        if (refreshScheduler != null) {
-            refreshScheduler.cancel();
+        cancelRefreshTimer();
+        
+        // Deliver purchases whose charge already went through
+        if (purchasePipeline != null) {
+            purchasePipeline.shutdown();
+        }
+        
+        // After the last deliveries, so their sales are part of the saved demand
+        if (pricing != null) {
+            pricing.shutdown();
+            pricing = null;
         }
         
-        // Disconnect database
+        // Save sold stock, then write out anything still pending
+        if (stockSaveTask != null) {
+            stockSaveTask.cancel();
+        }
+        if (stockStore != null) {
+            stockStore.saveIfDirty(stockLedger);
+            stockStore.close();
+        }
+        if (shopViews != null) {
+            shopViews.clear();
+        }
+        if (rotationStore != null) {
+            rotationStore.close();
+        }
+        if (poolStore != null) {
+            poolStore.close();
+        }
+        
+        // Let running stats queries finish before the database goes away
+        if (statsCommand != null) {
+            statsCommand.shutdown();
+        }
+        
+        // Flush queued purchases, then disconnect database
         if (databaseManager != null) {
+            databaseManager.flush();
             databaseManager.disconnect();
         }
         
+        stopMetricsExport();
+        
         getLogger().info("Nomad plugin has been disabled successfully!");
     }
 }
@@ -0,0 +1,353 @@
+package com.glacio.nomad;
+
+import com.glacio.nomad.pricing.PricingSettings;
+import com.glacio.nomad.rotation.RefreshSchedule;
+import com.glacio.nomad.shop.ShopCatalog;
+import org.bukkit.ChatColor;
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of config.yml, resolved once per load/reload. Hot paths
+ * read this snapshot instead of the Bukkit configuration tree. Sounds are
+ * null when disabled ("" or NONE).
+ */
+public final class NomadSettings {
+
+    private static final String DEFAULT_PERMISSION = "nomad.use";
+
+    private final String menuTitle;
+    private final int menuRows;
+    private final int[] menuSlots;
+    private final Sound openMenuSound;
+    private final Sound purchaseSound;
+    private final Sound errorSound;
+    private final Map<String, String> permissions;
+    private final int dailyItemCount;
+    private final int refreshHour;
+    private final int refreshIntervalMinutes;
+    private final ZoneId timezone;
+    private final String rotationSalt;
+    private final RefreshSchedule refreshSchedule;
+    private final int statsPageSize;
+    private final int stockSaveIntervalSeconds;
+    private final boolean asyncEconomy;
+    private final int economyThreads;
+    private final String metricsFile;
+    private final int metricsFileIntervalSeconds;
+    private final String metricsHttpBind;
+    private final int metricsHttpPort;
+    private final PricingSettings pricing;
+    private final boolean debug;
+
+    private NomadSettings(String menuTitle, int menuRows, int[] menuSlots, Sound openMenuSound, Sound purchaseSound,
+                          Sound errorSound, Map<String, String> permissions, int dailyItemCount, int refreshHour,
+                          int refreshIntervalMinutes, ZoneId timezone, String rotationSalt, int statsPageSize,
+                          int stockSaveIntervalSeconds, boolean asyncEconomy, int economyThreads,
+                          String metricsFile, int metricsFileIntervalSeconds, String metricsHttpBind,
+                          int metricsHttpPort, PricingSettings pricing, boolean debug) {
+        this.menuTitle = menuTitle;
+        this.menuRows = menuRows;
+        this.menuSlots = menuSlots;
+        this.openMenuSound = openMenuSound;
+        this.purchaseSound = purchaseSound;
+        this.errorSound = errorSound;
+        this.permissions = permissions;
+        this.dailyItemCount = dailyItemCount;
+        this.refreshHour = refreshHour;
+        this.refreshIntervalMinutes = refreshIntervalMinutes;
+        this.timezone = timezone;
+        this.rotationSalt = rotationSalt;
+        this.refreshSchedule = new RefreshSchedule(refreshHour, refreshIntervalMinutes, timezone, rotationSalt);
+        this.statsPageSize = statsPageSize;
+        this.stockSaveIntervalSeconds = stockSaveIntervalSeconds;
+        this.asyncEconomy = asyncEconomy;
+        this.economyThreads = economyThreads;
+        this.metricsFile = metricsFile;
+        this.metricsFileIntervalSeconds = metricsFileIntervalSeconds;
+        this.metricsHttpBind = metricsHttpBind;
+        this.metricsHttpPort = metricsHttpPort;
+        this.pricing = pricing;
+        this.debug = debug;
+    }
+
+    /**
+     * Resolves and validates every setting. Nothing is applied unless the
+     * whole configuration is valid; otherwise all problems are reported at
+     * once.
+     */
+    public static NomadSettings load(ConfigurationSection config) throws SettingsException {
+        List<String> problems = new ArrayList<>();
+
+        String menuTitle = ChatColor.translateAlternateColorCodes('&', config.getString("menu-title", "&6Nomad"));
+
+        int menuRows = config.getInt("menu-rows", 3);
+        if (menuRows < 1 || menuRows > 6) {
+            problems.add("menu-rows must be between 1 and 6 (was " + menuRows + ")");
+            menuRows = 3;
+        }
+
+        int[] menuSlots = ShopCatalog.DEFAULT_SLOTS;
+        if (config.contains("menu-slots")) {
+            List<Integer> configured = config.getIntegerList("menu-slots");
+            Set<Integer> seen = new HashSet<>();
+            menuSlots = new int[configured.size()];
+            for (int i = 0; i < configured.size(); i++) {
+                int slot = configured.get(i);
+                if (slot < 0 || slot >= menuRows * 9) {
+                    problems.add("menu-slots entry " + slot + " is outside the " + (menuRows * 9) + "-slot menu");
+                } else if (!seen.add(slot)) {
+                    problems.add("menu-slots entry " + slot + " is listed more than once");
+                }
+                menuSlots[i] = slot;
+            }
+        }
+
+        Sound openMenuSound = sound(config, "sounds.open-menu", "BLOCK_CHEST_OPEN", problems);
+        Sound purchaseSound = sound(config, "sounds.purchase", "ENTITY_PLAYER_LEVELUP", problems);
+        Sound errorSound = sound(config, "sounds.error", "ENTITY_VILLAGER_NO", problems);
+
+        Map<String, String> permissions = new HashMap<>();
+        ConfigurationSection permissionSection = config.getConfigurationSection("permissions");
+        if (permissionSection != null) {
+            for (String subCommand : permissionSection.getKeys(false)) {
+                String node = permissionSection.getString(subCommand);
+                if (node == null || node.isBlank()) {
+                    problems.add("permissions." + subCommand + " must be a permission node");
+                } else {
+                    permissions.put(subCommand.toLowerCase(Locale.ROOT), node);
+                }
+            }
+        }
+
+        int dailyItemCount = config.getInt("daily-item-count", 5);
+        if (dailyItemCount < 1) {
+            problems.add("daily-item-count must be at least 1 (was " + dailyItemCount + ")");
+        }
+
+        int refreshHour = config.getInt("refresh-hour", 18);
+        if (refreshHour < 0 || refreshHour > 23) {
+            problems.add("refresh-hour must be between 0 and 23 (was " + refreshHour + ")");
+        }
+
+        int refreshIntervalMinutes = config.getInt("refresh-interval-minutes", 1440);
+        if (refreshIntervalMinutes < 1) {
+            problems.add("refresh-interval-minutes must be at least 1 (was " + refreshIntervalMinutes + ")");
+        }
+
+        ZoneId timezone = ZoneId.systemDefault();
+        String zoneName = config.getString("timezone", "");
+        if (zoneName != null && !zoneName.isBlank()) {
+            try {
+                timezone = ZoneId.of(zoneName.trim());
+            } catch (DateTimeException e) {
+                problems.add("timezone is not a valid zone id: " + zoneName);
+            }
+        }
+
+        String rotationSalt = config.getString("rotation-salt", "");
+        if (rotationSalt == null) {
+            rotationSalt = "";
+        }
+
+        int statsPageSize = config.getInt("stats.page-size", 10);
+        if (statsPageSize < 1) {
+            problems.add("stats.page-size must be at least 1 (was " + statsPageSize + ")");
+        }
+
+        int stockSaveIntervalSeconds = config.getInt("stock.save-interval-seconds", 10);
+        if (stockSaveIntervalSeconds < 1) {
+            problems.add("stock.save-interval-seconds must be at least 1 (was " + stockSaveIntervalSeconds + ")");
+        }
+
+        int economyThreads = config.getInt("economy.threads", 2);
+        if (economyThreads < 1) {
+            problems.add("economy.threads must be at least 1 (was " + economyThreads + ")");
+        }
+
+        String metricsFile = config.getString("metrics.prometheus-file", "");
+        metricsFile = metricsFile == null ? "" : metricsFile.trim();
+
+        int metricsFileIntervalSeconds = config.getInt("metrics.file-interval-seconds", 15);
+        if (metricsFileIntervalSeconds < 1) {
+            problems.add("metrics.file-interval-seconds must be at least 1 (was " + metricsFileIntervalSeconds + ")");
+        }
+
+        String metricsHttpBind = config.getString("metrics.http-bind", "127.0.0.1");
+        if (metricsHttpBind == null || metricsHttpBind.isBlank()) {
+            metricsHttpBind = "127.0.0.1";
+        }
+
+        int metricsHttpPort = config.getInt("metrics.http-port", 0);
+        if (metricsHttpPort < 0 || metricsHttpPort > 65535) {
+            problems.add("metrics.http-port must be between 0 and 65535 (was " + metricsHttpPort + ")");
+        }
+
+        PricingSettings pricing = pricing(config, problems);
+
+        if (!problems.isEmpty()) {
+            throw new SettingsException(problems);
+        }
+
+        return new NomadSettings(menuTitle, menuRows, menuSlots, openMenuSound, purchaseSound, errorSound,
+            Collections.unmodifiableMap(permissions), dailyItemCount, refreshHour, refreshIntervalMinutes,
+            timezone, rotationSalt, statsPageSize, stockSaveIntervalSeconds,
+            config.getBoolean("economy.async-withdraw", false), economyThreads, metricsFile,
+            metricsFileIntervalSeconds, metricsHttpBind.trim(), metricsHttpPort, pricing, config.getBoolean("debug", false));
+    }
+
+    private static PricingSettings pricing(ConfigurationSection config, List<String> problems) {
+        int updateIntervalSeconds = config.getInt("dynamic-pricing.update-interval-seconds", 60);
+        if (updateIntervalSeconds < 1) {
+            problems.add("dynamic-pricing.update-interval-seconds must be at least 1 (was " + updateIntervalSeconds + ")");
+        }
+        int halfLifeMinutes = config.getInt("dynamic-pricing.half-life-minutes", 120);
+        if (halfLifeMinutes < 1) {
+            problems.add("dynamic-pricing.half-life-minutes must be at least 1 (was " + halfLifeMinutes + ")");
+        }
+        double sensitivity = config.getDouble("dynamic-pricing.sensitivity", 0.5);
+        if (sensitivity < 0.0) {
+            problems.add("dynamic-pricing.sensitivity must not be negative (was " + sensitivity + ")");
+        }
+        double minMultiplier = config.getDouble("dynamic-pricing.min-multiplier", 0.5);
+        if (minMultiplier < 0.01 || minMultiplier > 1.0) {
+            problems.add("dynamic-pricing.min-multiplier must be between 0.01 and 1 (was " + minMultiplier + ")");
+        }
+        double maxMultiplier = config.getDouble("dynamic-pricing.max-multiplier", 2.0);
+        if (maxMultiplier < 1.0) {
+            problems.add("dynamic-pricing.max-multiplier must be at least 1 (was " + maxMultiplier + ")");
+        }
+        int historyDays = config.getInt("dynamic-pricing.history-days", 30);
+        if (historyDays < 1) {
+            problems.add("dynamic-pricing.history-days must be at least 1 (was " + historyDays + ")");
+        }
+        return new PricingSettings(config.getBoolean("dynamic-pricing.enabled", false), updateIntervalSeconds,
+            halfLifeMinutes, sensitivity, minMultiplier, maxMultiplier, historyDays);
+    }
+
+    private static Sound sound(ConfigurationSection config, String path, String fallback, List<String> problems) {
+        String name = config.getString(path, fallback);
+        if (name == null || name.isBlank() || name.equalsIgnoreCase("NONE")) {
+            return null;
+        }
+        try {
+            return Sound.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            problems.add(path + " is not a valid sound: " + name);
+            return null;
+        }
+    }
+
+    /** Copy with a new refresh interval, used by /nomad settime. */
+    public NomadSettings withRefreshIntervalMinutes(int minutes) {
+        return new NomadSettings(menuTitle, menuRows, menuSlots, openMenuSound, purchaseSound, errorSound,
+            permissions, dailyItemCount, refreshHour, minutes, timezone, rotationSalt, statsPageSize,
+            stockSaveIntervalSeconds, asyncEconomy, economyThreads, metricsFile, metricsFileIntervalSeconds,
+            metricsHttpBind, metricsHttpPort, pricing, debug);
+    }
+
+    public String getMenuTitle() {
+        return menuTitle;
+    }
+
+    public int getMenuSize() {
+        return menuRows * 9;
+    }
+
+    /** Slots filled by daily items, in order. Shared; do not modify. */
+    public int[] getMenuSlots() {
+        return menuSlots;
+    }
+
+    public Sound getOpenMenuSound() {
+        return openMenuSound;
+    }
+
+    public Sound getPurchaseSound() {
+        return purchaseSound;
+    }
+
+    public Sound getErrorSound() {
+        return errorSound;
+    }
+
+    public String getPermission(String subCommand) {
+        return permissions.getOrDefault(subCommand, DEFAULT_PERMISSION);
+    }
+
+    public int getDailyItemCount() {
+        return dailyItemCount;
+    }
+
+    public int getRefreshHour() {
+        return refreshHour;
+    }
+
+    public int getRefreshIntervalMinutes() {
+        return refreshIntervalMinutes;
+    }
+
+    /** Zone used for refresh-hour; the system zone unless timezone is set. */
+    public ZoneId getTimezone() {
+        return timezone;
+    }
+
+    public RefreshSchedule getRefreshSchedule() {
+        return refreshSchedule;
+    }
+
+    public int getStatsPageSize() {
+        return statsPageSize;
+    }
+
+    /** How often sold stock is written to disk; read at startup. */
+    public int getStockSaveIntervalSeconds() {
+        return stockSaveIntervalSeconds;
+    }
+
+    /** Whether Vault calls run off the main thread; read at startup. */
+    public boolean isAsyncEconomy() {
+        return asyncEconomy;
+    }
+
+    public int getEconomyThreads() {
+        return economyThreads;
+    }
+
+    /** Prometheus text file to write, relative to the plugin folder; empty when disabled. Read at startup. */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    public int getMetricsFileIntervalSeconds() {
+        return metricsFileIntervalSeconds;
+    }
+
+    public String getMetricsHttpBind() {
+        return metricsHttpBind;
+    }
+
+    /** Port of the metrics endpoint, 0 when disabled. Read at startup. */
+    public int getMetricsHttpPort() {
+        return metricsHttpPort;
+    }
+
+    public PricingSettings getPricing() {
+        return pricing;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+}
@@ -0,0 +1,21 @@
+package com.glacio.nomad;
+
+import java.util.List;
+
+/**
+ * Thrown when config.yml fails validation. Carries every problem found so
+ * they can be reported together.
+ */
+public class SettingsException extends Exception {
+
+    private final List<String> problems;
+
+    public SettingsException(List<String> problems) {
+        super(String.join("; ", problems));
+        this.problems = List.copyOf(problems);
+    }
+
+    public List<String> getProblems() {
+        return problems;
+    }
+}
@@ -0,0 +1,30 @@
+package com.glacio.nomad;
+
+/**
+ * Steps of the background startup, in order. Until {@link #READY} the shop
+ * and most commands only tell players that Nomad is still warming up.
+ */
+public enum StartupStage {
+    ROTATION("rotation", "ürünler hazırlanıyor"),
+    DATABASE("database", "veritabanı açılıyor"),
+    STATEMENTS("statements", "sorgular hazırlanıyor"),
+    READY("ready", "hazır");
+
+    private final String metricName;
+    private final String description;
+
+    StartupStage(String metricName, String description) {
+        this.metricName = metricName;
+        this.description = description;
+    }
+
+    /** Label value for the per-stage startup histogram. */
+    public String getMetricName() {
+        return metricName;
+    }
+
+    /** Shown to players while this stage runs. */
+    public String getDescription() {
+        return description;
+    }
+}
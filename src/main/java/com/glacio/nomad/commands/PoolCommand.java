@@ -0,0 +1,286 @@
+package com.glacio.nomad.commands;
+
+import com.glacio.nomad.Nomad;
+import com.glacio.nomad.io.AtomicFileWriter;
+import com.glacio.nomad.pool.ItemPool;
+import com.glacio.nomad.pool.ItemPoolStore;
+import com.glacio.nomad.pool.PoolEntry;
+import com.glacio.nomad.pool.PoolPage;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+public class PoolCommand {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Nomad plugin;
+    private final ItemPool pool;
+    private final ItemPoolStore store;
+    private final File transferFolder;
+    private boolean transferRunning;
+
+    public PoolCommand(Nomad plugin, ItemPool pool, ItemPoolStore store) {
+        this.plugin = plugin;
+        this.pool = pool;
+        this.store = store;
+        this.transferFolder = new File(plugin.getDataFolder(), "pool");
+    }
+
+    /** Handles the arguments after "pool". */
+    public boolean handlePool(CommandSender sender, String[] args) {
+        if (args.length == 0 || isPageNumber(args[0])) {
+            int page = args.length == 0 ? 1 : Integer.parseInt(args[0]);
+            showPage(sender, pool.page((page - 1) * PAGE_SIZE, PAGE_SIZE), page,
+                "Ürün Havuzu", "/nomad pool ");
+            return true;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "search":
+                return handleSearch(sender, args);
+            case "add":
+                return handleAdd(sender, args);
+            case "remove":
+                return handleRemove(sender, args);
+            case "import":
+                return handleImport(sender, args);
+            case "export":
+                return handleExport(sender, args);
+            default:
+                sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool [sayfa|search|add|remove|import|export]");
+                return true;
+        }
+    }
+
+    private boolean handleSearch(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool search <metin> [sayfa]");
+            return true;
+        }
+        int page = 1;
+        int queryEnd = args.length;
+        if (args.length > 2 && isPageNumber(args[args.length - 1])) {
+            page = Integer.parseInt(args[args.length - 1]);
+            queryEnd--;
+        }
+        String query = String.join(" ", Arrays.copyOfRange(args, 1, queryEnd));
+        showPage(sender, pool.search(query, (page - 1) * PAGE_SIZE, PAGE_SIZE), page,
+            "Arama: " + query, "/nomad pool search " + query + " ");
+        return true;
+    }
+
+    private void showPage(CommandSender sender, PoolPage result, int page, String title, String nextCommand) {
+        int pages = Math.max(1, (result.total() + PAGE_SIZE - 1) / PAGE_SIZE);
+        sender.sendMessage(ChatColor.GOLD + "=== " + title + " (sayfa " + page + "/" + pages + ", "
+            + result.total() + " ürün) ===");
+
+        if (result.entries().isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + (result.total() == 0 ? "Havuzda eşleşen ürün bulunmuyor." : "Bu sayfada ürün bulunmuyor."));
+            return;
+        }
+
+        for (PoolEntry entry : result.entries()) {
+            String name = entry.name() != null ? ChatColor.translateAlternateColorCodes('&', entry.name()) : entry.material();
+            String line = ChatColor.YELLOW + "#" + entry.id() + " " + ChatColor.WHITE + name
+                + ChatColor.GRAY + " - " + ChatColor.GOLD + entry.price() + " Para";
+            if (entry.weight() != 1.0) {
+                line += ChatColor.GRAY + " (ağırlık " + entry.weight() + ")";
+            }
+            if (entry.stock() != PoolEntry.UNLIMITED) {
+                line += ChatColor.GRAY + " (stok " + entry.stock() + ")";
+            }
+            if (entry.playerLimit() > 0) {
+                line += ChatColor.GRAY + " (kişi başı " + entry.playerLimit() + ")";
+            }
+            sender.sendMessage(line);
+        }
+
+        if (page < pages) {
+            sender.sendMessage(ChatColor.GRAY + "Sonraki sayfa: " + ChatColor.YELLOW + nextCommand + (page + 1));
+        }
+    }
+
+    private boolean handleAdd(CommandSender sender, String[] args) {
+        if (args.length < 4) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool add <materyal> <isim> <fiyat>");
+            return true;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("material", args[1]);
+        data.put("name", String.join(" ", Arrays.copyOfRange(args, 2, args.length - 1)));
+        data.put("price", args[args.length - 1]);
+
+        PoolEntry draft;
+        try {
+            draft = PoolEntry.fromMap(0, data);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(ChatColor.RED + "Ürün eklenemedi: " + e.getMessage());
+            return true;
+        }
+
+        PoolEntry entry = pool.add(draft);
+        store.save(pool);
+        sender.sendMessage(ChatColor.GREEN + "Ürün havuza eklendi: "
+            + ChatColor.translateAlternateColorCodes('&', entry.name()) + ChatColor.GREEN
+            + " (" + entry.material() + ", #" + entry.id() + ")");
+        return true;
+    }
+
+    private boolean handleRemove(CommandSender sender, String[] args) {
+        if (args.length < 2 || !isPageNumber(args[1].replace("#", ""))) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool remove <numara>");
+            return true;
+        }
+
+        int id = Integer.parseInt(args[1].replace("#", ""));
+        PoolEntry removed = pool.remove(id);
+        if (removed == null) {
+            sender.sendMessage(ChatColor.RED + "Bu numarada ürün yok: #" + id);
+            return true;
+        }
+
+        store.save(pool);
+        sender.sendMessage(ChatColor.GREEN + "Ürün havuzdan kaldırıldı: " + removed.plainName() + " (#" + id + ")");
+        return true;
+    }
+
+    private boolean handleImport(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool import <dosya> [replace]");
+            return true;
+        }
+        Path source = transferFile(sender, args[1]);
+        if (source == null || !startTransfer(sender)) {
+            return true;
+        }
+        boolean replace = args.length > 2 && args[2].equalsIgnoreCase("replace");
+
+        // Parse off the main thread; the pool itself is only changed back on it
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> problems = new ArrayList<>();
+            List<PoolEntry> drafts;
+            String error = null;
+            try {
+                drafts = Files.exists(source) ? ItemPoolStore.readExport(source, problems) : null;
+            } catch (Exception e) {
+                drafts = null;
+                error = e.getMessage();
+            }
+            List<PoolEntry> parsed = drafts;
+            String readError = error;
+
+            runOnMain(() -> {
+                transferRunning = false;
+                if (parsed == null) {
+                    sender.sendMessage(ChatColor.RED + (readError == null
+                        ? "Dosya bulunamadı: pool/" + source.getFileName()
+                        : "Dosya okunamadı: " + readError));
+                    return;
+                }
+                if (!problems.isEmpty()) {
+                    sender.sendMessage(ChatColor.RED + "Dosyada hatalı ürünler var, hiçbiri eklenmedi:");
+                    for (String problem : problems.subList(0, Math.min(problems.size(), MAX_REPORTED_PROBLEMS))) {
+                        sender.sendMessage(ChatColor.GRAY + " - " + problem);
+                    }
+                    if (problems.size() > MAX_REPORTED_PROBLEMS) {
+                        sender.sendMessage(ChatColor.GRAY + " ... ve " + (problems.size() - MAX_REPORTED_PROBLEMS) + " hata daha");
+                    }
+                    return;
+                }
+
+                if (replace) {
+                    pool.clear();
+                }
+                int added = pool.addAll(parsed);
+                store.save(pool);
+                plugin.getLogger().info(sender.getName() + " imported " + added + " pool entries from "
+                    + source.getFileName() + (replace ? " (replacing the pool)" : ""));
+                sender.sendMessage(ChatColor.GREEN.toString() + added + " ürün içe aktarıldı. Havuzda " + pool.size() + " ürün var.");
+            });
+        });
+        return true;
+    }
+
+    private boolean handleExport(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad pool export <dosya>");
+            return true;
+        }
+        Path target = transferFile(sender, args[1]);
+        if (target == null || !startTransfer(sender)) {
+            return true;
+        }
+
+        List<PoolEntry> snapshot = List.copyOf(pool.entries());
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            String error = null;
+            try {
+                AtomicFileWriter.write(target, ItemPoolStore.toExport(snapshot));
+            } catch (Exception e) {
+                error = e.getMessage();
+            }
+            String writeError = error;
+
+            runOnMain(() -> {
+                transferRunning = false;
+                if (writeError != null) {
+                    sender.sendMessage(ChatColor.RED + "Dosya yazılamadı: " + writeError);
+                } else {
+                    sender.sendMessage(ChatColor.GREEN.toString() + snapshot.size() + " ürün dışa aktarıldı: pool/" + target.getFileName());
+                }
+            });
+        });
+        return true;
+    }
+
+    // Import/export files live in plugins/Nomad/pool/ and are referred to by bare name
+    private Path transferFile(CommandSender sender, String name) {
+        String baseName = name.endsWith(".yml") ? name.substring(0, name.length() - 4) : name;
+        if (!FILE_NAME.matcher(baseName).matches()) {
+            sender.sendMessage(ChatColor.RED + "Geçersiz dosya adı! Sadece harf, rakam, - ve _ kullanın.");
+            return null;
+        }
+        return new File(transferFolder, baseName + ".yml").toPath();
+    }
+
+    private boolean startTransfer(CommandSender sender) {
+        if (transferRunning) {
+            sender.sendMessage(ChatColor.YELLOW + "Başka bir içe/dışa aktarma sürüyor, lütfen bekleyin.");
+            return false;
+        }
+        transferRunning = true;
+        return true;
+    }
+
+    private void runOnMain(Runnable task) {
+        if (plugin.isEnabled()) {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    private static boolean isPageNumber(String arg) {
+        if (arg.isEmpty() || arg.length() > 6) {
+            return false;
+        }
+        for (int i = 0; i < arg.length(); i++) {
+            if (!Character.isDigit(arg.charAt(i))) {
+                return false;
+            }
+        }
+        return Integer.parseInt(arg) > 0;
+    }
+}
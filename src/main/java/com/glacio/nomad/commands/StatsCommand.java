@@ -2,21 +2,86 @@ package com.glacio.nomad.commands;
 
 import com.glacio.nomad.Nomad;
 import com.glacio.nomad.database.DatabaseManager;
+import com.glacio.nomad.database.Leaderboard;
+import com.glacio.nomad.database.PurchaseArchive;
+import com.glacio.nomad.database.PlayerSession;
+import com.glacio.nomad.database.PlayerStats;
+import com.glacio.nomad.database.PurchaseCursor;
+import com.glacio.nomad.database.PurchasePage;
+import com.glacio.nomad.database.PurchaseRow;
+import com.glacio.nomad.database.SalesBucket;
+import com.glacio.nomad.database.SalesRollups;
+import com.glacio.nomad.database.TopItem;
+import com.glacio.nomad.database.TopSpender;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.sql.ResultSet;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class StatsCommand {
     
     private final Nomad plugin;
     private final DatabaseManager databaseManager;
     
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_REMEMBERED_PLAYERS = 256;
+    private static final int MAX_RANGE_DAYS = 366;
+    // Longer ranges only show the totals, not a line per day
+    private static final int MAX_LISTED_DAYS = 31;
+    private static final int MAX_ARCHIVED_ROWS = 20;
+    
+    // Start cursor of page n+2 at index n, per player
+    private final Map<UUID, List<PurchaseCursor>> pageStarts = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, List<PurchaseCursor>> eldest) {
+                return size() > MAX_REMEMBERED_PLAYERS;
+            }
+        });
+    
+    @FunctionalInterface
+    private interface StatsQuery {
+        List<String> run() throws SQLException, IOException;
+    }
+    
+    private final ExecutorService queryExecutor;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    
     public StatsCommand(Nomad plugin, DatabaseManager databaseManager) {
         this.plugin = plugin;
         this.databaseManager = databaseManager;
+        
+        // One worker per reader connection; more would only queue on the pool
+        int workers = Math.max(1, plugin.getConfig().getInt("database.reader-connections", 3));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.queryExecutor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "Nomad-Stats-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
     
     public boolean handleStats(CommandSender sender, String[] args) {
@@ -25,10 +90,20 @@ public class StatsCommand {
             return true;
         }
         
-        if (args.length == 0) {
+        if (args.length == 0 || isPageNumber(args[0])) {
             // Show personal stats
             if (sender instanceof Player) {
-                showPlayerStats(sender, (Player) sender);
+                Player player = (Player) sender;
+                int page = args.length == 0 ? 1 : Integer.parseInt(args[0]);
+                UUID playerUuid = player.getUniqueId();
+                String playerName = player.getName();
+                List<String> cached = page == 1 ? buildCachedPlayerStats(playerUuid, playerName) : null;
+                if (cached != null) {
+                    sendLines(sender, cached);
+                } else {
+                    runQuery(sender, "history", "Error showing player stats",
+                        () -> buildPlayerStats(playerUuid, playerName, page));
+                }
             } else {
                 sender.sendMessage(ChatColor.RED + "Bu komutu sadece oyuncular kullanabilir!");
             }
@@ -36,11 +111,24 @@ public class StatsCommand {
             // Show different stats based on argument
             String type = args[0].toLowerCase();
             switch (type) {
+                // Leaderboards are kept in memory, so these are answered right away
                 case "top":
-                    showTopSpenders(sender);
+                    sendLines(sender, buildTopSpenders());
                     break;
                 case "items":
-                    showTopItems(sender);
+                    sendLines(sender, buildTopItems());
+                    break;
+                case "range":
+                    handleRange(sender, args);
+                    break;
+                case "archive":
+                    handleArchive(sender, args);
+                    break;
+                case "rotation":
+                    runQuery(sender, type, "Error showing rotation sales", this::buildRotationSales);
+                    break;
+                case "rebuild":
+                    rebuildStats(sender);
                     break;
                 case "help":
                     showStatsHelp(sender);
@@ -53,119 +141,445 @@ public class StatsCommand {
         return true;
     }
     
-    private void showPlayerStats(CommandSender sender, Player player) {
+    /**
+     * Runs a stats query on the worker pool and sends the prebuilt lines back
+     * on the main thread. A sender can only have one instance of each query
+     * in flight; repeats are rejected until the first one has answered.
+     */
+    private void runQuery(CommandSender sender, String queryType, String errorLog, StatsQuery query) {
+        String key = senderKey(sender) + ":" + queryType;
+        if (!inFlight.add(key)) {
+            sender.sendMessage(ChatColor.YELLOW + "Bu sorgu zaten çalışıyor, lütfen bekleyin.");
+            return;
+        }
+        
         try {
-            ResultSet rs = databaseManager.getPlayerPurchases(player.getUniqueId());
-            
-            sender.sendMessage(ChatColor.GOLD + "=== " + player.getName() + "'in Satın Alma Geçmişi ===");
-            
-            int totalPurchases = 0;
-            double totalSpent = 0.0;
-            boolean hasPurchases = false;
-            
-            while (rs.next()) {
-                hasPurchases = true;
-                String itemName = rs.getString("item_name");
-                double price = rs.getDouble("price");
-                String purchaseDate = rs.getString("purchase_date");
-                
-                sender.sendMessage(ChatColor.YELLOW + "• " + ChatColor.WHITE + itemName + 
-                    ChatColor.GRAY + " - " + ChatColor.GOLD + price + " Para" +
-                    ChatColor.GRAY + " (" + purchaseDate.substring(0, 19) + ")");
-                
-                totalPurchases++;
-                totalSpent += price;
-            }
-            
-            if (!hasPurchases) {
-                sender.sendMessage(ChatColor.GRAY + "Henüz satın alma geçmişiniz yok.");
-            } else {
-                sender.sendMessage(ChatColor.GREEN + "Toplam: " + totalPurchases + " satın alma, " + totalSpent + " Para harcanmış.");
-            }
-            
-            rs.close();
-            
-        } catch (SQLException e) {
+            queryExecutor.execute(() -> {
+                List<String> lines;
+                try {
+                    lines = query.run();
+                } catch (Exception e) {
+                    plugin.getLogger().severe(errorLog + ": " + e.getMessage());
+                    lines = List.of(ChatColor.RED + "İstatistikler yüklenirken hata oluştu!");
+                }
+                deliver(sender, key, lines);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
             sender.sendMessage(ChatColor.RED + "İstatistikler yüklenirken hata oluştu!");
-            plugin.getLogger().severe("Error showing player stats: " + e.getMessage());
         }
     }
     
-    private void showTopSpenders(CommandSender sender) {
+    private void deliver(CommandSender sender, String key, List<String> lines) {
+        if (!plugin.isEnabled()) {
+            inFlight.remove(key);
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> {
+            inFlight.remove(key);
+            sendLines(sender, lines);
+        });
+    }
+    
+    private static void sendLines(CommandSender sender, List<String> lines) {
+        for (String line : lines) {
+            sender.sendMessage(line);
+        }
+    }
+    
+    private static String senderKey(CommandSender sender) {
+        return sender instanceof Player ? ((Player) sender).getUniqueId().toString() : sender.getName();
+    }
+    
+    /**
+     * Stops the query workers. Queries already running are given a moment to
+     * finish so they do not race the database shutdown.
+     */
+    public void shutdown() {
+        queryExecutor.shutdown();
         try {
-            ResultSet rs = databaseManager.getTopSpenders(10);
-            
-            sender.sendMessage(ChatColor.GOLD + "=== En Çok Para Harcayan Oyuncular ===");
-            sender.sendMessage(ChatColor.GRAY + "İlk 10 oyuncu gösteriliyor:");
-            
-            int rank = 1;
-            boolean hasData = false;
-            
-            while (rs.next()) {
-                hasData = true;
-                String playerName = rs.getString("player_name");
-                int purchases = rs.getInt("total_purchases");
-                double spent = rs.getDouble("total_spent");
-                
-                sender.sendMessage(ChatColor.YELLOW + String.valueOf(rank) + ". " + ChatColor.WHITE + playerName +
-                    ChatColor.GRAY + " - " + ChatColor.GOLD + spent + " Para" +
-                    ChatColor.GRAY + " (" + purchases + " satın alma)");
-                
-                rank++;
+            if (!queryExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                queryExecutor.shutdownNow();
             }
-            
-            if (!hasData) {
-                sender.sendMessage(ChatColor.GRAY + "Henüz veri bulunmuyor.");
+        } catch (InterruptedException e) {
+            queryExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static boolean isPageNumber(String arg) {
+        if (arg.isEmpty() || arg.length() > 6) {
+            return false;
+        }
+        for (int i = 0; i < arg.length(); i++) {
+            if (!Character.isDigit(arg.charAt(i))) {
+                return false;
             }
-            
-            rs.close();
-            
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "İstatistikler yüklenirken hata oluştu!");
-            plugin.getLogger().severe("Error showing top spenders: " + e.getMessage());
         }
+        return Integer.parseInt(arg) > 0;
     }
     
-    private void showTopItems(CommandSender sender) {
-        try {
-            ResultSet rs = databaseManager.getTopItems(10);
-            
-            sender.sendMessage(ChatColor.GOLD + "=== En Çok Satılan Ürünler ===");
-            sender.sendMessage(ChatColor.GRAY + "İlk 10 ürün gösteriliyor:");
-            
-            int rank = 1;
-            boolean hasData = false;
+    // Runs on a query worker; must not touch Bukkit objects
+    private List<String> buildPlayerStats(UUID playerUuid, String playerName, int page) throws SQLException {
+        List<String> lines = new ArrayList<>();
+        int pageSize = plugin.getSettings().getStatsPageSize();
+        PurchaseCursor start = findPageStart(playerUuid, page, pageSize);
+        if (page > 1 && start == null) {
+            lines.add(ChatColor.RED + "Bu sayfada satın alma bulunmuyor.");
+            return lines;
+        }
+        
+        PurchasePage purchases = databaseManager.getPlayerPurchases(playerUuid, start, pageSize);
+        if (purchases.hasNext()) {
+            rememberPageStart(playerUuid, page + 1, purchases.next());
+        }
+        // Totals come from player_stats rather than being summed from history
+        PlayerStats stats = purchases.rows().isEmpty() ? null : databaseManager.getPlayerStats(playerUuid);
+        return playerStatsLines(playerUuid, playerName, page, purchases.rows(), purchases.hasNext(), stats);
+    }
+    
+    /**
+     * The first page served from the player's session, or null if it is not
+     * loaded or holds fewer rows than a page. Page 2 then finds its start
+     * with a keyset query, as session rows carry no ids.
+     */
+    private List<String> buildCachedPlayerStats(UUID playerUuid, String playerName) {
+        PlayerSession session = databaseManager.getSession(playerUuid);
+        if (session == null) {
+            // Not loaded yet; queried this time, served from memory next time
+            databaseManager.loadSession(playerUuid);
+            return null;
+        }
+        int pageSize = plugin.getSettings().getStatsPageSize();
+        List<PurchaseRow> recent = session.recent();
+        if (recent.size() < pageSize && session.hasOlder()) {
+            return null;
+        }
+        pageStarts.remove(playerUuid);
+        boolean hasNext = recent.size() > pageSize || session.hasOlder();
+        return playerStatsLines(playerUuid, playerName, 1, recent.subList(0, Math.min(pageSize, recent.size())),
+            hasNext, session.stats());
+    }
+    
+    private List<String> playerStatsLines(UUID playerUuid, String playerName, int page,
+                                          List<PurchaseRow> rows, boolean hasNext, PlayerStats stats) {
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.GOLD + "=== " + playerName + "'in Satın Alma Geçmişi (Sayfa " + page + ") ===");
+        
+        if (rows.isEmpty()) {
+            lines.add(ChatColor.GRAY + "Henüz satın alma geçmişiniz yok.");
+            return lines;
+        }
+        
+        for (PurchaseRow purchase : rows) {
+            String purchaseDate = formatTime(Instant.ofEpochMilli(purchase.purchasedAt()));
             
-            while (rs.next()) {
-                hasData = true;
-                String itemName = rs.getString("item_name");
-                int timesPurchased = rs.getInt("times_purchased");
-                double revenue = rs.getDouble("total_revenue");
-                
-                sender.sendMessage(ChatColor.YELLOW + String.valueOf(rank) + ". " + ChatColor.WHITE + itemName +
-                    ChatColor.GRAY + " - " + ChatColor.AQUA + timesPurchased + " satış" +
-                    ChatColor.GRAY + " (" + ChatColor.GOLD + revenue + " Para" + ChatColor.GRAY + ")");
-                
-                rank++;
+            String quantity = purchase.quantity() > 1 ? ChatColor.GRAY + " x" + purchase.quantity() : "";
+            lines.add(ChatColor.YELLOW + "• " + ChatColor.WHITE + purchase.itemName() + quantity +
+                ChatColor.GRAY + " - " + ChatColor.GOLD + purchase.price() + " Para" +
+                ChatColor.GRAY + " (" + purchaseDate + ")");
+        }
+        
+        if (hasNext) {
+            lines.add(ChatColor.GRAY + "Sonraki sayfa: " + ChatColor.YELLOW + "/nomad stats " + (page + 1));
+        } else if (!databaseManager.getArchivedMonths().isEmpty()) {
+            lines.add(ChatColor.GRAY + "Daha eski satın almalar arşivde: " + ChatColor.YELLOW + "/nomad stats archive");
+        }
+        
+        if (stats != null) {
+            lines.add(ChatColor.GREEN + "Toplam: " + stats.totalPurchases() + " satın alma, " + stats.totalSpent() + " Para harcanmış.");
+        }
+        Leaderboard.Rank rank = databaseManager.getSpenderRank(playerUuid);
+        if (rank != null) {
+            lines.add(ChatColor.GRAY + "Harcama sıralaması: " + ChatColor.YELLOW + "#" + rank.position() +
+                ChatColor.GRAY + " / " + rank.total());
+        }
+        return lines;
+    }
+    
+    /**
+     * Finds the keyset cursor where {@code page} starts. Cursors of pages
+     * already visited are remembered, so paging forward costs one query;
+     * jumping ahead walks the missing pages by keyset, never by OFFSET.
+     */
+    private PurchaseCursor findPageStart(UUID playerUuid, int page, int pageSize) throws SQLException {
+        if (page == 1) {
+            // New purchases shift every page, so start over from the top
+            pageStarts.remove(playerUuid);
+            return null;
+        }
+        
+        List<PurchaseCursor> starts = pageStarts.get(playerUuid);
+        int known = starts == null ? 1 : starts.size() + 1;
+        if (page <= known) {
+            return starts.get(page - 2);
+        }
+        
+        PurchaseCursor cursor = known == 1 ? null : starts.get(known - 2);
+        for (int current = known; current < page; current++) {
+            PurchasePage skipped = databaseManager.getPlayerPurchases(playerUuid, cursor, pageSize);
+            if (!skipped.hasNext()) {
+                return null;
             }
-            
-            if (!hasData) {
-                sender.sendMessage(ChatColor.GRAY + "Henüz veri bulunmuyor.");
+            cursor = skipped.next();
+            rememberPageStart(playerUuid, current + 1, cursor);
+        }
+        return cursor;
+    }
+    
+    private void rememberPageStart(UUID playerUuid, int page, PurchaseCursor cursor) {
+        List<PurchaseCursor> starts = pageStarts.computeIfAbsent(playerUuid, k -> new ArrayList<>());
+        if (starts.size() == page - 2) {
+            starts.add(cursor);
+        }
+    }
+    
+    private List<String> buildTopSpenders() {
+        List<TopSpender> spenders = databaseManager.getTopSpenders(10);
+        List<String> lines = new ArrayList<>();
+        
+        lines.add(ChatColor.GOLD + "=== En Çok Para Harcayan Oyuncular ===");
+        lines.add(ChatColor.GRAY + "İlk 10 oyuncu gösteriliyor:");
+        
+        int rank = 1;
+        for (TopSpender spender : spenders) {
+            lines.add(ChatColor.YELLOW + String.valueOf(rank) + ". " + ChatColor.WHITE + spender.playerName() +
+                ChatColor.GRAY + " - " + ChatColor.GOLD + spender.totalSpent() + " Para" +
+                ChatColor.GRAY + " (" + spender.totalPurchases() + " satın alma)");
+            rank++;
+        }
+        
+        if (spenders.isEmpty()) {
+            lines.add(ChatColor.GRAY + "Henüz veri bulunmuyor.");
+        }
+        return lines;
+    }
+    
+    private List<String> buildTopItems() {
+        List<TopItem> items = databaseManager.getTopItems(10);
+        List<String> lines = new ArrayList<>();
+        
+        lines.add(ChatColor.GOLD + "=== En Çok Satılan Ürünler ===");
+        lines.add(ChatColor.GRAY + "İlk 10 ürün gösteriliyor:");
+        
+        int rank = 1;
+        for (TopItem item : items) {
+            lines.add(ChatColor.YELLOW + String.valueOf(rank) + ". " + ChatColor.WHITE + item.itemName() +
+                ChatColor.GRAY + " - " + ChatColor.AQUA + item.timesPurchased() + " satış" +
+                ChatColor.GRAY + " (" + ChatColor.GOLD + item.totalRevenue() + " Para" + ChatColor.GRAY + ")");
+            rank++;
+        }
+        
+        if (items.isEmpty()) {
+            lines.add(ChatColor.GRAY + "Henüz veri bulunmuyor.");
+        }
+        return lines;
+    }
+    
+    private void handleArchive(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            showArchivedMonths(sender);
+            return;
+        }
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(ChatColor.RED + "Bu komutu sadece oyuncular kullanabilir!");
+            return;
+        }
+        YearMonth month;
+        try {
+            month = YearMonth.parse(args[1]);
+        } catch (DateTimeParseException e) {
+            sender.sendMessage(ChatColor.RED + "Ay YYYY-AA biçiminde olmalı! (örn. 2024-05)");
+            return;
+        }
+        UUID playerUuid = ((Player) sender).getUniqueId();
+        runQuery(sender, "archive", "Error reading archived purchases", () -> buildArchivedPurchases(playerUuid, month));
+    }
+    
+    private void showArchivedMonths(CommandSender sender) {
+        List<PurchaseArchive.Segment> months = databaseManager.getArchivedMonths();
+        sender.sendMessage(ChatColor.GOLD + "=== Arşivlenmiş Satın Almalar ===");
+        if (months.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "Arşivde kayıt bulunmuyor.");
+            return;
+        }
+        for (PurchaseArchive.Segment segment : months) {
+            sender.sendMessage(ChatColor.YELLOW + segment.month().toString() + ChatColor.GRAY + " - " + segment.rows() + " kayıt");
+        }
+        sender.sendMessage(ChatColor.GRAY + "Bir ayı görmek için: " + ChatColor.YELLOW + "/nomad stats archive <YYYY-AA>");
+    }
+    
+    // Reads the month's archive file; runs on a query worker
+    private List<String> buildArchivedPurchases(UUID playerUuid, YearMonth month) throws IOException {
+        List<PurchaseRow> rows = databaseManager.getArchivedPurchases(playerUuid, month);
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.GOLD + "=== " + month + " Arşivi ===");
+        if (rows.isEmpty()) {
+            lines.add(ChatColor.GRAY + "Bu ay için arşivlenmiş satın almanız yok.");
+            return lines;
+        }
+        for (PurchaseRow purchase : rows.subList(0, Math.min(rows.size(), MAX_ARCHIVED_ROWS))) {
+            String quantity = purchase.quantity() > 1 ? ChatColor.GRAY + " x" + purchase.quantity() : "";
+            lines.add(ChatColor.YELLOW + "• " + ChatColor.WHITE + purchase.itemName() + quantity +
+                ChatColor.GRAY + " - " + ChatColor.GOLD + purchase.price() + " Para" +
+                ChatColor.GRAY + " (" + formatTime(Instant.ofEpochMilli(purchase.purchasedAt())) + ")");
+        }
+        if (rows.size() > MAX_ARCHIVED_ROWS) {
+            lines.add(ChatColor.GRAY + "En yeni " + MAX_ARCHIVED_ROWS + " kayıt gösteriliyor, toplam " + rows.size() + ".");
+        }
+        return lines;
+    }
+    
+    private void handleRange(CommandSender sender, String[] args) {
+        if (args.length < 3) {
+            sender.sendMessage(ChatColor.RED + "Kullanım: /nomad stats range <başlangıç> <bitiş> (örn. 2024-05-01 2024-05-07)");
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(args[1]);
+            to = LocalDate.parse(args[2]);
+        } catch (DateTimeParseException e) {
+            sender.sendMessage(ChatColor.RED + "Tarihler YYYY-AA-GG biçiminde olmalı!");
+            return;
+        }
+        if (to.isBefore(from)) {
+            sender.sendMessage(ChatColor.RED + "Bitiş tarihi başlangıçtan önce olamaz!");
+            return;
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            sender.sendMessage(ChatColor.RED + "En fazla " + MAX_RANGE_DAYS + " günlük aralık sorgulanabilir!");
+            return;
+        }
+        runQuery(sender, "range", "Error showing sales range", () -> buildSalesRange(from, to));
+    }
+    
+    // Served from the daily rollups: one row per day plus one per item sold in the range
+    private List<String> buildSalesRange(LocalDate from, LocalDate to) throws SQLException {
+        ZoneId zone = databaseManager.getRollups().getZone();
+        long start = from.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = to.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        List<SalesBucket> days = databaseManager.getSales(SalesRollups.Granularity.DAILY, start, end);
+        
+        List<String> lines = new ArrayList<>();
+        lines.add(ChatColor.GOLD + "=== Satışlar: " + from + " - " + to + " ===");
+        if (days.isEmpty()) {
+            lines.add(ChatColor.GRAY + "Bu aralıkta satış bulunmuyor.");
+            return lines;
+        }
+        
+        boolean listDays = days.size() <= MAX_LISTED_DAYS;
+        DateTimeFormatter dayFormat = DateTimeFormatter.ISO_LOCAL_DATE.withZone(zone);
+        long itemsSold = 0;
+        double revenue = 0;
+        for (SalesBucket day : days) {
+            itemsSold += day.itemsSold();
+            revenue += day.revenue();
+            if (listDays) {
+                lines.add(ChatColor.YELLOW + dayFormat.format(Instant.ofEpochMilli(day.bucketStart())) + ": " +
+                    ChatColor.WHITE + day.itemsSold() + " adet" + ChatColor.GRAY + ", " + ChatColor.GOLD + day.revenue() + " Para");
             }
-            
-            rs.close();
-            
-        } catch (SQLException e) {
-            sender.sendMessage(ChatColor.RED + "İstatistikler yüklenirken hata oluştu!");
-            plugin.getLogger().severe("Error showing top items: " + e.getMessage());
         }
+        lines.add(ChatColor.GREEN + "Toplam: " + itemsSold + " adet, " + revenue + " Para");
+        addTopItems(lines, databaseManager.getTopItemsBetween(SalesRollups.Granularity.DAILY, start, end, 5));
+        return lines;
+    }
+    
+    // Served from the hourly rollups, which start on the hour: sales from the start of the
+    // rotation's first hour are counted, and the header says so when that is before the rotation
+    private List<String> buildRotationSales() throws SQLException {
+        List<String> lines = new ArrayList<>();
+        Instant rotationStart = plugin.getLastRefreshAt();
+        if (rotationStart == null) {
+            lines.add(ChatColor.GRAY + "Henüz bir rotasyon başlamadı.");
+            return lines;
+        }
+        
+        long start = SalesRollups.hourStart(rotationStart.toEpochMilli());
+        long end = SalesRollups.hourStart(System.currentTimeMillis()) + TimeUnit.HOURS.toMillis(1);
+        List<SalesBucket> hours = databaseManager.getSales(SalesRollups.Granularity.HOURLY, start, end);
+        
+        lines.add(ChatColor.GOLD + "=== Bu Rotasyonun Satışları ===");
+        lines.add(ChatColor.GRAY + "Başlangıç: " + formatTime(rotationStart));
+        if (start < rotationStart.toEpochMilli()) {
+            lines.add(ChatColor.GRAY + "Satışlar " + formatTime(Instant.ofEpochMilli(start))
+                + " itibarıyla sayılır (önceki rotasyonun son dakikaları dahil).");
+        }
+        long itemsSold = 0;
+        double revenue = 0;
+        for (SalesBucket hour : hours) {
+            itemsSold += hour.itemsSold();
+            revenue += hour.revenue();
+        }
+        if (itemsSold == 0) {
+            lines.add(ChatColor.GRAY + "Bu rotasyonda henüz satış yok.");
+            return lines;
+        }
+        lines.add(ChatColor.GREEN + "Toplam: " + itemsSold + " adet, " + revenue + " Para");
+        addTopItems(lines, databaseManager.getTopItemsBetween(SalesRollups.Granularity.HOURLY, start, end, 10));
+        return lines;
+    }
+    
+    private static void addTopItems(List<String> lines, List<TopItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        lines.add(ChatColor.GOLD + "En çok satanlar:");
+        int rank = 1;
+        for (TopItem item : items) {
+            lines.add(ChatColor.YELLOW + String.valueOf(rank) + ". " + ChatColor.WHITE + item.itemName() +
+                ChatColor.GRAY + " - " + ChatColor.AQUA + item.timesPurchased() + " adet" +
+                ChatColor.GRAY + " (" + ChatColor.GOLD + item.totalRevenue() + " Para" + ChatColor.GRAY + ")");
+            rank++;
+        }
+    }
+    
+    private void rebuildStats(CommandSender sender) {
+        if (!sender.hasPermission("nomad.admin")) {
+            sender.sendMessage(ChatColor.RED + "Bu komutu kullanmak için yetkiniz yok!");
+            return;
+        }
+        
+        if (!databaseManager.canRebuildHere()) {
+            sender.sendMessage(ChatColor.RED + "Eski satın almalar başka bir sunucunun arşivinde; yeniden hesaplamayı "
+                + "arşivi tutan sunucuda çalıştırın.");
+            return;
+        }
+        
+        String key = senderKey(sender) + ":rebuild";
+        if (!inFlight.add(key)) {
+            sender.sendMessage(ChatColor.YELLOW + "Bu sorgu zaten çalışıyor, lütfen bekleyin.");
+            return;
+        }
+        
+        sender.sendMessage(ChatColor.YELLOW + "İstatistikler satın alma geçmişinden yeniden hesaplanıyor...");
+        databaseManager.rebuildAggregates().whenComplete((ignored, error) -> {
+            if (error != null) {
+                plugin.getLogger().severe("Error rebuilding stats: " + error.getMessage());
+                deliver(sender, key, List.of(ChatColor.RED + "İstatistikler yeniden hesaplanırken hata oluştu!"));
+            } else {
+                deliver(sender, key, List.of(ChatColor.GREEN + "İstatistikler yeniden hesaplandı!"));
+            }
+        });
     }
     
     private void showStatsHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GOLD + "=== İstatistik Komutları ===");
-        sender.sendMessage(ChatColor.YELLOW + "/nomad stats" + ChatColor.GRAY + " - Kişisel satın alma geçmişini gösterir");
+        sender.sendMessage(ChatColor.YELLOW + "/nomad stats [sayfa]" + ChatColor.GRAY + " - Kişisel satın alma geçmişini gösterir");
         sender.sendMessage(ChatColor.YELLOW + "/nomad stats top" + ChatColor.GRAY + " - En çok para harcayan oyuncuları gösterir");
         sender.sendMessage(ChatColor.YELLOW + "/nomad stats items" + ChatColor.GRAY + " - En çok satılan ürünleri gösterir");
+        sender.sendMessage(ChatColor.YELLOW + "/nomad stats range <başlangıç> <bitiş>" + ChatColor.GRAY + " - İki tarih arasındaki günlük satışları gösterir");
+        sender.sendMessage(ChatColor.YELLOW + "/nomad stats rotation" + ChatColor.GRAY + " - Bu rotasyonda en çok satılanları gösterir");
+        sender.sendMessage(ChatColor.YELLOW + "/nomad stats archive [ay]" + ChatColor.GRAY + " - Arşivlenmiş eski satın almalarınızı gösterir");
         sender.sendMessage(ChatColor.YELLOW + "/nomad stats help" + ChatColor.GRAY + " - Bu yardım menüsünü gösterir");
+        if (sender.hasPermission("nomad.admin")) {
+            sender.sendMessage(ChatColor.YELLOW + "/nomad stats rebuild" + ChatColor.GRAY + " - Toplam ve dönemsel istatistikleri satın alma geçmişinden yeniden hesaplar");
+        }
+    }
+
+    // Same zone as rotations and the sales rollups; read per call since /nomad reload may change it
+    private String formatTime(Instant instant) {
+        return DATE_FORMAT.withZone(plugin.getSettings().getTimezone()).format(instant);
     }
 }
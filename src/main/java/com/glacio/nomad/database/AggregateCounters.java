@@ -0,0 +1,255 @@
+package com.glacio.nomad.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-player, per-material and per-player-material totals for purchases
+ * that are already in the purchases table but not yet folded into
+ * player_stats / item_popularity / player_item_stats.
+ * Deltas are added after each committed journal batch and flushed
+ * periodically with upserts, so a purchase costs no aggregate statements.
+ *
+ * <p>Counters are dropped once their flush is committed, so memory and
+ * flush cost follow recent activity rather than every player ever seen.
+ * Only the journal writer thread adds, flushes and drops counters.
+ */
+public class AggregateCounters {
+
+    private static final List<String> PLAYER_COLUMNS = List.of("player_uuid", "player_name", "total_purchases",
+        "total_spent", "first_purchase_date", "last_purchase_date", "first_purchase_at", "last_purchase_at");
+    private static final List<String> ITEM_COLUMNS = List.of("item_material", "item_name", "times_purchased",
+        "total_revenue", "last_purchased", "last_purchased_at");
+
+    private static final Map<SqlDialect, String> UPSERT_PLAYER = new EnumMap<>(SqlDialect.class);
+    private static final Map<SqlDialect, String> UPSERT_ITEM = new EnumMap<>(SqlDialect.class);
+    private static final Map<SqlDialect, String> UPSERT_PLAYER_ITEM = new EnumMap<>(SqlDialect.class);
+
+    // First and last purchases only move outwards, whichever server flushes when (or the archive)
+    static {
+        for (SqlDialect dialect : SqlDialect.values()) {
+            UPSERT_PLAYER.put(dialect, dialect.upsert("player_stats", "player_uuid", PLAYER_COLUMNS,
+                List.of("total_purchases", "total_spent"), List.of(),
+                List.of(SqlDialect.Keep.latest("last_purchase_at", "player_name", "last_purchase_date"),
+                    SqlDialect.Keep.earliest("first_purchase_at", "first_purchase_date"))));
+            UPSERT_ITEM.put(dialect, dialect.upsert("item_popularity", "item_material", ITEM_COLUMNS,
+                List.of("times_purchased", "total_revenue"), List.of(),
+                List.of(SqlDialect.Keep.latest("last_purchased_at", "last_purchased"))));
+            UPSERT_PLAYER_ITEM.put(dialect, dialect.upsert("player_item_stats", "player_uuid, item_material",
+                List.of("player_uuid", "item_material", "units"), List.of("units"), List.of()));
+        }
+    }
+
+    private record PlayerItem(UUID player, String material) {
+    }
+
+    static final class Counter {
+        final LongAdder count = new LongAdder();
+        final DoubleAdder sum = new DoubleAdder();
+        volatile String name;
+        volatile String firstDate;
+        volatile String lastDate;
+        volatile long firstAt;
+        volatile long lastAt;
+
+        void add(String name, long count, double sum, long at, String date) {
+            this.name = name;
+            if (firstDate == null) {
+                firstDate = date;
+                firstAt = at;
+            }
+            lastDate = date;
+            lastAt = at;
+            this.count.add(count);
+            this.sum.add(sum);
+        }
+    }
+
+    private record Delta(Map<?, Counter> source, Object key, Counter counter, String name, long count, double sum,
+                         String firstDate, String lastDate, long firstAt, long lastAt) {
+    }
+
+    private final Map<UUID, Counter> players = new ConcurrentHashMap<>();
+    private final Map<String, Counter> items = new ConcurrentHashMap<>();
+    private final Map<PlayerItem, Counter> playerItems = new ConcurrentHashMap<>();
+    // Written by the last flush, waiting for the caller's transaction to end
+    private final List<Delta> unconfirmed = new ArrayList<>();
+
+    public void add(PurchaseRecord record) {
+        players.computeIfAbsent(record.playerUuid(), k -> new Counter())
+            .add(record.playerName(), record.quantity(), record.price(), record.purchasedAt(), record.purchaseDate());
+        items.computeIfAbsent(record.itemMaterial(), k -> new Counter())
+            .add(record.itemName(), record.quantity(), record.price(), record.purchasedAt(), record.purchaseDate());
+        addUnits(record);
+    }
+
+    /** Counts only the units per player and material, for player_item_stats alone. */
+    public void addUnits(PurchaseRecord record) {
+        playerItems.computeIfAbsent(new PlayerItem(record.playerUuid(), record.itemMaterial()), k -> new Counter())
+            .add(null, record.quantity(), record.price(), record.purchasedAt(), record.purchaseDate());
+    }
+
+    /** Unflushed units a player bought per material, to be added to player_item_stats. */
+    public Map<String, Long> pendingUnits(UUID playerUuid) {
+        Map<String, Long> units = new HashMap<>();
+        for (Map.Entry<PlayerItem, Counter> entry : playerItems.entrySet()) {
+            long count = entry.getValue().count.sum();
+            if (count > 0 && entry.getKey().player().equals(playerUuid)) {
+                units.merge(entry.getKey().material(), count, Long::sum);
+            }
+        }
+        return units;
+    }
+
+    /** Unflushed units bought by a player, to be added to player_stats. */
+    public long pendingPurchases(UUID playerUuid) {
+        Counter counter = players.get(playerUuid);
+        return counter == null ? 0 : counter.count.sum();
+    }
+
+    /** Unflushed amount spent by a player, to be added to player_stats. */
+    public double pendingSpent(UUID playerUuid) {
+        Counter counter = players.get(playerUuid);
+        return counter == null ? 0.0 : counter.sum.sum();
+    }
+
+    /** Time of a player's first unflushed purchase, or 0 if there is none. */
+    public long pendingFirstAt(UUID playerUuid) {
+        Counter counter = players.get(playerUuid);
+        return counter == null ? 0L : counter.firstAt;
+    }
+
+    /** Time of a player's last unflushed purchase, or 0 if there is none. */
+    public long pendingLastAt(UUID playerUuid) {
+        Counter counter = players.get(playerUuid);
+        return counter == null ? 0L : counter.lastAt;
+    }
+
+    /**
+     * Writes all pending deltas with upserts. Runs on the writer thread inside
+     * the caller's transaction; if the flush fails the deltas are restored.
+     */
+    public void flush(PooledConnection writer, SqlDialect dialect) throws SQLException {
+        String upsertPlayer = UPSERT_PLAYER.get(dialect);
+        String upsertItem = UPSERT_ITEM.get(dialect);
+        List<Delta> playerDeltas = drain(players);
+        List<Delta> itemDeltas = drain(items);
+        List<Delta> playerItemDeltas = drain(playerItems);
+        if (playerDeltas.isEmpty() && itemDeltas.isEmpty() && playerItemDeltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            PreparedStatement playerStmt = writer.prepare(upsertPlayer);
+            for (Delta delta : playerDeltas) {
+                playerStmt.setString(1, delta.key().toString());
+                playerStmt.setString(2, delta.name());
+                playerStmt.setLong(3, delta.count());
+                playerStmt.setDouble(4, delta.sum());
+                playerStmt.setString(5, delta.firstDate());
+                playerStmt.setString(6, delta.lastDate());
+                playerStmt.setLong(7, delta.firstAt());
+                playerStmt.setLong(8, delta.lastAt());
+                playerStmt.addBatch();
+            }
+            playerStmt.executeBatch();
+
+            PreparedStatement itemStmt = writer.prepare(upsertItem);
+            for (Delta delta : itemDeltas) {
+                itemStmt.setString(1, delta.key().toString());
+                itemStmt.setString(2, delta.name());
+                itemStmt.setLong(3, delta.count());
+                itemStmt.setDouble(4, delta.sum());
+                itemStmt.setString(5, delta.lastDate());
+                itemStmt.setLong(6, delta.lastAt());
+                itemStmt.addBatch();
+            }
+            itemStmt.executeBatch();
+
+            PreparedStatement playerItemStmt = writer.prepare(UPSERT_PLAYER_ITEM.get(dialect));
+            for (Delta delta : playerItemDeltas) {
+                PlayerItem key = (PlayerItem) delta.key();
+                playerItemStmt.setString(1, key.player().toString());
+                playerItemStmt.setString(2, key.material());
+                playerItemStmt.setLong(3, delta.count());
+                playerItemStmt.addBatch();
+            }
+            playerItemStmt.executeBatch();
+        } catch (SQLException e) {
+            restore(playerDeltas);
+            restore(itemDeltas);
+            restore(playerItemDeltas);
+            throw e;
+        }
+        unconfirmed.addAll(playerDeltas);
+        unconfirmed.addAll(itemDeltas);
+        unconfirmed.addAll(playerItemDeltas);
+    }
+
+    /**
+     * Call once the transaction of the last flush is committed. Counters with
+     * nothing added since are dropped; a later purchase creates them again.
+     */
+    public void confirmFlush() {
+        for (Delta delta : unconfirmed) {
+            Counter counter = delta.counter();
+            if (counter.count.sum() == 0 && counter.sum.sum() == 0.0) {
+                delta.source().remove(delta.key(), counter);
+            }
+        }
+        unconfirmed.clear();
+    }
+
+    /** Call if the transaction of the last flush was rolled back; its deltas become pending again. */
+    public void undoFlush() {
+        restore(unconfirmed);
+        unconfirmed.clear();
+    }
+
+    /** Drops all pending deltas, used when the aggregate tables are rebuilt from purchases. */
+    public void clear() {
+        players.clear();
+        items.clear();
+        playerItems.clear();
+        unconfirmed.clear();
+    }
+
+    private static <K> List<Delta> drain(Map<K, Counter> counters) {
+        List<Delta> deltas = new ArrayList<>();
+        for (Map.Entry<K, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            long count = counter.count.sumThenReset();
+            double sum = counter.sum.sumThenReset();
+            if (count == 0 && sum == 0.0) {
+                continue;
+            }
+            String firstDate = counter.firstDate;
+            long firstAt = counter.firstAt;
+            counter.firstDate = null;
+            deltas.add(new Delta(counters, entry.getKey(), counter, counter.name, count, sum,
+                firstDate, counter.lastDate, firstAt, counter.lastAt));
+        }
+        return deltas;
+    }
+
+    private static void restore(List<Delta> deltas) {
+        for (Delta delta : deltas) {
+            Counter counter = delta.counter();
+            counter.count.add(delta.count());
+            counter.sum.add(delta.sum());
+            if (delta.firstDate() != null) {
+                counter.firstDate = delta.firstDate();
+                counter.firstAt = delta.firstAt();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.glacio.nomad.database;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.util.UUID;
+
+/**
+ * One archived purchase per line as a flat JSON object, written and read
+ * with the Gson that ships with the server.
+ */
+final class ArchiveCodec {
+
+    // Placeholder for rows whose stored UUID does not parse; they must still be archivable
+    private static final UUID UNKNOWN_PLAYER = new UUID(0L, 0L);
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+    // Field names are the on-disk format; existing segments must keep decoding
+    private record Line(long id, long at, String uuid, String player, String material, String item,
+                        double price, int qty, String date, String server) {
+    }
+
+    private ArchiveCodec() {
+    }
+
+    static String encode(ArchivedPurchase purchase) {
+        PurchaseRecord record = purchase.record();
+        return GSON.toJson(new Line(purchase.id(), record.purchasedAt(), record.playerUuid().toString(),
+            record.playerName(), record.itemMaterial(), record.itemName(), record.price(), record.quantity(),
+            record.purchaseDate(), record.serverName()));
+    }
+
+    static ArchivedPurchase decode(String line) {
+        Line fields;
+        try {
+            fields = GSON.fromJson(line, Line.class);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Malformed archived purchase: " + e.getMessage(), e);
+        }
+        if (fields == null) {
+            throw new IllegalArgumentException("Empty archived purchase");
+        }
+        PurchaseRecord record = new PurchaseRecord(parseUuid(fields.uuid()), fields.player(), fields.material(),
+            fields.item(), fields.price(), fields.qty(), fields.at(), fields.date(), fields.server());
+        return new ArchivedPurchase(fields.id(), record);
+    }
+
+    static UUID parseUuid(String value) {
+        try {
+            return value != null ? UUID.fromString(value) : UNKNOWN_PLAYER;
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN_PLAYER;
+        }
+    }
+}
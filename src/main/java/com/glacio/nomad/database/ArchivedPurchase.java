@@ -0,0 +1,10 @@
+package com.glacio.nomad.database;
+
+/** A purchase row moved out of the database, with its original row id. */
+public record ArchivedPurchase(long id, PurchaseRecord record) {
+
+    public PurchaseRow toRow() {
+        return new PurchaseRow(id, record.itemMaterial(), record.itemName(), record.price(),
+            record.quantity(), record.purchasedAt());
+    }
+}
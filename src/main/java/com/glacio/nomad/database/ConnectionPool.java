@@ -0,0 +1,33 @@
+package com.glacio.nomad.database;
+
+import java.sql.SQLException;
+
+/**
+ * Connections to the storage backend. All writes go through the single
+ * writer connection, owned by the purchase journal's thread; queries lease
+ * a reader so they never wait behind a write batch.
+ */
+public interface ConnectionPool {
+
+    void open() throws SQLException;
+
+    /**
+     * The writer connection. Must only be used from the writer thread once
+     * the journal has started.
+     */
+    PooledConnection writer() throws SQLException;
+
+    <T> T read(SqlFunction<PooledConnection, T> query) throws SQLException;
+
+    /**
+     * Leases every reader at once and runs {@code action} on each, e.g. to
+     * prepare statements ahead of the first query.
+     */
+    void forEachReader(SqlFunction<PooledConnection, ?> action) throws SQLException;
+
+    SqlDialect dialect();
+
+    void close() throws SQLException;
+
+    boolean isOpen();
+}
@@ -1,265 +1,937 @@
 package com.glacio.nomad.database;
 
 import com.glacio.nomad.Nomad;
+import com.glacio.nomad.metrics.LatencyHistogram;
+import com.glacio.nomad.metrics.MetricsRegistry;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
     
-    private final Nomad plugin;
-    private Connection connection;
+    private static final String HISTORY_FIRST_PAGE = """
+        SELECT id, item_material, item_name, price, quantity, purchased_at 
+        FROM purchases 
+        WHERE player_uuid = ? 
+        ORDER BY purchased_at DESC, id DESC 
+        LIMIT ?
+        """;
+    private static final String HISTORY_NEXT_PAGE = """
+        SELECT id, item_material, item_name, price, quantity, purchased_at 
+        FROM purchases 
+        WHERE player_uuid = ? AND purchased_at <= ? AND (purchased_at < ? OR id < ?) 
+        ORDER BY purchased_at DESC, id DESC 
+        LIMIT ?
+        """;
+    private static final String PLAYER_STATS = """
+        SELECT player_name, total_purchases, total_spent, first_purchase_at, last_purchase_at 
+        FROM player_stats 
+        WHERE player_uuid = ?
+        """;
+    private static final String ARCHIVED_BY = "archived_by";
+    // Archive id whose purchases are already counted in player_item_stats
+    private static final String UNITS_ARCHIVED = "player_item_stats_archive";
+    private static final String UNITS_BY_MATERIAL = """
+        SELECT item_material, units
+        FROM player_item_stats
+        WHERE player_uuid = ?
+        """;
+    
+    private final File dataFolder;
+    private final ConfigurationSection config;
+    private final String serverName;
+    private ConnectionPool pool;
     private final Logger logger;
+    private volatile PurchaseJournal journal;
+    private final AggregateCounters aggregates = new AggregateCounters();
+    private final SalesRollups rollups;
+    private final PurchaseArchive archive;
+    private final PlayerSessions sessions;
+    // Replaced wholesale on reload; only the journal writer thread updates them
+    private volatile Leaderboard<UUID> spenders = new Leaderboard<>(Leaderboard.RankBy.AMOUNT);
+    private volatile Leaderboard<String> items = new Leaderboard<>(Leaderboard.RankBy.COUNT);
+    private final boolean debug;
+    // Set when the database records another archive, so this server cannot rebuild totals
+    private volatile boolean archivedElsewhere;
+    private final LongAdder purchasesRecorded;
+    private final LongAdder rowsWritten;
+    private final LongAdder rowsArchived;
+    private final LatencyHistogram batchWrites;
+    private final LatencyHistogram aggregateFlushes;
+    private final LatencyHistogram historyQueries;
+    private final LatencyHistogram statsQueries;
+    private final LatencyHistogram salesQueries;
     
     public DatabaseManager(Nomad plugin) {
-        this.plugin = plugin;
-        this.logger = plugin.getLogger();
+        this(plugin.getDataFolder(), plugin.getConfig(), plugin.getServer().getName(), plugin.getLogger(), plugin.getMetrics());
+    }
+    
+    /** Settings are read from {@code config} when connecting; also used outside a server by the benchmarks. */
+    public DatabaseManager(File dataFolder, ConfigurationSection config, String serverName, Logger logger,
+                           MetricsRegistry metrics) {
+        this.dataFolder = dataFolder;
+        this.config = config;
+        this.serverName = serverName != null ? serverName : "unknown";
+        this.logger = logger;
+        this.debug = config.getBoolean("debug", false);
+        this.rollups = new SalesRollups(parseZone(config.getString("timezone", "")));
+        this.archive = new PurchaseArchive(new File(dataFolder, "archive").toPath(), rollups.getZone(), logger);
+        this.sessions = new PlayerSessions(config.getInt("database.session-cache.max-players", 1000),
+            config.getLong("database.session-cache.ttl-minutes", 30L) * 60_000L,
+            config.getInt("stats.page-size", 10));
+        sessions.setRefresher(this::loadSession);
+        
+        purchasesRecorded = metrics.counter("nomad_db_purchases_queued_total", "Purchase rows handed to the journal");
+        rowsWritten = metrics.counter("nomad_db_rows_written_total", "Purchase rows committed to the database");
+        rowsArchived = metrics.counter("nomad_db_rows_archived_total", "Purchase rows moved from the database to the archive");
+        batchWrites = metrics.histogram("nomad_db_batch_write_seconds", "Time to insert and commit one journal batch");
+        aggregateFlushes = metrics.histogram("nomad_db_aggregate_flush_seconds", "Time to upsert pending player_stats/item_popularity deltas");
+        String queries = "nomad_db_query_seconds";
+        String queryHelp = "Stats query time including the wait for a reader connection";
+        historyQueries = metrics.histogram(MetricsRegistry.labeled(queries, "query", "history"), queryHelp);
+        statsQueries = metrics.histogram(MetricsRegistry.labeled(queries, "query", "player_stats"), queryHelp);
+        salesQueries = metrics.histogram(MetricsRegistry.labeled(queries, "query", "sales"), queryHelp);
+        metrics.gauge("nomad_db_queue_depth", "Purchases waiting for the journal writer", () -> {
+            PurchaseJournal current = journal;
+            return current == null ? 0 : current.getQueueDepth();
+        });
+        metrics.gauge("nomad_db_spilled_purchases", "Purchases saved to failed-purchases.ndjson because the journal was full", () -> {
+            PurchaseJournal current = journal;
+            return current == null ? 0 : current.getSpilledRecords();
+        });
+        metrics.gauge("nomad_db_failed_writes", "Journal batch writes that failed, including retries", () -> {
+            PurchaseJournal current = journal;
+            return current == null ? 0 : current.getFailedWrites();
+        });
     }
     
     public boolean connect() {
         try {
-            // SQLite database file will be created in plugin data folder
-            String dbPath = plugin.getDataFolder().getAbsolutePath() + "/database.db";
-            String url = "jdbc:sqlite:" + dbPath;
+            pool = createPool();
+            pool.open();
+            logger.info(pool.dialect().getDisplayName() + " database connected successfully!");
             
-            connection = DriverManager.getConnection(url);
-            logger.info("SQLite database connected successfully!");
+            // Bring the schema up to date before anything else touches it
+            new SchemaMigrator(pool.writer().getConnection(), pool.dialect(), rollups.getZone(), logger).migrate();
+            logger.info("Database tables created/verified successfully!");
+            archive.load();
+            loadLeaderboards();
             
-            // Create tables if they don't exist
-            createTables();
+            // Purchases are written behind by a dedicated thread
+            int capacity = config.getInt("database.queue-capacity", 10000);
+            int batchSize = config.getInt("database.batch-size", 256);
+            journal = new PurchaseJournal(this::writePurchaseBatch, this::saveFailedPurchases, capacity, batchSize, logger);
+            requeueFailedPurchases();
+            long aggregateFlushMillis = config.getLong("database.aggregate-flush-seconds", 5L) * 1000L;
+            journal.schedule("aggregate flush", aggregateFlushMillis, this::flushAggregates);
+            // Only old SQLite files have TEXT-only dates; server databases start at the current schema
+            TimestampBackfill backfill = pool.dialect() == SqlDialect.SQLITE
+                ? new TimestampBackfill(config.getInt("database.backfill-chunk-size", 2000), logger) : null;
+            if (backfill != null) {
+                journal.schedule("timestamp backfill", 100L, () -> {
+                    boolean wasComplete = backfill.isComplete();
+                    backfill.runChunk(pool.writer());
+                    // Rows that only just got a timestamp were left out of the sales rollups
+                    if (!wasComplete && backfill.isComplete() && backfill.getConverted() > 0) {
+                        rebuildRollups();
+                    }
+                });
+            } else {
+                // Other servers write to the same tables; pick up their purchases now and then
+                long reloadMillis = config.getLong("database.leaderboard-reload-seconds", 60L) * 1000L;
+                journal.schedule("leaderboard reload", reloadMillis, () -> {
+                    flushAggregates();
+                    loadLeaderboards();
+                });
+            }
+            // On a shared database only one server may archive, or rows end up in several archives
+            long retentionDays = config.getLong("database.retention.archive-after-days", 0L);
+            boolean retentionOwner = pool.dialect() == SqlDialect.SQLITE
+                || config.getBoolean("database.retention.owner", false);
+            boolean archiveHere = retentionDays > 0 && retentionOwner && claimArchive();
+            String archivedBy = readMeta(ARCHIVED_BY);
+            archivedElsewhere = archivedBy != null && !archivedBy.equals(archive.getId());
+            if (archivedElsewhere) {
+                logger.info("Purchases in this database are archived by another server; totals can only be rebuilt there.");
+            } else {
+                countArchivedUnits();
+            }
+            if (archiveHere) {
+                BooleanSupplier timestampsReady = backfill != null ? backfill::isComplete : () -> true;
+                PurchaseRetention retention = new PurchaseRetention(pool, archive, retentionDays * 86_400_000L,
+                    config.getInt("database.retention.chunk-size", 1000),
+                    config.getLong("database.retention.check-interval-minutes", 60L) * 60_000L,
+                    config.getInt("database.retention.vacuum-pages-per-step", 1000),
+                    timestampsReady, rowsArchived, logger);
+                journal.schedule("purchase retention", 200L, retention::runStep);
+            }
+            journal.start();
             return true;
             
         } catch (SQLException e) {
-            logger.severe("Failed to connect to SQLite database: " + e.getMessage());
+            logger.severe("Failed to connect to database: " + e.getMessage());
+            disconnect();
+            return false;
+        }
+    }
+    
+    /**
+     * Records this server's archive as the one for the database, unless
+     * another archive is recorded already. Before the journal starts.
+     */
+    private boolean claimArchive() throws SQLException {
+        String id;
+        try {
+            id = archive.getOrCreateId();
+        } catch (IOException e) {
+            logger.severe("Could not set up the purchase archive, not archiving: " + e.getMessage());
             return false;
         }
+        String claimed = readMeta(ARCHIVED_BY);
+        if (claimed == null) {
+            try (PreparedStatement pstmt = pool.writer().getConnection().prepareStatement(
+                    "INSERT INTO nomad_meta (meta_key, meta_value) VALUES (?, ?)")) {
+                pstmt.setString(1, ARCHIVED_BY);
+                pstmt.setString(2, id);
+                pstmt.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                // Another owner started at the same moment; whoever inserted first archives
+                claimed = readMeta(ARCHIVED_BY);
+                if (claimed == null) {
+                    throw e;
+                }
+            }
+        }
+        if (!claimed.equals(id)) {
+            logger.severe("Another server already archives this database (archive " + claimed + "), not archiving here. "
+                + "Set database.retention.owner: false on one of them, or move its archive/ folder with ownership.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds the purchases archived before player_item_stats existed to it,
+     * once per archive. Before the journal starts, so nothing has been
+     * archived since; later archived rows were counted when they were written.
+     */
+    private void countArchivedUnits() throws SQLException {
+        String id = archive.getId();
+        if (id == null || id.equals(readMeta(UNITS_ARCHIVED))) {
+            return;
+        }
+        if (archive.isEmpty()) {
+            writeMeta(UNITS_ARCHIVED, id);
+            return;
+        }
+        AggregateCounters archivedUnits = new AggregateCounters();
+        try {
+            archive.forEach(purchase -> archivedUnits.addUnits(purchase.record()));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SQLException("Could not read the purchase archive: " + e.getMessage(), e);
+        }
+        Connection connection = pool.writer().getConnection();
+        connection.setAutoCommit(false);
+        try {
+            archivedUnits.flush(pool.writer(), pool.dialect());
+            writeMeta(UNITS_ARCHIVED, id);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        logger.info("Counted archived purchases in the per-item purchase totals.");
+    }
+
+    private void writeMeta(String key, String value) throws SQLException {
+        Connection connection = pool.writer().getConnection();
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM nomad_meta WHERE meta_key = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                 "INSERT INTO nomad_meta (meta_key, meta_value) VALUES (?, ?)")) {
+            delete.setString(1, key);
+            delete.executeUpdate();
+            insert.setString(1, key);
+            insert.setString(2, value);
+            insert.executeUpdate();
+        }
+    }
+
+    private String readMeta(String key) throws SQLException {
+        try (PreparedStatement pstmt = pool.writer().getConnection().prepareStatement(
+                "SELECT meta_value FROM nomad_meta WHERE meta_key = ?")) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Prepares the stats queries on every reader connection, so the first
+     * lookups after startup do not pay for parsing and planning. Call after
+     * {@link #connect()} and before queries are served.
+     */
+    public void prepareStatements() throws SQLException {
+        List<String> queries = new ArrayList<>(List.of(HISTORY_FIRST_PAGE, HISTORY_NEXT_PAGE, PLAYER_STATS));
+        queries.addAll(SalesRollups.readQueries());
+        pool.forEachReader(reader -> {
+            for (String sql : queries) {
+                reader.prepare(sql);
+            }
+            return null;
+        });
+    }
+    
+    // NomadSettings reports an invalid zone; here it just falls back like the schedule does
+    private static ZoneId parseZone(String name) {
+        if (name == null || name.isBlank()) {
+            return ZoneId.systemDefault();
+        }
+        try {
+            return ZoneId.of(name.trim());
+        } catch (DateTimeException e) {
+            return ZoneId.systemDefault();
+        }
+    }
+    
+    private ConnectionPool createPool() throws SQLException {
+        int readers = config.getInt("database.reader-connections", 3);
+        int busyTimeoutMs = config.getInt("database.busy-timeout-ms", 5000);
+        String type = config.getString("database.type", "sqlite");
+        
+        if ("sqlite".equalsIgnoreCase(type)) {
+            // SQLite database file will be created in plugin data folder
+            String dbPath = dataFolder.getAbsolutePath() + "/database.db";
+            return new SqliteConnectionPool(dbPath, readers,
+                config.getInt("database.cache-size-kb", 8192),
+                config.getInt("database.mmap-size-mb", 64),
+                busyTimeoutMs);
+        }
+        if (!"mysql".equalsIgnoreCase(type) && !"mariadb".equalsIgnoreCase(type)) {
+            throw new SQLException("Unknown database.type '" + type + "', expected sqlite or mysql");
+        }
+        
+        String driver = config.getString("database.mysql.driver", "com.mysql.cj.jdbc.Driver");
+        if (driver != null && !driver.isBlank()) {
+            try {
+                // Registers the driver with DriverManager from the plugin's class loader
+                Class.forName(driver.trim(), true, getClass().getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("JDBC driver " + driver + " is not available", e);
+            }
+        }
+        
+        String url = config.getString("database.mysql.url", "");
+        if (url == null || url.isBlank()) {
+            url = "jdbc:mysql://" + config.getString("database.mysql.host", "localhost")
+                + ":" + config.getInt("database.mysql.port", 3306)
+                + "/" + config.getString("database.mysql.database", "nomad")
+                + "?connectTimeout=" + config.getInt("database.mysql.connect-timeout-ms", 5000)
+                // Sends each journal batch as one multi-row INSERT
+                + "&rewriteBatchedStatements=true";
+            String properties = config.getString("database.mysql.properties", "");
+            if (properties != null && !properties.isBlank()) {
+                url += "&" + properties.trim();
+            }
+        }
+        return new JdbcConnectionPool(url.trim(),
+            config.getString("database.mysql.username", "root"),
+            config.getString("database.mysql.password", ""),
+            SqlDialect.MYSQL, readers, busyTimeoutMs,
+            config.getInt("database.mysql.validation-interval-seconds", 30));
+    }
+    
+    /**
+     * Waits for queued purchases to reach the database. Called on disable,
+     * before {@link #disconnect()}.
+     */
+    public void flush() {
+        if (journal != null) {
+            journal.shutdown(config.getLong("database.shutdown-timeout-ms", 10000L));
+            journal = null;
+        }
     }
     
     public void disconnect() {
+        flush();
         try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-                logger.info("SQLite database disconnected!");
+            if (pool != null && pool.isOpen()) {
+                pool.close();
+                logger.info("Database disconnected!");
             }
+            pool = null;
         } catch (SQLException e) {
             logger.severe("Error disconnecting from database: " + e.getMessage());
         }
     }
     
-    private void createTables() {
-        try (Statement stmt = connection.createStatement()) {
-            
-            // Player purchases table
-            String createPurchasesTable = """
-                CREATE TABLE IF NOT EXISTS purchases (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    player_uuid TEXT NOT NULL,
-                    player_name TEXT NOT NULL,
-                    item_material TEXT NOT NULL,
-                    item_name TEXT NOT NULL,
-                    price REAL NOT NULL,
-                    purchase_date TEXT NOT NULL,
-                    server_name TEXT
-                )
-                """;
-            
-            // Player statistics table
-            String createStatsTable = """
-                CREATE TABLE IF NOT EXISTS player_stats (
-                    player_uuid TEXT PRIMARY KEY,
-                    player_name TEXT NOT NULL,
-                    total_purchases INTEGER DEFAULT 0,
-                    total_spent REAL DEFAULT 0.0,
-                    first_purchase_date TEXT,
-                    last_purchase_date TEXT
-                )
-                """;
-            
-            // Item popularity table
-            String createPopularityTable = """
-                CREATE TABLE IF NOT EXISTS item_popularity (
-                    item_material TEXT PRIMARY KEY,
-                    item_name TEXT NOT NULL,
-                    times_purchased INTEGER DEFAULT 0,
-                    total_revenue REAL DEFAULT 0.0,
-                    last_purchased TEXT
-                )
-                """;
-            
-            stmt.execute(createPurchasesTable);
-            stmt.execute(createStatsTable);
-            stmt.execute(createPopularityTable);
-            
-            logger.info("Database tables created/verified successfully!");
-            
+    /** Queues one purchase row; {@code price} is the total paid for all {@code quantity} units. */
+    public void recordPurchase(UUID playerUuid, String playerName, String itemMaterial, 
+                             String itemName, double price, int quantity) {
+        if (journal == null) {
+            logger.warning("Database is not connected, purchase of " + playerName + " was not recorded.");
+            return;
+        }
+        
+        long purchasedAt = System.currentTimeMillis();
+        String currentDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(purchasedAt), ZoneId.systemDefault()).toString();
+        journal.enqueue(new PurchaseRecord(playerUuid, playerName, itemMaterial, itemName, price, quantity,
+            purchasedAt, currentDate, serverName));
+        purchasesRecorded.increment();
+        
+        // Counted above; a log line per purchase is only worth its cost while debugging
+        if (debug) {
+            logger.info("Purchase recorded: " + playerName + " bought " + quantity + "x " + itemName + " for " + price);
+        }
+    }
+    
+    // Runs on the journal writer thread; the whole batch is one transaction
+    private void writePurchaseBatch(List<PurchaseRecord> batch) throws SQLException {
+        String insertPurchase = """
+            INSERT INTO purchases (player_uuid, player_name, item_material, item_name, price, quantity,
+                                   purchase_date, purchased_at, server_name)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+        
+        long start = System.nanoTime();
+        PooledConnection writer = pool.writer();
+        Connection connection = writer.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement pstmt = writer.prepare(insertPurchase);
+            for (PurchaseRecord record : batch) {
+                pstmt.setString(1, record.playerUuid().toString());
+                pstmt.setString(2, record.playerName());
+                pstmt.setString(3, record.itemMaterial());
+                pstmt.setString(4, record.itemName());
+                pstmt.setDouble(5, record.price());
+                pstmt.setInt(6, record.quantity());
+                pstmt.setString(7, record.purchaseDate());
+                pstmt.setLong(8, record.purchasedAt());
+                pstmt.setString(9, record.serverName());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            connection.commit();
         } catch (SQLException e) {
-            logger.severe("Error creating database tables: " + e.getMessage());
+            // The journal retries the batch; a lost connection must not hide the original error
+            try {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
         }
+        // Committed: an error from here on must not make the journal write the batch again
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.warning("Could not restore auto-commit on the writer connection: " + e.getMessage());
+        }
+        batchWrites.recordSince(start);
+        rowsWritten.add(batch.size());
+        
+        // Stats tables are updated in bulk by flushAggregates
+        Leaderboard<UUID> spenders = this.spenders;
+        Leaderboard<String> items = this.items;
+        for (PurchaseRecord record : batch) {
+            aggregates.add(record);
+            rollups.add(record);
+            spenders.add(record.playerUuid(), record.playerName(), record.quantity(), record.price());
+            items.add(record.itemMaterial(), record.itemName(), record.quantity(), record.price());
+        }
+        sessions.apply(batch);
     }
     
-    public void recordPurchase(UUID playerUuid, String playerName, String itemMaterial, 
-                             String itemName, double price) {
+    // Purchases the journal could not hold or write while shutting down; queued again on the next connect.
+    // Called by the journal writer and, when the queue is full, by whoever records a purchase
+    private synchronized void saveFailedPurchases(List<PurchaseRecord> batch) throws IOException {
+        Files.createDirectories(dataFolder.toPath());
+        try (FileOutputStream out = new FileOutputStream(failedPurchasesFile(), true)) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (PurchaseRecord record : batch) {
+                writer.write(ArchiveCodec.encode(new ArchivedPurchase(0L, record)));
+                writer.newLine();
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    private void requeueFailedPurchases() {
+        File file = failedPurchasesFile();
+        if (!file.exists()) {
+            return;
+        }
+        List<PurchaseRecord> records = new ArrayList<>();
         try {
-            String currentDate = java.time.LocalDateTime.now().toString();
-            String serverName = plugin.getServer().getName() != null ? plugin.getServer().getName() : "unknown";
-            
-            // Insert purchase record
-            String insertPurchase = """
-                INSERT INTO purchases (player_uuid, player_name, item_material, item_name, price, purchase_date, server_name)
-                VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
-            
-            try (PreparedStatement pstmt = connection.prepareStatement(insertPurchase)) {
-                pstmt.setString(1, playerUuid.toString());
-                pstmt.setString(2, playerName);
-                pstmt.setString(3, itemMaterial);
-                pstmt.setString(4, itemName);
-                pstmt.setDouble(5, price);
-                pstmt.setString(6, currentDate);
-                pstmt.setString(7, serverName);
-                pstmt.executeUpdate();
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    records.add(ArchiveCodec.decode(line).record());
+                }
             }
-            
-            // Update player statistics
-            updatePlayerStats(playerUuid, playerName, price, currentDate);
-            
-            // Update item popularity
-            updateItemPopularity(itemMaterial, itemName, price, currentDate);
-            
-            logger.info("Purchase recorded: " + playerName + " bought " + itemName + " for " + price);
-            
+            // Deleted before queuing, purchases that do not fit are saved to a fresh file
+            Files.delete(file.toPath());
+            for (PurchaseRecord record : records) {
+                journal.enqueue(record);
+            }
+            int requeued = records.size();
+            logger.info("Queued " + requeued + " purchases that could not be written before the last shutdown.");
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Could not read " + file.getName() + ", keeping it for the next start: " + e.getMessage());
+        }
+    }
+
+    private File failedPurchasesFile() {
+        return new File(dataFolder, "failed-purchases.ndjson");
+    }
+
+    private void flushAggregates() throws SQLException {
+        long start = System.nanoTime();
+        PooledConnection writer = pool.writer();
+        Connection connection = writer.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            aggregates.flush(writer, pool.dialect());
+            rollups.flush(writer, pool.dialect());
+            connection.commit();
         } catch (SQLException e) {
-            logger.severe("Error recording purchase: " + e.getMessage());
+            aggregates.undoFlush();
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
         }
+        aggregates.confirmFlush();
+        aggregateFlushes.recordSince(start);
     }
     
-    private void updatePlayerStats(UUID playerUuid, String playerName, double price, String date) throws SQLException {
-        String checkPlayer = "SELECT player_uuid FROM player_stats WHERE player_uuid = ?";
+    /**
+     * Fills fresh leaderboards from the aggregate tables and swaps them in.
+     * Runs on the journal writer thread, or before it starts, so no batch
+     * can be applied to the old boards in between.
+     */
+    private void loadLeaderboards() throws SQLException {
+        Leaderboard<UUID> loadedSpenders = new Leaderboard<>(Leaderboard.RankBy.AMOUNT);
+        Leaderboard<String> loadedItems = new Leaderboard<>(Leaderboard.RankBy.COUNT);
         
-        try (PreparedStatement pstmt = connection.prepareStatement(checkPlayer)) {
-            pstmt.setString(1, playerUuid.toString());
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                // Update existing player stats
-                String updateStats = """
-                    UPDATE player_stats 
-                    SET player_name = ?, total_purchases = total_purchases + 1, 
-                        total_spent = total_spent + ?, last_purchase_date = ?
-                    WHERE player_uuid = ?
-                    """;
-                
-                try (PreparedStatement updateStmt = connection.prepareStatement(updateStats)) {
-                    updateStmt.setString(1, playerName);
-                    updateStmt.setDouble(2, price);
-                    updateStmt.setString(3, date);
-                    updateStmt.setString(4, playerUuid.toString());
-                    updateStmt.executeUpdate();
+        try (Statement stmt = pool.writer().getConnection().createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT player_uuid, player_name, total_purchases, total_spent FROM player_stats")) {
+                while (rs.next()) {
+                    UUID playerUuid;
+                    try {
+                        playerUuid = UUID.fromString(rs.getString("player_uuid"));
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+                    loadedSpenders.put(playerUuid, rs.getString("player_name"),
+                        rs.getLong("total_purchases"), rs.getDouble("total_spent"));
                 }
-            } else {
-                // Insert new player stats
-                String insertStats = """
-                    INSERT INTO player_stats (player_uuid, player_name, total_purchases, total_spent, first_purchase_date, last_purchase_date)
-                    VALUES (?, ?, 1, ?, ?, ?)
-                    """;
-                
-                try (PreparedStatement insertStmt = connection.prepareStatement(insertStats)) {
-                    insertStmt.setString(1, playerUuid.toString());
-                    insertStmt.setString(2, playerName);
-                    insertStmt.setDouble(3, price);
-                    insertStmt.setString(4, date);
-                    insertStmt.setString(5, date);
-                    insertStmt.executeUpdate();
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT item_material, item_name, times_purchased, total_revenue FROM item_popularity")) {
+                while (rs.next()) {
+                    loadedItems.put(rs.getString("item_material"), rs.getString("item_name"),
+                        rs.getLong("times_purchased"), rs.getDouble("total_revenue"));
                 }
             }
         }
+        
+        spenders = loadedSpenders;
+        items = loadedItems;
+        if (debug) {
+            logger.info("Leaderboards loaded: " + loadedSpenders.size() + " players, " + loadedItems.size() + " items");
+        }
     }
     
-    private void updateItemPopularity(String itemMaterial, String itemName, double price, String date) throws SQLException {
-        String checkItem = "SELECT item_material FROM item_popularity WHERE item_material = ?";
-        
-        try (PreparedStatement pstmt = connection.prepareStatement(checkItem)) {
-            pstmt.setString(1, itemMaterial);
-            ResultSet rs = pstmt.executeQuery();
+    /**
+     * False when the database records an archive other than this server's:
+     * it is needed to keep lifetime totals, so {@link #rebuildAggregates}
+     * must run on the server that has it. Does not depend on local retention settings.
+     */
+    public boolean canRebuildHere() {
+        return !archivedElsewhere;
+    }
+
+    /**
+     * Recomputes player_stats and item_popularity from the purchases table,
+     * which stays the source of truth. Runs on the journal writer thread.
+     */
+    public CompletableFuture<Void> rebuildAggregates() {
+        if (journal == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Database is not connected"));
+        }
+        if (archivedElsewhere) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                "Archived purchases are kept by the retention owner, rebuild there"));
+        }
+        return journal.submit(() -> {
+            // Another server may have started archiving since this one connected
+            String archivedBy = readMeta(ARCHIVED_BY);
+            if (archivedBy != null && !archivedBy.equals(archive.getId())) {
+                archivedElsewhere = true;
+                throw new IllegalStateException("Archived purchases are kept by the retention owner, rebuild there");
+            }
+            String rebuildStats = """
+                INSERT INTO player_stats (player_uuid, player_name, total_purchases, total_spent,
+                                          first_purchase_date, last_purchase_date, first_purchase_at, last_purchase_at)
+                SELECT p.player_uuid,
+                       (SELECT player_name FROM purchases l WHERE l.player_uuid = p.player_uuid ORDER BY l.id DESC LIMIT 1),
+                       SUM(p.quantity), SUM(p.price), MIN(p.purchase_date), MAX(p.purchase_date),
+                       MIN(p.purchased_at), MAX(p.purchased_at)
+                FROM purchases p
+                GROUP BY p.player_uuid
+                """;
+            
+            String rebuildPlayerItems = """
+                INSERT INTO player_item_stats (player_uuid, item_material, units)
+                SELECT player_uuid, item_material, SUM(quantity)
+                FROM purchases
+                GROUP BY player_uuid, item_material
+                """;
             
-            if (rs.next()) {
-                // Update existing item popularity
-                String updatePopularity = """
-                    UPDATE item_popularity 
-                    SET times_purchased = times_purchased + 1, total_revenue = total_revenue + ?, last_purchased = ?
-                    WHERE item_material = ?
-                    """;
-                
-                try (PreparedStatement updateStmt = connection.prepareStatement(updatePopularity)) {
-                    updateStmt.setDouble(1, price);
-                    updateStmt.setString(2, date);
-                    updateStmt.setString(3, itemMaterial);
-                    updateStmt.executeUpdate();
+            String rebuildPopularity = """
+                INSERT INTO item_popularity (item_material, item_name, times_purchased, total_revenue, last_purchased, last_purchased_at)
+                SELECT p.item_material,
+                       (SELECT item_name FROM purchases l WHERE l.item_material = p.item_material ORDER BY l.id DESC LIMIT 1),
+                       SUM(p.quantity), SUM(p.price), MAX(p.purchase_date), MAX(p.purchased_at)
+                FROM purchases p
+                GROUP BY p.item_material
+                """;
+            
+            Connection connection = pool.writer().getConnection();
+            connection.setAutoCommit(false);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.executeUpdate("DELETE FROM player_stats");
+                stmt.executeUpdate("DELETE FROM item_popularity");
+                stmt.executeUpdate("DELETE FROM player_item_stats");
+                stmt.executeUpdate(rebuildStats);
+                stmt.executeUpdate(rebuildPopularity);
+                stmt.executeUpdate(rebuildPlayerItems);
+                rollups.rebuild(connection);
+                foldArchive(true);
+                if (archive.getId() != null) {
+                    writeMeta(UNITS_ARCHIVED, archive.getId());
                 }
-            } else {
-                // Insert new item popularity
-                String insertPopularity = """
-                    INSERT INTO item_popularity (item_material, item_name, times_purchased, total_revenue, last_purchased)
-                    VALUES (?, ?, 1, ?, ?)
-                    """;
-                
-                try (PreparedStatement insertStmt = connection.prepareStatement(insertPopularity)) {
-                    insertStmt.setString(1, itemMaterial);
-                    insertStmt.setString(2, itemName);
-                    insertStmt.setDouble(3, price);
-                    insertStmt.setString(4, date);
-                    insertStmt.executeUpdate();
+                connection.commit();
+                // Everything pending is already in purchases, so it is covered by the rebuild
+                aggregates.clear();
+                rollups.clear();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            loadLeaderboards();
+            for (UUID player : sessions.players()) {
+                sessions.put(player, readSession(player));
+            }
+            logger.info("Player statistics, item popularity and sales rollups rebuilt from purchase history.");
+        });
+    }
+    
+    /**
+     * Adds archived purchases, which are no longer in the purchases table, to
+     * tables that were just rebuilt from it. Writer thread only, inside the
+     * rebuild's transaction.
+     */
+    private void foldArchive(boolean includeAggregates) throws SQLException {
+        if (archive.isEmpty()) {
+            return;
+        }
+        AggregateCounters archivedTotals = new AggregateCounters();
+        SalesRollups archivedSales = new SalesRollups(rollups.getZone());
+        try {
+            archive.forEach(purchase -> {
+                if (includeAggregates) {
+                    archivedTotals.add(purchase.record());
                 }
+                archivedSales.add(purchase.record());
+            });
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SQLException("Could not read the purchase archive: " + e.getMessage(), e);
+        }
+        archivedTotals.flush(pool.writer(), pool.dialect());
+        archivedSales.flush(pool.writer(), pool.dialect());
+    }
+    
+    // Writer thread only
+    private void rebuildRollups() throws SQLException {
+        Connection connection = pool.writer().getConnection();
+        connection.setAutoCommit(false);
+        try {
+            rollups.rebuild(connection);
+            foldArchive(false);
+            connection.commit();
+            rollups.clear();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        logger.info("Sales rollups rebuilt after the timestamp backfill.");
+    }
+    
+    /**
+     * Returns one page of a player's purchases, newest first. Pass the
+     * previous page's {@link PurchasePage#next()} as {@code after}, or null
+     * for the first page.
+     */
+    public PurchasePage getPlayerPurchases(UUID playerUuid, PurchaseCursor after, int pageSize) throws SQLException {
+        return timedRead(historyQueries, reader -> {
+            PreparedStatement pstmt;
+            if (after == null) {
+                pstmt = reader.prepare(HISTORY_FIRST_PAGE);
+                pstmt.setString(1, playerUuid.toString());
+                pstmt.setInt(2, pageSize + 1);
+            } else {
+                pstmt = reader.prepare(HISTORY_NEXT_PAGE);
+                pstmt.setString(1, playerUuid.toString());
+                // Spelled out instead of a row-value comparison so every backend range-scans the index
+                pstmt.setLong(2, after.purchasedAt());
+                pstmt.setLong(3, after.purchasedAt());
+                pstmt.setLong(4, after.id());
+                pstmt.setInt(5, pageSize + 1);
+            }
+            
+            // One extra row tells us whether there is a next page
+            List<PurchaseRow> rows = readRows(pstmt, pageSize + 1);
+            
+            if (rows.size() > pageSize) {
+                rows = rows.subList(0, pageSize);
+                return new PurchasePage(rows, rows.get(pageSize - 1).cursor());
+            }
+            return new PurchasePage(rows, null);
+        });
+    }
+    
+    private static List<PurchaseRow> readRows(PreparedStatement pstmt, int expected) throws SQLException {
+        List<PurchaseRow> rows = new ArrayList<>(expected);
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new PurchaseRow(rs.getLong("id"), rs.getString("item_material"),
+                    rs.getString("item_name"), rs.getDouble("price"), rs.getInt("quantity"), rs.getLong("purchased_at")));
             }
         }
+        return rows;
     }
     
-    public ResultSet getPlayerPurchases(UUID playerUuid) throws SQLException {
-        String query = """
-            SELECT item_material, item_name, price, purchase_date 
-            FROM purchases 
-            WHERE player_uuid = ? 
-            ORDER BY purchase_date DESC
-            """;
-        
-        PreparedStatement pstmt = connection.prepareStatement(query);
+    /**
+     * Lifetime totals for a player, from their session when they have one,
+     * otherwise from player_stats including purchases that have not been
+     * flushed into the table yet. Null if the player has never bought anything.
+     */
+    public PlayerStats getPlayerStats(UUID playerUuid) throws SQLException {
+        PlayerSession session = sessions.get(playerUuid);
+        if (session != null) {
+            return session.stats();
+        }
+        PlayerStats stored = timedRead(statsQueries, reader -> readStoredStats(reader, playerUuid));
+        return withPending(playerUuid, stored);
+    }
+    
+    private static PlayerStats readStoredStats(PooledConnection connection, UUID playerUuid) throws SQLException {
+        PreparedStatement pstmt = connection.prepare(PLAYER_STATS);
         pstmt.setString(1, playerUuid.toString());
-        return pstmt.executeQuery();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new PlayerStats(rs.getString("player_name"), rs.getLong("total_purchases"),
+                rs.getDouble("total_spent"), rs.getLong("first_purchase_at"), rs.getLong("last_purchase_at"));
+        }
     }
     
-    public ResultSet getTopItems(int limit) throws SQLException {
-        String query = """
-            SELECT item_material, item_name, times_purchased, total_revenue 
-            FROM item_popularity 
-            ORDER BY times_purchased DESC 
-            LIMIT ?
-            """;
+    private PlayerStats withPending(UUID playerUuid, PlayerStats stored) {
+        long pendingPurchases = aggregates.pendingPurchases(playerUuid);
+        if (pendingPurchases == 0) {
+            return stored;
+        }
+        double pendingSpent = aggregates.pendingSpent(playerUuid);
+        long pendingLastAt = aggregates.pendingLastAt(playerUuid);
+        if (stored == null) {
+            return new PlayerStats(null, pendingPurchases, pendingSpent, aggregates.pendingFirstAt(playerUuid), pendingLastAt);
+        }
+        return new PlayerStats(stored.playerName(), stored.totalPurchases() + pendingPurchases,
+            stored.totalSpent() + pendingSpent, stored.firstPurchaseAt(), Math.max(stored.lastPurchaseAt(), pendingLastAt));
+    }
+    
+    /** The player's in-memory session, or null if it is not loaded (yet). */
+    public PlayerSession getSession(UUID playerUuid) {
+        return sessions.get(playerUuid);
+    }
+    
+    /**
+     * Loads a player's session in the background, e.g. when they join or
+     * their session expired. Does nothing while the database is not connected.
+     */
+    public void loadSession(UUID playerUuid) {
+        PurchaseJournal current = journal;
+        if (current == null) {
+            sessions.refreshFailed(playerUuid);
+            return;
+        }
+        current.submit(() -> sessions.put(playerUuid, readSession(playerUuid))).exceptionally(error -> {
+            sessions.refreshFailed(playerUuid);
+            logger.warning("Could not load the stats of " + playerUuid + ": " + error.getMessage());
+            return null;
+        });
+    }
+    
+    /** Drops a player's session, e.g. when they quit. Ordered after a load still queued for them. */
+    public void evictSession(UUID playerUuid) {
+        PurchaseJournal current = journal;
+        if (current == null) {
+            sessions.remove(playerUuid);
+            return;
+        }
+        current.submit(() -> sessions.remove(playerUuid));
+    }
+    
+    // Journal writer thread only, so the session lines up with the committed batches
+    private PlayerSession readSession(UUID playerUuid) throws SQLException {
+        PooledConnection writer = pool.writer();
+        PlayerStats stats = withPending(playerUuid, readStoredStats(writer, playerUuid));
         
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        pstmt.setInt(1, limit);
-        return pstmt.executeQuery();
-    }
-    
-    public ResultSet getTopSpenders(int limit) throws SQLException {
-        String query = """
-            SELECT player_name, total_purchases, total_spent 
-            FROM player_stats 
-            WHERE total_spent > 0 
-            ORDER BY total_spent DESC 
-            LIMIT ?
-            """;
+        int limit = sessions.getRecentLimit();
+        PreparedStatement history = writer.prepare(HISTORY_FIRST_PAGE);
+        history.setString(1, playerUuid.toString());
+        history.setInt(2, limit + 1);
+        List<PurchaseRow> recent = readRows(history, limit + 1);
+        boolean hasOlder = recent.size() > limit;
+        if (hasOlder) {
+            recent = recent.subList(0, limit);
+        }
         
-        PreparedStatement pstmt = connection.prepareStatement(query);
-        pstmt.setInt(1, limit);
-        return pstmt.executeQuery();
+        // Committed batches not yet flushed are only in the pending counters
+        Map<String, Long> units = aggregates.pendingUnits(playerUuid);
+        PreparedStatement pstmt = writer.prepare(UNITS_BY_MATERIAL);
+        pstmt.setString(1, playerUuid.toString());
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                units.merge(rs.getString(1), rs.getLong(2), Long::sum);
+            }
+        }
+        return new PlayerSession(stats, recent, hasOlder, units, System.currentTimeMillis());
+    }
+    
+    /** Best-selling items from the in-memory leaderboard, no query involved. */
+    public List<TopItem> getTopItems(int limit) {
+        List<TopItem> top = new ArrayList<>();
+        for (Leaderboard.Entry<String> entry : items.top(limit)) {
+            top.add(new TopItem(entry.key(), entry.name(), (int) entry.count(), entry.amount()));
+        }
+        return top;
+    }
+    
+    /** Biggest spenders from the in-memory leaderboard, no query involved. */
+    public List<TopSpender> getTopSpenders(int limit) {
+        List<TopSpender> top = new ArrayList<>();
+        for (Leaderboard.Entry<UUID> entry : spenders.top(limit)) {
+            if (entry.amount() <= 0) {
+                break;
+            }
+            top.add(new TopSpender(entry.name(), (int) entry.count(), entry.amount()));
+        }
+        return top;
+    }
+    
+    /** The player's place among all spenders, or null if they have not bought anything yet. */
+    public Leaderboard.Rank getSpenderRank(UUID playerUuid) {
+        return spenders.rank(playerUuid);
+    }
+    
+    /**
+     * Units sold and revenue per bucket in {@code [from, to)} (epoch millis),
+     * read from the rollup tables only. Purchases from the last few seconds
+     * show up once the next aggregate flush has run.
+     */
+    public List<SalesBucket> getSales(SalesRollups.Granularity granularity, long from, long to) throws SQLException {
+        return timedRead(salesQueries, reader -> SalesRollups.readTotals(reader, granularity, from, to));
+    }
+    
+    /** Best-selling items in {@code [from, to)}, read from the rollup tables only. */
+    public List<TopItem> getTopItemsBetween(SalesRollups.Granularity granularity, long from, long to, int limit) throws SQLException {
+        Leaderboard<String> names = items;
+        return timedRead(salesQueries, reader -> SalesRollups.readTopItems(reader, granularity, from, to, limit, material -> {
+            Leaderboard.Entry<String> entry = names.get(material);
+            return entry != null && entry.name() != null ? entry.name() : material;
+        }));
+    }
+    
+    /** Months that have archived purchases, oldest first. */
+    public List<PurchaseArchive.Segment> getArchivedMonths() {
+        return archive.getSegments();
+    }
+    
+    /**
+     * A player's purchases from one archived month, newest first. Streams the
+     * whole month's segment, so this is meant for on-demand lookups only.
+     */
+    public List<PurchaseRow> getArchivedPurchases(UUID playerUuid, YearMonth month) throws IOException {
+        List<PurchaseRow> rows = new ArrayList<>();
+        archive.forEach(month, purchase -> {
+            if (purchase.record().playerUuid().equals(playerUuid)) {
+                rows.add(purchase.toRow());
+            }
+        });
+        rows.sort(Comparator.comparingLong(PurchaseRow::purchasedAt).thenComparingLong(PurchaseRow::id).reversed());
+        return rows;
+    }
+    
+    public SalesRollups getRollups() {
+        return rollups;
+    }
+    
+    private <T> T timedRead(LatencyHistogram histogram, SqlFunction<PooledConnection, T> query) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return pool.read(query);
+        } finally {
+            histogram.recordSince(start);
+        }
+    }
+    
+    public PlayerSessions getSessions() {
+        return sessions;
+    }
+    
+    public AggregateCounters getAggregates() {
+        return aggregates;
     }
     
-    public Connection getConnection() {
-        return connection;
+    public PurchaseJournal getJournal() {
+        return journal;
     }
 }
@@ -0,0 +1,172 @@
+package com.glacio.nomad.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connections to a database server (MySQL/MariaDB) shared by several game
+ * servers. Same shape as {@link SqliteConnectionPool}: one writer used by
+ * the journal thread plus a fixed set of readers. Server connections can be
+ * dropped by idle timeouts, so a connection that has been idle longer than
+ * the validation interval is checked before use and reopened if dead.
+ */
+public class JdbcConnectionPool implements ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final class Slot {
+        PooledConnection connection;
+        long lastUsed;
+
+        Slot(PooledConnection connection) {
+            this.connection = connection;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    private final String url;
+    private final Properties properties;
+    private final SqlDialect dialect;
+    private final int readerCount;
+    private final int borrowTimeoutMs;
+    private final long validationIntervalNanos;
+
+    private Slot writer;
+    private final List<Slot> readers = new ArrayList<>();
+    private BlockingQueue<Slot> idleReaders;
+
+    public JdbcConnectionPool(String url, String username, String password, SqlDialect dialect,
+                              int readerCount, int borrowTimeoutMs, int validationIntervalSeconds) {
+        this.url = url;
+        this.properties = new Properties();
+        if (username != null && !username.isEmpty()) {
+            properties.setProperty("user", username);
+        }
+        if (password != null && !password.isEmpty()) {
+            properties.setProperty("password", password);
+        }
+        this.dialect = dialect;
+        this.readerCount = Math.max(1, readerCount);
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.validationIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, validationIntervalSeconds));
+    }
+
+    @Override
+    public void open() throws SQLException {
+        writer = new Slot(connect(false));
+        idleReaders = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            Slot reader = new Slot(connect(true));
+            readers.add(reader);
+            idleReaders.add(reader);
+        }
+    }
+
+    private PooledConnection connect(boolean readOnly) throws SQLException {
+        Connection connection = DriverManager.getConnection(url, properties);
+        if (readOnly) {
+            connection.setReadOnly(true);
+        }
+        return new PooledConnection(connection);
+    }
+
+    // Only the thread holding the slot calls this
+    private PooledConnection validated(Slot slot, boolean readOnly) throws SQLException {
+        long now = System.nanoTime();
+        if (now - slot.lastUsed > validationIntervalNanos
+                && !slot.connection.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            try {
+                slot.connection.close();
+            } catch (SQLException ignored) {
+            }
+            slot.connection = connect(readOnly);
+        }
+        slot.lastUsed = now;
+        return slot.connection;
+    }
+
+    @Override
+    public PooledConnection writer() throws SQLException {
+        return validated(writer, false);
+    }
+
+    @Override
+    public <T> T read(SqlFunction<PooledConnection, T> query) throws SQLException {
+        Slot reader = lease();
+        try {
+            return query.apply(validated(reader, true));
+        } finally {
+            idleReaders.offer(reader);
+        }
+    }
+
+    @Override
+    public void forEachReader(SqlFunction<PooledConnection, ?> action) throws SQLException {
+        List<Slot> leased = new ArrayList<>(readerCount);
+        try {
+            while (leased.size() < readerCount) {
+                leased.add(lease());
+            }
+            for (Slot reader : leased) {
+                action.apply(validated(reader, true));
+            }
+        } finally {
+            idleReaders.addAll(leased);
+        }
+    }
+
+    private Slot lease() throws SQLException {
+        Slot reader;
+        try {
+            reader = idleReaders.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("No reader connection available after " + borrowTimeoutMs + "ms");
+        }
+        return reader;
+    }
+
+    @Override
+    public SqlDialect dialect() {
+        return dialect;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (Slot reader : readers) {
+            try {
+                reader.connection.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        readers.clear();
+        if (writer != null) {
+            try {
+                writer.connection.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+            writer = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return writer != null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.glacio.nomad.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Running totals kept in ranked order, highest score first. Backed by an
+ * indexed skip list (each link stores how many entries it skips) plus a
+ * key-to-node map, so updates, top-N and rank lookups are O(log n) and no
+ * query ever sorts the aggregate tables. Ties are broken by key so ranks
+ * are stable.
+ */
+public class Leaderboard<K extends Comparable<K>> {
+
+    /** Which running total the board is ordered by. */
+    public enum RankBy {
+        COUNT,
+        AMOUNT
+    }
+
+    public record Entry<K>(K key, String name, long count, double amount) {
+    }
+
+    /** 1-based position of an entry among {@code total} entries. */
+    public record Rank(int position, int total) {
+    }
+
+    private static final int MAX_LEVEL = 32;
+    private static final double LEVEL_PROBABILITY = 0.25;
+
+    private static final class Node<K> {
+        final K key;
+        final double score;
+        final String name;
+        final long count;
+        final double amount;
+        final Node<K>[] next;
+        final int[] span;
+
+        @SuppressWarnings("unchecked")
+        Node(K key, double score, String name, long count, double amount, int level) {
+            this.key = key;
+            this.score = score;
+            this.name = name;
+            this.count = count;
+            this.amount = amount;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+
+    private final RankBy rankBy;
+    private final Node<K> head = new Node<>(null, 0, null, 0, 0, MAX_LEVEL);
+    private final Map<K, Node<K>> nodes = new HashMap<>();
+    private int level = 1;
+
+    public Leaderboard(RankBy rankBy) {
+        this.rankBy = rankBy;
+    }
+
+    /** Adds to an entry's totals, creating it if needed; a non-null name replaces the stored one. */
+    public synchronized void add(K key, String name, long count, double amount) {
+        Node<K> current = nodes.get(key);
+        if (current == null) {
+            insert(key, name, count, amount);
+            return;
+        }
+        delete(current);
+        insert(key, name != null ? name : current.name, current.count + count, current.amount + amount);
+    }
+
+    /** Sets an entry's totals, as loaded from the aggregate tables. */
+    public synchronized void put(K key, String name, long count, double amount) {
+        Node<K> current = nodes.get(key);
+        if (current != null) {
+            delete(current);
+        }
+        insert(key, name, count, amount);
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+    }
+
+    /** The first {@code limit} entries in rank order. */
+    public synchronized List<Entry<K>> top(int limit) {
+        List<Entry<K>> entries = new ArrayList<>(Math.min(limit, nodes.size()));
+        for (Node<K> node = head.next[0]; node != null && entries.size() < limit; node = node.next[0]) {
+            entries.add(new Entry<>(node.key, node.name, node.count, node.amount));
+        }
+        return entries;
+    }
+
+    public synchronized Entry<K> get(K key) {
+        Node<K> node = nodes.get(key);
+        return node == null ? null : new Entry<>(node.key, node.name, node.count, node.amount);
+    }
+
+    /** The entry's position, or null if it is not on the board. */
+    public synchronized Rank rank(K key) {
+        Node<K> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        int position = 0;
+        Node<K> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !before(node, x.next[i])) {
+                position += x.span[i];
+                x = x.next[i];
+            }
+            if (x == node) {
+                return new Rank(position, nodes.size());
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private void insert(K key, String name, long count, double amount) {
+        double score = rankBy == RankBy.COUNT ? count : amount;
+        @SuppressWarnings("unchecked")
+        Node<K>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node<K> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], score, key)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = nodes.size();
+            }
+            level = nodeLevel;
+        }
+
+        Node<K> node = new Node<>(key, score, name, count, amount, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        nodes.put(key, node);
+    }
+
+    private void delete(Node<K> node) {
+        Node<K> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && before(x.next[i], node)) {
+                x = x.next[i];
+            }
+            if (x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else {
+                x.span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        nodes.remove(node.key);
+    }
+
+    private boolean before(Node<K> a, Node<K> b) {
+        return before(a, b.score, b.key);
+    }
+
+    private boolean before(Node<K> a, double score, K key) {
+        if (a.score != score) {
+            return a.score > score;
+        }
+        return a.key.compareTo(key) < 0;
+    }
+
+    private static int randomLevel() {
+        int level = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (level < MAX_LEVEL && random.nextDouble() < LEVEL_PROBABILITY) {
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,48 @@
+package com.glacio.nomad.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What is kept in memory about an online player: lifetime totals, the
+ * newest purchases (newest first) and units bought per material. Rows added
+ * by {@link #plus} have id 0, since ids are only known to the database.
+ */
+public record PlayerSession(PlayerStats stats, List<PurchaseRow> recent, boolean hasOlder,
+                            Map<String, Long> unitsByMaterial, long loadedAt) {
+
+    public PlayerSession {
+        recent = List.copyOf(recent);
+        unitsByMaterial = Map.copyOf(unitsByMaterial);
+    }
+
+    public long unitsBought(String material) {
+        return unitsByMaterial.getOrDefault(material, 0L);
+    }
+
+    /** This session with one more committed purchase, keeping at most {@code recentLimit} rows. */
+    PlayerSession plus(PurchaseRecord record, int recentLimit) {
+        PlayerStats updated = stats == null
+            ? new PlayerStats(record.playerName(), record.quantity(), record.price(), record.purchasedAt(), record.purchasedAt())
+            : new PlayerStats(record.playerName(), stats.totalPurchases() + record.quantity(),
+                stats.totalSpent() + record.price(),
+                stats.firstPurchaseAt() > 0 ? stats.firstPurchaseAt() : record.purchasedAt(),
+                Math.max(stats.lastPurchaseAt(), record.purchasedAt()));
+
+        List<PurchaseRow> rows = new ArrayList<>(recent.size() + 1);
+        rows.add(new PurchaseRow(0L, record.itemMaterial(), record.itemName(), record.price(),
+            record.quantity(), record.purchasedAt()));
+        rows.addAll(recent);
+        boolean older = hasOlder;
+        if (rows.size() > recentLimit) {
+            rows = rows.subList(0, recentLimit);
+            older = true;
+        }
+
+        Map<String, Long> units = new HashMap<>(unitsByMaterial);
+        units.merge(record.itemMaterial(), (long) record.quantity(), Long::sum);
+        return new PlayerSession(updated, rows, older, units, loadedAt);
+    }
+}
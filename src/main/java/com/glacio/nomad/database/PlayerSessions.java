@@ -0,0 +1,130 @@
+package com.glacio.nomad.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Sessions of online players, so personal stats and the shop lore need no
+ * query. Loaded on join and dropped on quit or when the cache is full.
+ * A session older than the TTL is still served, but the first read after
+ * it expires asks the refresher to reload it (with a shared database other
+ * servers may have changed it).
+ *
+ * <p>Sessions are loaded and updated only on the journal writer thread,
+ * which also commits the batches, so a session never misses or double
+ * counts a purchase. Reads may come from any thread.
+ */
+public class PlayerSessions {
+
+    private final int maxPlayers;
+    private final long ttlMillis;
+    private final int recentLimit;
+    private final Map<UUID, PlayerSession> sessions;
+    // Expired sessions whose reload was requested; guarded by sessions
+    private final Set<UUID> refreshing = new HashSet<>();
+    private volatile Consumer<UUID> updateListener = player -> { };
+    private volatile Consumer<UUID> refresher = player -> { };
+
+    public PlayerSessions(int maxPlayers, long ttlMillis, int recentLimit) {
+        this.maxPlayers = Math.max(1, maxPlayers);
+        this.ttlMillis = ttlMillis;
+        this.recentLimit = Math.max(1, recentLimit);
+        this.sessions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PlayerSession> eldest) {
+                if (size() > PlayerSessions.this.maxPlayers) {
+                    refreshing.remove(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /** The player's session, or null if it is not loaded. An expired session is returned and refreshed. */
+    public PlayerSession get(UUID player) {
+        PlayerSession session;
+        boolean refresh;
+        synchronized (sessions) {
+            session = sessions.get(player);
+            refresh = session != null && ttlMillis > 0 && System.currentTimeMillis() - session.loadedAt() > ttlMillis
+                && refreshing.add(player);
+        }
+        if (refresh) {
+            refresher.accept(player);
+        }
+        return session;
+    }
+
+    /** How many of the newest purchases a session keeps. */
+    public int getRecentLimit() {
+        return recentLimit;
+    }
+
+    /** Called with a player's id, on the writer thread, after their session changed. */
+    public void setUpdateListener(Consumer<UUID> listener) {
+        updateListener = listener != null ? listener : player -> { };
+    }
+
+    /** Called with a player's id when their session expired and should be loaded again. */
+    void setRefresher(Consumer<UUID> refresher) {
+        this.refresher = refresher != null ? refresher : player -> { };
+    }
+
+    /** Lets the next read of an expired session ask for a reload again. */
+    void refreshFailed(UUID player) {
+        synchronized (sessions) {
+            refreshing.remove(player);
+        }
+    }
+
+    void put(UUID player, PlayerSession session) {
+        synchronized (sessions) {
+            sessions.put(player, session);
+            refreshing.remove(player);
+        }
+        updateListener.accept(player);
+    }
+
+    void remove(UUID player) {
+        synchronized (sessions) {
+            sessions.remove(player);
+            refreshing.remove(player);
+        }
+    }
+
+    /** Applies a committed batch to the sessions of players that have one. Writer thread only. */
+    void apply(List<PurchaseRecord> batch) {
+        Set<UUID> updated = new LinkedHashSet<>();
+        synchronized (sessions) {
+            for (PurchaseRecord record : batch) {
+                PlayerSession session = sessions.get(record.playerUuid());
+                if (session != null) {
+                    sessions.put(record.playerUuid(), session.plus(record, recentLimit));
+                    updated.add(record.playerUuid());
+                }
+            }
+        }
+        for (UUID player : updated) {
+            updateListener.accept(player);
+        }
+    }
+
+    List<UUID> players() {
+        synchronized (sessions) {
+            return new ArrayList<>(sessions.keySet());
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
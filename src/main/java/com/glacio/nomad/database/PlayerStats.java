@@ -0,0 +1,8 @@
+package com.glacio.nomad.database;
+
+/**
+ * Lifetime totals for one player, as stored in player_stats.
+ */
+public record PlayerStats(String playerName, long totalPurchases, double totalSpent,
+                          long firstPurchaseAt, long lastPurchaseAt) {
+}
@@ -0,0 +1,286 @@
+package com.glacio.nomad.database;
+
+import com.glacio.nomad.io.AtomicFileWriter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Purchases moved out of the database, one append-only gzip file of JSON
+ * lines per month ({@code purchases-YYYY-MM.ndjson.gz}). Every append is a
+ * new gzip member, which readers see as one continuous stream.
+ *
+ * <p>{@code index.yml} records each segment's row count, committed length
+ * and time range, plus the newest archived row. A segment is only read up
+ * to its committed length, so an append that was cut short by a crash is
+ * never read and is overwritten by the next one. The index also holds the
+ * archive's id, which the database records to know which server archives it.
+ */
+public class PurchaseArchive {
+
+    public record Segment(YearMonth month, long rows, long bytes, long firstAt, long lastAt) {
+    }
+
+    private final Path directory;
+    private final Path indexFile;
+    private final ZoneId zone;
+    private final Logger logger;
+    private final Map<YearMonth, Segment> segments = new TreeMap<>();
+    private long lastArchivedAt;
+    private long lastArchivedId;
+    private String id;
+
+    public PurchaseArchive(Path directory, ZoneId zone, Logger logger) {
+        this.directory = directory;
+        this.indexFile = directory.resolve("index.yml");
+        this.zone = zone;
+        this.logger = logger;
+    }
+
+    public synchronized void load() {
+        segments.clear();
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.loadFromString(Files.readString(indexFile, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.log(Level.SEVERE, "Could not read the purchase archive index " + indexFile, e);
+            return;
+        }
+        lastArchivedAt = yaml.getLong("last-archived.purchased-at", 0L);
+        lastArchivedId = yaml.getLong("last-archived.id", 0L);
+        id = yaml.getString("archive-id");
+        ConfigurationSection section = yaml.getConfigurationSection("segments");
+        if (section == null) {
+            return;
+        }
+        for (String key : section.getKeys(false)) {
+            YearMonth month;
+            try {
+                month = YearMonth.parse(key);
+            } catch (DateTimeParseException e) {
+                logger.warning("Ignoring unknown archive segment " + key + " in " + indexFile.getFileName());
+                continue;
+            }
+            segments.put(month, new Segment(month, section.getLong(key + ".rows", 0L), section.getLong(key + ".bytes", 0L),
+                section.getLong(key + ".first-at", 0L), section.getLong(key + ".last-at", 0L)));
+        }
+    }
+
+    /**
+     * Appends purchases, sorted by time and id, to their month's segment and
+     * forces them to disk before the index is updated. Only once this returns
+     * may the rows be deleted from the database.
+     */
+    public synchronized void append(List<ArchivedPurchase> purchases) throws IOException {
+        if (purchases.isEmpty()) {
+            return;
+        }
+        Map<YearMonth, List<ArchivedPurchase>> byMonth = new LinkedHashMap<>();
+        for (ArchivedPurchase purchase : purchases) {
+            byMonth.computeIfAbsent(monthOf(purchase.record().purchasedAt()), k -> new ArrayList<>()).add(purchase);
+        }
+
+        Files.createDirectories(directory);
+        for (Map.Entry<YearMonth, List<ArchivedPurchase>> entry : byMonth.entrySet()) {
+            YearMonth month = entry.getKey();
+            List<ArchivedPurchase> rows = entry.getValue();
+            Segment segment = segments.get(month);
+            Path file = segmentFile(month);
+            long committed = segment != null ? segment.bytes() : 0L;
+            if (Files.exists(file) && Files.size(file) != committed) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(committed);
+                }
+            }
+
+            try (FileOutputStream out = new FileOutputStream(file.toFile(), true)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+                for (ArchivedPurchase row : rows) {
+                    writer.write(ArchiveCodec.encode(row));
+                    writer.newLine();
+                }
+                writer.flush();
+                gzip.finish();
+                out.getFD().sync();
+            }
+
+            long firstAt = rows.get(0).record().purchasedAt();
+            long lastAt = rows.get(rows.size() - 1).record().purchasedAt();
+            if (segment != null) {
+                firstAt = Math.min(firstAt, segment.firstAt());
+                lastAt = Math.max(lastAt, segment.lastAt());
+            }
+            segments.put(month, new Segment(month, (segment != null ? segment.rows() : 0L) + rows.size(),
+                Files.size(file), firstAt, lastAt));
+        }
+
+        ArchivedPurchase last = purchases.get(purchases.size() - 1);
+        lastArchivedAt = last.record().purchasedAt();
+        lastArchivedId = last.id();
+        saveIndex();
+    }
+
+    /** This archive's id, or null if it never claimed a database. */
+    public synchronized String getId() {
+        return id;
+    }
+
+    /** This archive's id, created and saved on first use. */
+    public synchronized String getOrCreateId() throws IOException {
+        if (id == null) {
+            Files.createDirectories(directory);
+            id = UUID.randomUUID().toString();
+            saveIndex();
+        }
+        return id;
+    }
+
+    private void saveIndex() throws IOException {
+        YamlConfiguration yaml = new YamlConfiguration();
+        if (id != null) {
+            yaml.set("archive-id", id);
+        }
+        yaml.set("last-archived.purchased-at", lastArchivedAt);
+        yaml.set("last-archived.id", lastArchivedId);
+        for (Segment segment : segments.values()) {
+            String key = "segments." + segment.month();
+            yaml.set(key + ".rows", segment.rows());
+            yaml.set(key + ".bytes", segment.bytes());
+            yaml.set(key + ".first-at", segment.firstAt());
+            yaml.set(key + ".last-at", segment.lastAt());
+        }
+        AtomicFileWriter.write(indexFile, yaml.saveToString());
+    }
+
+    /** Reads one month's segment in archive order. Safe while appends are running. */
+    public void forEach(YearMonth month, Consumer<ArchivedPurchase> consumer) throws IOException {
+        Segment segment;
+        synchronized (this) {
+            segment = segments.get(month);
+        }
+        if (segment == null || segment.bytes() == 0L) {
+            return;
+        }
+        try (InputStream file = Files.newInputStream(segmentFile(month));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                 new GZIPInputStream(new LimitedInputStream(file, segment.bytes()), 64 * 1024), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    consumer.accept(ArchiveCodec.decode(line));
+                }
+            }
+        }
+    }
+
+    /** Reads every segment, oldest month first. */
+    public void forEach(Consumer<ArchivedPurchase> consumer) throws IOException {
+        for (Segment segment : getSegments()) {
+            forEach(segment.month(), consumer);
+        }
+    }
+
+    public synchronized List<Segment> getSegments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    public synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /** Time of the newest archived row, or 0 if nothing was archived yet. */
+    public synchronized long getLastArchivedAt() {
+        return lastArchivedAt;
+    }
+
+    public synchronized long getLastArchivedId() {
+        return lastArchivedId;
+    }
+
+    public YearMonth monthOf(long purchasedAt) {
+        return YearMonth.from(Instant.ofEpochMilli(purchasedAt).atZone(zone));
+    }
+
+    private Path segmentFile(YearMonth month) {
+        return directory.resolve("purchases-" + month + ".ndjson.gz");
+    }
+
+    // Stops at the committed length so a half-written trailing member is never decoded
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
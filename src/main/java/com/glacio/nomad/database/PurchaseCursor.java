@@ -0,0 +1,8 @@
+package com.glacio.nomad.database;
+
+/**
+ * Keyset position in a purchase history: the next page starts strictly
+ * after ({@code purchasedAt}, {@code id}) in descending order.
+ */
+public record PurchaseCursor(long purchasedAt, long id) {
+}
@@ -0,0 +1,319 @@
+package com.glacio.nomad.database;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for purchases. Callers enqueue records without touching
+ * the database; a single writer thread drains the queue and hands each batch
+ * to the {@link BatchWriter}, which commits it in one transaction. Other
+ * writes (periodic flushes, maintenance) are run on the same thread so the
+ * writer connection only ever has one user.
+ *
+ * <p>The queue is bounded and enqueuing never waits for it. A batch that
+ * fails to write is rolled back by the writer and retried with backoff,
+ * holding up the purchases behind it; if the queue fills up meanwhile, the
+ * writer moves it to the {@link DeadLetter} so memory stays capped, and a
+ * purchase that still finds the queue full is handed to the dead letter by
+ * the caller. While shutting down a failing batch goes there too, so the
+ * server can stop.
+ */
+public class PurchaseJournal {
+
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(List<PurchaseRecord> batch) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface DeadLetter {
+        void save(List<PurchaseRecord> batch) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface WriterTask {
+        void run() throws SQLException;
+    }
+
+    private static final class PeriodicTask {
+        final String name;
+        final WriterTask task;
+        final long intervalNanos;
+        long nextRun;
+
+        PeriodicTask(String name, WriterTask task, long intervalMillis) {
+            this.name = name;
+            this.task = task;
+            this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervalMillis));
+            this.nextRun = System.nanoTime() + intervalNanos;
+        }
+    }
+
+    private static final long INITIAL_RETRY_MILLIS = 250L;
+    private static final long MAX_RETRY_MILLIS = 30_000L;
+
+    private final BlockingQueue<PurchaseRecord> queue;
+    private final BatchWriter writer;
+    private final DeadLetter deadLetter;
+    private final int batchSize;
+    private final Logger logger;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final List<PeriodicTask> periodicTasks = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running = true;
+    private volatile boolean spillWarned = false;
+
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong spilledRecords = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    public PurchaseJournal(BatchWriter writer, DeadLetter deadLetter, int capacity, int batchSize, Logger logger) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = writer;
+        this.deadLetter = deadLetter;
+        this.batchSize = Math.max(1, batchSize);
+        this.logger = logger;
+        this.thread = new Thread(this::runLoop, "Nomad-PurchaseWriter");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Runs {@code task} on the writer thread every {@code intervalMillis},
+     * and once more when the journal shuts down.
+     */
+    public void schedule(String name, long intervalMillis, WriterTask task) {
+        periodicTasks.add(new PeriodicTask(name, task, intervalMillis));
+    }
+
+    /**
+     * Runs a one-off task on the writer thread after the purchases queued
+     * before it.
+     */
+    public CompletableFuture<Void> submit(WriterTask task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Purchase journal is closed"));
+            return future;
+        }
+        tasks.add(() -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Queues a purchase for writing without waiting for the writer. When the
+     * queue is full the database has fallen far behind; the purchase then
+     * goes straight to the dead letter rather than stalling the caller or
+     * growing memory.
+     */
+    public void enqueue(PurchaseRecord record) {
+        if (!running) {
+            logger.warning("Purchase journal is closed, dropping purchase of " + record.playerName());
+            return;
+        }
+        if (!queue.offer(record)) {
+            spill(List.of(record));
+        }
+    }
+
+    private void spill(List<PurchaseRecord> records) {
+        if (!spillWarned) {
+            spillWarned = true;
+            logger.warning("Purchase journal is full (" + queue.size() + " pending), saving further purchases "
+                + "to be written on the next start.");
+        }
+        try {
+            if (deadLetter == null) {
+                throw new IOException("no dead letter");
+            }
+            deadLetter.save(records);
+            spilledRecords.addAndGet(records.size());
+        } catch (IOException e) {
+            logger.severe("Could not save " + records.size() + " purchases that did not fit in the journal, "
+                + "they were lost: " + e.getMessage());
+        }
+    }
+
+    private void runLoop() {
+        List<PurchaseRecord> batch = new ArrayList<>(batchSize);
+        while (running || hasPending() || !tasks.isEmpty()) {
+            try {
+                PurchaseRecord first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+            runTasks();
+            runPeriodicTasks(false);
+        }
+        runPeriodicTasks(true);
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void runPeriodicTasks(boolean force) {
+        long now = System.nanoTime();
+        for (PeriodicTask periodic : periodicTasks) {
+            if (!force && now - periodic.nextRun < 0) {
+                continue;
+            }
+            periodic.nextRun = now + periodic.intervalNanos;
+            try {
+                periodic.task.run();
+            } catch (Exception e) {
+                logger.severe("Error running " + periodic.name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean hasPending() {
+        return !queue.isEmpty();
+    }
+
+    // Keeps retrying the same batch; the purchases behind it wait in the queue
+    private void writeBatch(List<PurchaseRecord> batch) throws InterruptedException {
+        long retryMillis = INITIAL_RETRY_MILLIS;
+        long start;
+        while (true) {
+            start = System.nanoTime();
+            try {
+                writer.write(batch);
+                break;
+            } catch (SQLException e) {
+                failedWrites.incrementAndGet();
+                if (!running) {
+                    saveDeadLetter(batch, e);
+                    return;
+                }
+                logger.warning("Error writing " + batch.size() + " purchases, retrying in " + retryMillis + "ms: "
+                    + e.getMessage());
+                // Sleeps in slices so a shutdown does not wait for the whole backoff
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMillis);
+                while (running && System.nanoTime() - until < 0) {
+                    if (queue.remainingCapacity() == 0) {
+                        List<PurchaseRecord> spilled = new ArrayList<>(queue.size());
+                        queue.drainTo(spilled);
+                        spill(spilled);
+                    }
+                    Thread.sleep(Math.min(250L, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(until - System.nanoTime()))));
+                }
+                retryMillis = Math.min(MAX_RETRY_MILLIS, retryMillis * 2);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+        totalFlushNanos.addAndGet(elapsed);
+        flushCount.incrementAndGet();
+        flushedRecords.addAndGet(batch.size());
+        spillWarned = false;
+    }
+
+    private void saveDeadLetter(List<PurchaseRecord> batch, SQLException cause) {
+        if (deadLetter != null) {
+            try {
+                deadLetter.save(batch);
+                logger.severe("Could not write " + batch.size() + " purchases while shutting down (" + cause.getMessage()
+                    + "), saved them to be written on the next start.");
+                return;
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        logger.severe("Error writing " + batch.size() + " purchases while shutting down, they were not saved: "
+            + cause.getMessage());
+    }
+
+    /**
+     * Stops accepting purchases and waits for the writer thread to drain the
+     * queue. Returns false if records were still pending when the timeout hit.
+     */
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive() || hasPending()) {
+            logger.severe("Purchase journal did not finish flushing, " + getQueueDepth() + " purchases were not saved!");
+            return false;
+        }
+        return true;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Purchases saved to the dead letter because the queue was full. */
+    public long getSpilledRecords() {
+        return spilledRecords.get();
+    }
+
+    /** Batch writes that failed, counting every retry. */
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedRecords() {
+        return flushedRecords.get();
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushCount.get();
+        return count == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / count;
+    }
+}
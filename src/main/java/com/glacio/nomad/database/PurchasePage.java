@@ -0,0 +1,17 @@
+package com.glacio.nomad.database;
+
+import java.util.List;
+
+/**
+ * A page of purchase history. {@code next} is null on the last page.
+ */
+public record PurchasePage(List<PurchaseRow> rows, PurchaseCursor next) {
+
+    public PurchasePage {
+        rows = List.copyOf(rows);
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,14 @@
+package com.glacio.nomad.database;
+
+import java.util.UUID;
+
+/**
+ * A purchase waiting in the journal to be written to the database.
+ * {@code price} is the total paid for {@code quantity} units.
+ * {@code purchasedAt} is epoch millis; {@code purchaseDate} is the legacy
+ * TEXT form of the same instant.
+ */
+public record PurchaseRecord(UUID playerUuid, String playerName, String itemMaterial,
+                             String itemName, double price, int quantity, long purchasedAt,
+                             String purchaseDate, String serverName) {
+}
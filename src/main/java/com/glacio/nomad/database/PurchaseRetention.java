@@ -0,0 +1,200 @@
+package com.glacio.nomad.database;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Moves purchases older than the retention age into the {@link PurchaseArchive}
+ * and deletes them from the database, one chunk per writer pass so purchase
+ * batches are never held up for long. player_stats, item_popularity and the
+ * sales rollups are left alone; they already hold these purchases.
+ *
+ * <p>On SQLite the freed pages are handed back with incremental vacuum,
+ * again a bounded number per pass. Runs on the journal writer thread.
+ */
+public class PurchaseRetention {
+
+    private final ConnectionPool pool;
+    private final PurchaseArchive archive;
+    private final long maxAgeMillis;
+    private final int chunkSize;
+    private final long checkIntervalMillis;
+    private final int vacuumPagesPerStep;
+    private final BooleanSupplier ready;
+    private final LongAdder rowsArchived;
+    private final Logger logger;
+
+    private long nextCheckAt;
+    private boolean recovered;
+    private long archivedThisRun;
+    private boolean vacuuming;
+    private boolean conversionLogged;
+
+    public PurchaseRetention(ConnectionPool pool, PurchaseArchive archive, long maxAgeMillis, int chunkSize,
+                             long checkIntervalMillis, int vacuumPagesPerStep, BooleanSupplier ready,
+                             LongAdder rowsArchived, Logger logger) {
+        this.pool = pool;
+        this.archive = archive;
+        this.maxAgeMillis = maxAgeMillis;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.checkIntervalMillis = Math.max(60_000L, checkIntervalMillis);
+        this.vacuumPagesPerStep = Math.max(1, vacuumPagesPerStep);
+        this.ready = ready;
+        this.rowsArchived = rowsArchived;
+        this.logger = logger;
+    }
+
+    /** Does at most one chunk of work. */
+    public void runStep() throws SQLException {
+        if (vacuuming) {
+            vacuumStep();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Rows still waiting for a timestamp must not end up behind the archive cursor
+        if (now < nextCheckAt || !ready.getAsBoolean()) {
+            return;
+        }
+        if (!recovered) {
+            deleteAlreadyArchived();
+            recovered = true;
+        }
+
+        int moved = archiveChunk(now - maxAgeMillis);
+        archivedThisRun += moved;
+        if (moved == chunkSize) {
+            return;
+        }
+
+        nextCheckAt = now + checkIntervalMillis;
+        if (archivedThisRun > 0) {
+            logger.info("Archived " + archivedThisRun + " purchases older than " + (maxAgeMillis / 86_400_000L) + " days.");
+            archivedThisRun = 0;
+            vacuuming = pool.dialect() == SqlDialect.SQLITE && enableIncrementalVacuum();
+        }
+    }
+
+    private int archiveChunk(long cutoff) throws SQLException {
+        String select = """
+            SELECT id, player_uuid, player_name, item_material, item_name, price, quantity,
+                   purchase_date, purchased_at, server_name
+            FROM purchases
+            WHERE purchased_at > 0 AND purchased_at < ?
+            ORDER BY purchased_at, id
+            LIMIT ?
+            """;
+
+        PooledConnection writer = pool.writer();
+        PreparedStatement selectStmt = writer.prepare(select);
+        selectStmt.setLong(1, cutoff);
+        selectStmt.setInt(2, chunkSize);
+        List<ArchivedPurchase> rows = new ArrayList<>(chunkSize);
+        try (ResultSet rs = selectStmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new ArchivedPurchase(rs.getLong("id"), new PurchaseRecord(
+                    ArchiveCodec.parseUuid(rs.getString("player_uuid")), rs.getString("player_name"),
+                    rs.getString("item_material"), rs.getString("item_name"), rs.getDouble("price"),
+                    rs.getInt("quantity"), rs.getLong("purchased_at"), rs.getString("purchase_date"),
+                    rs.getString("server_name"))));
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            archive.append(rows);
+        } catch (IOException e) {
+            // Nothing was deleted, the same chunk is tried again next time
+            nextCheckAt = System.currentTimeMillis() + checkIntervalMillis;
+            throw new SQLException("Could not write the purchase archive: " + e.getMessage(), e);
+        }
+
+        Connection connection = writer.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement deleteStmt = writer.prepare("DELETE FROM purchases WHERE id = ?");
+            for (ArchivedPurchase row : rows) {
+                deleteStmt.setLong(1, row.id());
+                deleteStmt.addBatch();
+            }
+            deleteStmt.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            recovered = false;
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        rowsArchived.add(rows.size());
+        return rows.size();
+    }
+
+    // A crash between writing the archive and deleting the chunk leaves rows that are already archived
+    private void deleteAlreadyArchived() throws SQLException {
+        long lastAt = archive.getLastArchivedAt();
+        if (lastAt <= 0) {
+            return;
+        }
+        PreparedStatement pstmt = pool.writer().prepare("""
+            DELETE FROM purchases
+            WHERE purchased_at > 0 AND (purchased_at < ? OR (purchased_at = ? AND id <= ?))
+            """);
+        pstmt.setLong(1, lastAt);
+        pstmt.setLong(2, lastAt);
+        pstmt.setLong(3, archive.getLastArchivedId());
+        int deleted = pstmt.executeUpdate();
+        if (deleted > 0) {
+            logger.info("Removed " + deleted + " purchases that were archived before the last shutdown.");
+        }
+    }
+
+    /**
+     * Databases created before retention existed use auto_vacuum NONE, which
+     * can only be changed by rebuilding the whole file with VACUUM. That would
+     * hold the writer (and with a full queue the server) for as long as it
+     * takes, so it is left to the admin; freed pages are still reused.
+     */
+    private boolean enableIncrementalVacuum() throws SQLException {
+        try (Statement stmt = pool.writer().getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA auto_vacuum")) {
+            if (rs.next() && rs.getInt(1) == 2) {
+                return true;
+            }
+        }
+        if (!conversionLogged) {
+            conversionLogged = true;
+            logger.info("database.db was created without incremental vacuum, so archiving frees pages for reuse "
+                + "but does not shrink the file. To enable it, stop the server and run: "
+                + "sqlite3 database.db \"PRAGMA auto_vacuum = INCREMENTAL; VACUUM;\"");
+        }
+        return false;
+    }
+
+    private void vacuumStep() throws SQLException {
+        try (Statement stmt = pool.writer().getConnection().createStatement()) {
+            long free;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA freelist_count")) {
+                free = rs.next() ? rs.getLong(1) : 0L;
+            }
+            if (free == 0) {
+                vacuuming = false;
+                return;
+            }
+            // The driver steps the pragma only once, which frees a single page per execute
+            for (long page = Math.min(free, vacuumPagesPerStep); page > 0; page--) {
+                stmt.execute("PRAGMA incremental_vacuum(1)");
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.glacio.nomad.database;
+
+/**
+ * One row of a player's purchase history; {@code price} is the total paid
+ * for {@code quantity} units.
+ */
+public record PurchaseRow(long id, String itemMaterial, String itemName, double price, int quantity, long purchasedAt) {
+
+    public PurchaseCursor cursor() {
+        return new PurchaseCursor(purchasedAt, id);
+    }
+}
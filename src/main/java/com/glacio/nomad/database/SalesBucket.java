@@ -0,0 +1,5 @@
+package com.glacio.nomad.database;
+
+/** Units sold and revenue in one rollup bucket starting at {@code bucketStart} (epoch millis). */
+public record SalesBucket(long bucketStart, long itemsSold, double revenue) {
+}
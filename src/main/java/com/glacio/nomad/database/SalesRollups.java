@@ -0,0 +1,280 @@
+package com.glacio.nomad.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Hourly and daily sales buckets per material, plus an {@link #ALL_ITEMS}
+ * row per bucket with the total. Deltas from committed journal batches are
+ * collected here and flushed with the aggregate tables, so time-range
+ * stats read a handful of bucket rows instead of scanning purchases.
+ *
+ * <p>Hourly buckets start on the hour in UTC; daily buckets start at
+ * midnight in the configured zone, whatever its offset. Only the journal writer thread touches
+ * the pending deltas.
+ */
+public class SalesRollups {
+
+    /** Material key of the per-bucket total row. */
+    public static final String ALL_ITEMS = "*";
+
+    public enum Granularity {
+        HOURLY("sales_hourly"),
+        DAILY("sales_daily");
+
+        private final String table;
+
+        Granularity(String table) {
+            this.table = table;
+        }
+
+        public String getTable() {
+            return table;
+        }
+    }
+
+    static final long HOUR_MILLIS = 3_600_000L;
+
+    private static final List<String> COLUMNS = List.of("bucket_start", "item_material", "times_purchased", "total_revenue");
+    private static final Map<SqlDialect, Map<Granularity, String>> UPSERTS = new EnumMap<>(SqlDialect.class);
+    private static final Map<Granularity, String> TOTALS_QUERIES = new EnumMap<>(Granularity.class);
+    private static final Map<Granularity, String> TOP_ITEMS_QUERIES = new EnumMap<>(Granularity.class);
+
+    static {
+        for (Granularity granularity : Granularity.values()) {
+            TOTALS_QUERIES.put(granularity, """
+                SELECT bucket_start, times_purchased, total_revenue
+                FROM %s
+                WHERE bucket_start >= ? AND bucket_start < ? AND item_material = ?
+                ORDER BY bucket_start
+                """.formatted(granularity.getTable()));
+            TOP_ITEMS_QUERIES.put(granularity, """
+                SELECT item_material, SUM(times_purchased) AS sold, SUM(total_revenue) AS revenue
+                FROM %s
+                WHERE bucket_start >= ? AND bucket_start < ? AND item_material <> ?
+                GROUP BY item_material
+                ORDER BY sold DESC
+                LIMIT ?
+                """.formatted(granularity.getTable()));
+        }
+        for (SqlDialect dialect : SqlDialect.values()) {
+            Map<Granularity, String> statements = new EnumMap<>(Granularity.class);
+            for (Granularity granularity : Granularity.values()) {
+                statements.put(granularity, dialect.upsert(granularity.getTable(), "bucket_start, item_material", COLUMNS,
+                    List.of("times_purchased", "total_revenue"), List.of()));
+            }
+            UPSERTS.put(dialect, statements);
+        }
+    }
+
+    private record BucketKey(long bucketStart, String material) {
+    }
+
+    private static final class Totals {
+        long count;
+        double revenue;
+
+        void add(long count, double revenue) {
+            this.count += count;
+            this.revenue += revenue;
+        }
+    }
+
+    private final ZoneId zone;
+    private final Map<Granularity, Map<BucketKey, Totals>> pending = new EnumMap<>(Granularity.class);
+
+    public SalesRollups(ZoneId zone) {
+        this.zone = zone;
+        for (Granularity granularity : Granularity.values()) {
+            pending.put(granularity, new HashMap<>());
+        }
+    }
+
+    public static long hourStart(long millis) {
+        return Math.floorDiv(millis, HOUR_MILLIS) * HOUR_MILLIS;
+    }
+
+    public long dayStart(long millis) {
+        return dayStart(millis, zone);
+    }
+
+    private static long dayStart(long millis, ZoneId zone) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    public long bucketStart(Granularity granularity, long millis) {
+        return granularity == Granularity.HOURLY ? hourStart(millis) : dayStart(millis);
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /** Adds a committed purchase to the pending deltas. Writer thread only. */
+    public void add(PurchaseRecord record) {
+        add(Granularity.HOURLY, hourStart(record.purchasedAt()), record);
+        add(Granularity.DAILY, dayStart(record.purchasedAt()), record);
+    }
+
+    private void add(Granularity granularity, long bucketStart, PurchaseRecord record) {
+        Map<BucketKey, Totals> buckets = pending.get(granularity);
+        buckets.computeIfAbsent(new BucketKey(bucketStart, record.itemMaterial()), k -> new Totals())
+            .add(record.quantity(), record.price());
+        buckets.computeIfAbsent(new BucketKey(bucketStart, ALL_ITEMS), k -> new Totals())
+            .add(record.quantity(), record.price());
+    }
+
+    /**
+     * Upserts the pending deltas inside the caller's transaction. They are
+     * only dropped once every statement succeeded, so a failed flush is
+     * retried in full with the next one.
+     */
+    public void flush(PooledConnection writer, SqlDialect dialect) throws SQLException {
+        for (Granularity granularity : Granularity.values()) {
+            Map<BucketKey, Totals> buckets = pending.get(granularity);
+            if (buckets.isEmpty()) {
+                continue;
+            }
+            PreparedStatement pstmt = writer.prepare(UPSERTS.get(dialect).get(granularity));
+            for (Map.Entry<BucketKey, Totals> entry : buckets.entrySet()) {
+                pstmt.setLong(1, entry.getKey().bucketStart());
+                pstmt.setString(2, entry.getKey().material());
+                pstmt.setLong(3, entry.getValue().count);
+                pstmt.setDouble(4, entry.getValue().revenue);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        for (Map<BucketKey, Totals> buckets : pending.values()) {
+            buckets.clear();
+        }
+    }
+
+    /** Drops the pending deltas, used when the rollups are rebuilt from purchases. */
+    public void clear() {
+        for (Map<BucketKey, Totals> buckets : pending.values()) {
+            buckets.clear();
+        }
+    }
+
+    public void rebuild(Connection connection) throws SQLException {
+        rebuild(connection, zone);
+    }
+
+    /**
+     * Recomputes both rollup tables from the purchases table inside the
+     * caller's transaction. Hours are grouped in SQL; days are folded from
+     * the purchases here because SQL has no portable time zone arithmetic,
+     * and folding the UTC hours would misplace purchases near midnight in
+     * zones with a half or quarter hour offset. Rows without a timestamp yet
+     * are left out until the backfill sets it.
+     */
+    static void rebuild(Connection connection, ZoneId zone) throws SQLException {
+        String hourBucket = "purchased_at - purchased_at % " + HOUR_MILLIS;
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DELETE FROM sales_hourly");
+            stmt.executeUpdate("DELETE FROM sales_daily");
+            stmt.executeUpdate("""
+                INSERT INTO sales_hourly (bucket_start, item_material, times_purchased, total_revenue)
+                SELECT %1$s, item_material, SUM(quantity), SUM(price)
+                FROM purchases
+                WHERE purchased_at > 0
+                GROUP BY %1$s, item_material
+                """.formatted(hourBucket));
+            stmt.executeUpdate("""
+                INSERT INTO sales_hourly (bucket_start, item_material, times_purchased, total_revenue)
+                SELECT bucket_start, '%s', SUM(times_purchased), SUM(total_revenue)
+                FROM sales_hourly
+                GROUP BY bucket_start
+                """.formatted(ALL_ITEMS));
+        }
+
+        Map<BucketKey, Totals> days = new LinkedHashMap<>();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setFetchSize(10_000);
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT purchased_at, item_material, quantity, price FROM purchases WHERE purchased_at > 0")) {
+                // Rows come roughly in time order, so most of them fall in the day of the previous one
+                long dayStart = 0L;
+                long nextDayStart = 0L;
+                while (rs.next()) {
+                    long at = rs.getLong(1);
+                    if (at < dayStart || at >= nextDayStart) {
+                        ZonedDateTime day = Instant.ofEpochMilli(at).atZone(zone).toLocalDate().atStartOfDay(zone);
+                        dayStart = day.toInstant().toEpochMilli();
+                        nextDayStart = day.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                    }
+                    long quantity = rs.getLong(3);
+                    double price = rs.getDouble(4);
+                    days.computeIfAbsent(new BucketKey(dayStart, rs.getString(2)), k -> new Totals()).add(quantity, price);
+                    days.computeIfAbsent(new BucketKey(dayStart, ALL_ITEMS), k -> new Totals()).add(quantity, price);
+                }
+            }
+        }
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO sales_daily (bucket_start, item_material, times_purchased, total_revenue) VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<BucketKey, Totals> entry : days.entrySet()) {
+                pstmt.setLong(1, entry.getKey().bucketStart());
+                pstmt.setString(2, entry.getKey().material());
+                pstmt.setLong(3, entry.getValue().count);
+                pstmt.setDouble(4, entry.getValue().revenue);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /** The queries run by {@link #readTotals} and {@link #readTopItems}, for preparing readers ahead of time. */
+    static List<String> readQueries() {
+        List<String> queries = new ArrayList<>(TOTALS_QUERIES.values());
+        queries.addAll(TOP_ITEMS_QUERIES.values());
+        return queries;
+    }
+
+    /** Totals per bucket in {@code [from, to)}, oldest first; empty buckets are omitted. */
+    public static List<SalesBucket> readTotals(PooledConnection reader, Granularity granularity,
+                                               long from, long to) throws SQLException {
+        PreparedStatement pstmt = reader.prepare(TOTALS_QUERIES.get(granularity));
+        pstmt.setLong(1, from);
+        pstmt.setLong(2, to);
+        pstmt.setString(3, ALL_ITEMS);
+        List<SalesBucket> buckets = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                buckets.add(new SalesBucket(rs.getLong(1), rs.getLong(2), rs.getDouble(3)));
+            }
+        }
+        return buckets;
+    }
+
+    /** Best-selling materials over the buckets in {@code [from, to)}, named through {@code names}. */
+    public static List<TopItem> readTopItems(PooledConnection reader, Granularity granularity, long from, long to,
+                                             int limit, Function<String, String> names) throws SQLException {
+        PreparedStatement pstmt = reader.prepare(TOP_ITEMS_QUERIES.get(granularity));
+        pstmt.setLong(1, from);
+        pstmt.setLong(2, to);
+        pstmt.setString(3, ALL_ITEMS);
+        pstmt.setInt(4, limit);
+        List<TopItem> items = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                String material = rs.getString(1);
+                items.add(new TopItem(material, names.apply(material), rs.getInt(2), rs.getDouble(3)));
+            }
+        }
+        return items;
+    }
+}
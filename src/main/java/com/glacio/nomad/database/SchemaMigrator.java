@@ -0,0 +1,308 @@
+package com.glacio.nomad.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Applies schema changes in version order. Each migration runs in its own
+ * transaction together with its schema_version row, so a failed migration
+ * leaves the database at the previous version. MySQL commits DDL
+ * implicitly, so there every step is written to be safe to re-run, and
+ * servers sharing the database migrate one at a time under an advisory lock.
+ */
+public class SchemaMigrator {
+
+    @FunctionalInterface
+    public interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    public record Migration(int version, String description, Step step) {
+    }
+
+    private static final int LOCK_TIMEOUT_SECONDS = 120;
+
+    private final Connection connection;
+    private final SqlDialect dialect;
+    private final ZoneId zone;
+    private final Logger logger;
+    private final List<Migration> migrations = new ArrayList<>();
+
+    /** {@code zone} decides where daily sales buckets start. */
+    public SchemaMigrator(Connection connection, SqlDialect dialect, ZoneId zone, Logger logger) {
+        this.connection = connection;
+        this.dialect = dialect;
+        this.zone = zone;
+        this.logger = logger;
+
+        migrations.add(new Migration(1, "create base tables", this::createBaseTables));
+        migrations.add(new Migration(2, "add epoch-millis timestamp columns", this::addTimestampColumns));
+        migrations.add(new Migration(3, "index purchases by player and time", this::indexPurchases));
+        migrations.add(new Migration(4, "add purchase quantity", this::addQuantity));
+        migrations.add(new Migration(5, "create hourly and daily sales rollups", this::createSalesRollups));
+        migrations.add(new Migration(6, "create plugin metadata table", this::createMetadata));
+        migrations.add(new Migration(7, "track units bought per player and material", this::createPlayerItemStats));
+    }
+
+    public int getLatestVersion() {
+        return migrations.get(migrations.size() - 1).version();
+    }
+
+    public int currentVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INTEGER PRIMARY KEY,
+                    description TEXT NOT NULL,
+                    applied_at %s NOT NULL
+                )
+                """.formatted(dialect.bigint()));
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    public void migrate() throws SQLException {
+        if (dialect != SqlDialect.MYSQL) {
+            migrateUnlocked();
+            return;
+        }
+        // Servers started together would otherwise all run the same step
+        String lock = "nomad_migrate:" + connection.getCatalog();
+        try (PreparedStatement pstmt = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            pstmt.setString(1, lock);
+            pstmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Timed out after " + LOCK_TIMEOUT_SECONDS + "s waiting for another server to migrate the database");
+                }
+            }
+        }
+        try {
+            // The version is read under the lock, after any other server's migration
+            migrateUnlocked();
+        } finally {
+            try (PreparedStatement pstmt = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                pstmt.setString(1, lock);
+                pstmt.executeQuery().close();
+            } catch (SQLException e) {
+                logger.warning("Could not release the migration lock: " + e.getMessage());
+            }
+        }
+    }
+
+    private void migrateUnlocked() throws SQLException {
+        int current = currentVersion();
+        if (current > getLatestVersion()) {
+            throw new SQLException("Database schema version " + current + " is newer than this plugin supports (" + getLatestVersion() + ")");
+        }
+
+        for (Migration migration : migrations) {
+            if (migration.version() <= current) {
+                continue;
+            }
+
+            logger.info("Applying database migration " + migration.version() + ": " + migration.description());
+            connection.setAutoCommit(false);
+            try {
+                migration.step().apply(connection);
+                try (PreparedStatement pstmt = connection.prepareStatement(
+                        "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                    pstmt.setInt(1, migration.version());
+                    pstmt.setString(2, migration.description());
+                    pstmt.setLong(3, System.currentTimeMillis());
+                    pstmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw new SQLException("Migration " + migration.version() + " (" + migration.description() + ") failed: " + e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (column.equalsIgnoreCase(meta.getColumnName(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static void addColumn(Connection connection, String table, String column, String type) throws SQLException {
+        if (hasColumn(connection, table, column)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+
+    static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        // H2 stores unquoted names in upper case
+        for (String name : new String[] {table, table.toUpperCase(Locale.ROOT)}) {
+            try (ResultSet rs = meta.getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // MySQL has no IF [NOT] EXISTS for indexes, so both dialects go through the catalog
+    static void createIndex(Connection connection, String index, String table, String columns) throws SQLException {
+        if (hasIndex(connection, table, index)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private void dropIndex(String index, String table) throws SQLException {
+        if (!hasIndex(connection, table, index)) {
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(dialect == SqlDialect.SQLITE ? "DROP INDEX " + index : "DROP INDEX " + index + " ON " + table);
+        }
+    }
+
+    private void createBaseTables(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            // Player purchases table
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS purchases (
+                    id %s,
+                    player_uuid %s NOT NULL,
+                    player_name TEXT NOT NULL,
+                    item_material %s NOT NULL,
+                    item_name %s NOT NULL,
+                    price REAL NOT NULL,
+                    purchase_date TEXT NOT NULL,
+                    server_name TEXT
+                )
+                """.formatted(dialect.autoIncrementKey(), dialect.keyText(36), dialect.keyText(64), dialect.keyText(255)));
+
+            // Player statistics table
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS player_stats (
+                    player_uuid %s PRIMARY KEY,
+                    player_name TEXT NOT NULL,
+                    total_purchases %s DEFAULT 0,
+                    total_spent REAL DEFAULT 0.0,
+                    first_purchase_date TEXT,
+                    last_purchase_date TEXT
+                )
+                """.formatted(dialect.keyText(36), dialect.bigint()));
+
+            // Item popularity table
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS item_popularity (
+                    item_material %s PRIMARY KEY,
+                    item_name TEXT NOT NULL,
+                    times_purchased %s DEFAULT 0,
+                    total_revenue REAL DEFAULT 0.0,
+                    last_purchased TEXT
+                )
+                """.formatted(dialect.keyText(64), dialect.bigint()));
+        }
+    }
+
+    // Existing rows keep NULL here until TimestampBackfill converts their TEXT dates
+    private void addTimestampColumns(Connection connection) throws SQLException {
+        addColumn(connection, "purchases", "purchased_at", dialect.bigint());
+        addColumn(connection, "player_stats", "first_purchase_at", dialect.bigint());
+        addColumn(connection, "player_stats", "last_purchase_at", dialect.bigint());
+        addColumn(connection, "item_popularity", "last_purchased_at", dialect.bigint());
+    }
+
+    private void indexPurchases(Connection connection) throws SQLException {
+        // Covers the per-player history query so it never touches the table rows
+        createIndex(connection, "idx_purchases_player_time", "purchases",
+            "player_uuid, purchased_at, id, item_material, item_name, price");
+        createIndex(connection, "idx_purchases_time", "purchases", "purchased_at");
+    }
+
+    // One row per order: price is the total paid and quantity the units delivered
+    private void addQuantity(Connection connection) throws SQLException {
+        addColumn(connection, "purchases", "quantity", "INTEGER NOT NULL DEFAULT 1");
+        // Rebuild the covering index so the history query still never reads table rows
+        dropIndex("idx_purchases_player_time", "purchases");
+        createIndex(connection, "idx_purchases_player_time", "purchases",
+            "player_uuid, purchased_at, id, item_material, item_name, price, quantity");
+    }
+
+    private void createSalesRollups(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (SalesRollups.Granularity granularity : SalesRollups.Granularity.values()) {
+                stmt.execute("""
+                    CREATE TABLE IF NOT EXISTS %s (
+                        bucket_start %s NOT NULL,
+                        item_material %s NOT NULL,
+                        times_purchased %s DEFAULT 0,
+                        total_revenue REAL DEFAULT 0.0,
+                        PRIMARY KEY (bucket_start, item_material)
+                    )
+                    """.formatted(granularity.getTable(), dialect.bigint(), dialect.keyText(64), dialect.bigint()));
+            }
+        }
+        // Existing history is rolled up once here; new purchases are added as they are written
+        SalesRollups.rebuild(connection, zone);
+    }
+
+    // Facts every server sharing the database must agree on, such as which one archives it
+    private void createMetadata(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS nomad_meta (
+                    meta_key %s PRIMARY KEY,
+                    meta_value TEXT NOT NULL
+                )
+                """.formatted(dialect.keyText(64)));
+        }
+    }
+
+    // Archived purchases are added by the server holding the archive, see DatabaseManager
+    private void createPlayerItemStats(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS player_item_stats (
+                    player_uuid %s NOT NULL,
+                    item_material %s NOT NULL,
+                    units %s DEFAULT 0,
+                    PRIMARY KEY (player_uuid, item_material)
+                )
+                """.formatted(dialect.keyText(36), dialect.keyText(64), dialect.bigint()));
+            stmt.executeUpdate("DELETE FROM player_item_stats");
+            stmt.executeUpdate("""
+                INSERT INTO player_item_stats (player_uuid, item_material, units)
+                SELECT player_uuid, item_material, SUM(quantity)
+                FROM purchases
+                GROUP BY player_uuid, item_material
+                """);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.glacio.nomad.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The SQL differences between the supported backends. Everything else is
+ * written in the subset SQLite, MySQL/MariaDB and H2 (MySQL mode) share.
+ */
+public enum SqlDialect {
+
+    SQLITE("SQLite"),
+    MYSQL("MySQL");
+
+    /**
+     * For an upsert: keeps the latest (or earliest) of the stored and new
+     * {@code by}, and takes {@code following} from whichever row that is, so
+     * a server flushing older deltas to a shared database never moves it back.
+     */
+    public record Keep(String by, boolean latest, List<String> following) {
+
+        public static Keep latest(String by, String... following) {
+            return new Keep(by, true, List.of(following));
+        }
+
+        public static Keep earliest(String by, String... following) {
+            return new Keep(by, false, List.of(following));
+        }
+    }
+
+    private final String displayName;
+
+    SqlDialect(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /** 64-bit integer column; MySQL's INTEGER is only 32 bits. */
+    public String bigint() {
+        return this == SQLITE ? "INTEGER" : "BIGINT";
+    }
+
+    public String autoIncrementKey() {
+        return this == SQLITE ? "INTEGER PRIMARY KEY AUTOINCREMENT" : "BIGINT PRIMARY KEY AUTO_INCREMENT";
+    }
+
+    /** Text column that is part of a key or index; MySQL cannot index unbounded TEXT. */
+    public String keyText(int maxLength) {
+        return this == SQLITE ? "TEXT" : "VARCHAR(" + maxLength + ")";
+    }
+
+    /**
+     * INSERT of {@code columns} that, when a row with the same {@code key}
+     * exists, adds the new values of {@code summed} to it and overwrites
+     * {@code replaced}. Columns not listed keep their stored value.
+     */
+    public String upsert(String table, String key, List<String> columns, List<String> summed, List<String> replaced) {
+        return upsert(table, key, columns, summed, replaced, List.of());
+    }
+
+    /** Like the plain upsert, with columns that only move forward (or back) in time as {@code kept}. */
+    public String upsert(String table, String key, List<String> columns, List<String> summed, List<String> replaced,
+                         List<Keep> kept) {
+        List<String> assignments = new ArrayList<>();
+        for (String column : summed) {
+            assignments.add(column + " = " + column + " + " + inserted(column));
+        }
+        for (String column : replaced) {
+            assignments.add(column + " = " + inserted(column));
+        }
+        for (Keep keep : kept) {
+            String stored = "COALESCE(" + keep.by() + ", " + inserted(keep.by()) + ")";
+            // MySQL assigns left to right with the updated values, so the followers compare first
+            String newer = inserted(keep.by()) + (keep.latest() ? " >= " : " <= ") + stored;
+            for (String column : keep.following()) {
+                assignments.add(column + " = CASE WHEN " + newer + " THEN " + inserted(column) + " ELSE " + column + " END");
+            }
+            assignments.add(keep.by() + " = " + (keep.latest() ? greatest() : least()) + "(" + stored + ", "
+                + inserted(keep.by()) + ")");
+        }
+        String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
+        String conflict = this == SQLITE ? "ON CONFLICT(" + key + ") DO UPDATE SET " : "ON DUPLICATE KEY UPDATE ";
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders + ") "
+            + conflict + String.join(", ", assignments);
+    }
+
+    private String greatest() {
+        return this == SQLITE ? "MAX" : "GREATEST";
+    }
+
+    private String least() {
+        return this == SQLITE ? "MIN" : "LEAST";
+    }
+
+    // VALUES() is deprecated in MySQL 8.0.20 but is the form MariaDB and H2 also accept
+    private String inserted(String column) {
+        return this == SQLITE ? "excluded." + column : "VALUES(" + column + ")";
+    }
+}
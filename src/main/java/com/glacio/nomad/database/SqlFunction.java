@@ -0,0 +1,8 @@
+package com.glacio.nomad.database;
+
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface SqlFunction<T, R> {
+    R apply(T value) throws SQLException;
+}
@@ -0,0 +1,148 @@
+package com.glacio.nomad.database;
+
+import org.sqlite.SQLiteConfig;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer / multi-reader access to the SQLite database. The writer
+ * connection is owned by whichever thread performs writes (the purchase
+ * journal); readers are leased from a small pool of read-only connections.
+ * With WAL journaling readers never block the writer and vice versa.
+ */
+public class SqliteConnectionPool implements ConnectionPool {
+
+    private final String url;
+    private final int readerCount;
+    private final int cacheSizeKb;
+    private final long mmapSizeBytes;
+    private final int busyTimeoutMs;
+
+    private PooledConnection writer;
+    private final List<PooledConnection> readers = new ArrayList<>();
+    private BlockingQueue<PooledConnection> idleReaders;
+
+    public SqliteConnectionPool(String dbPath, int readerCount, int cacheSizeKb, int mmapSizeMb, int busyTimeoutMs) {
+        this.url = "jdbc:sqlite:" + dbPath;
+        this.readerCount = Math.max(1, readerCount);
+        this.cacheSizeKb = cacheSizeKb;
+        this.mmapSizeBytes = mmapSizeMb * 1024L * 1024L;
+        this.busyTimeoutMs = busyTimeoutMs;
+    }
+
+    @Override
+    public void open() throws SQLException {
+        // The writer goes first so the file exists and is switched to WAL before readers attach
+        SQLiteConfig writerConfig = baseConfig();
+        writerConfig.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        writer = new PooledConnection(writerConfig.createConnection(url));
+        try (Statement stmt = writer.getConnection().createStatement()) {
+            // auto_vacuum must be set before WAL to apply to a new file; older files need
+            // an offline VACUUM, which PurchaseRetention explains when it first frees pages
+            stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+
+        idleReaders = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; i++) {
+            SQLiteConfig readerConfig = baseConfig();
+            readerConfig.setReadOnly(true);
+            PooledConnection reader = new PooledConnection(readerConfig.createConnection(url));
+            readers.add(reader);
+            idleReaders.add(reader);
+        }
+    }
+
+    private SQLiteConfig baseConfig() {
+        SQLiteConfig config = new SQLiteConfig();
+        // Negative cache_size is in KiB rather than pages
+        config.setCacheSize(-cacheSizeKb);
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(mmapSizeBytes));
+        config.setBusyTimeout(busyTimeoutMs);
+        return config;
+    }
+
+    @Override
+    public PooledConnection writer() {
+        return writer;
+    }
+
+    @Override
+    public <T> T read(SqlFunction<PooledConnection, T> query) throws SQLException {
+        PooledConnection reader = lease();
+        try {
+            return query.apply(reader);
+        } finally {
+            idleReaders.offer(reader);
+        }
+    }
+
+    @Override
+    public void forEachReader(SqlFunction<PooledConnection, ?> action) throws SQLException {
+        List<PooledConnection> leased = new ArrayList<>(readerCount);
+        try {
+            while (leased.size() < readerCount) {
+                leased.add(lease());
+            }
+            for (PooledConnection reader : leased) {
+                action.apply(reader);
+            }
+        } finally {
+            idleReaders.addAll(leased);
+        }
+    }
+
+    private PooledConnection lease() throws SQLException {
+        PooledConnection reader;
+        try {
+            reader = idleReaders.poll(busyTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        if (reader == null) {
+            throw new SQLException("No reader connection available after " + busyTimeoutMs + "ms");
+        }
+        return reader;
+    }
+
+    @Override
+    public SqlDialect dialect() {
+        return SqlDialect.SQLITE;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException failure = null;
+        for (PooledConnection reader : readers) {
+            try {
+                reader.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        readers.clear();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (SQLException e) {
+                failure = e;
+            }
+            writer = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return writer != null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.glacio.nomad.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Fills the epoch-millis columns added in schema version 2 from the legacy
+ * TEXT dates. Work is done in small chunks, each in its own short
+ * transaction, so purchase writes are never held up for long.
+ */
+public class TimestampBackfill {
+
+    private record Target(String table, String textColumn, String millisColumn) {
+    }
+
+    private static final List<Target> TARGETS = List.of(
+        new Target("purchases", "purchase_date", "purchased_at"),
+        new Target("player_stats", "first_purchase_date", "first_purchase_at"),
+        new Target("player_stats", "last_purchase_date", "last_purchase_at"),
+        new Target("item_popularity", "last_purchased", "last_purchased_at")
+    );
+
+    private final int chunkSize;
+    private final Logger logger;
+    private int targetIndex = 0;
+    private long converted = 0;
+
+    public TimestampBackfill(int chunkSize, Logger logger) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.logger = logger;
+    }
+
+    public boolean isComplete() {
+        return targetIndex >= TARGETS.size();
+    }
+
+    /** Number of dates converted so far; zero when there was nothing to backfill. */
+    public long getConverted() {
+        return converted;
+    }
+
+    /** Converts at most one chunk. Runs on the writer thread. */
+    public void runChunk(PooledConnection writer) throws SQLException {
+        if (isComplete()) {
+            return;
+        }
+
+        Target target = TARGETS.get(targetIndex);
+        String select = "SELECT rowid, " + target.textColumn() + " FROM " + target.table()
+            + " WHERE " + target.millisColumn() + " IS NULL AND " + target.textColumn() + " IS NOT NULL LIMIT ?";
+        String update = "UPDATE " + target.table() + " SET " + target.millisColumn() + " = ? WHERE rowid = ?";
+
+        List<long[]> rows = new ArrayList<>(chunkSize);
+        PreparedStatement selectStmt = writer.prepare(select);
+        selectStmt.setInt(1, chunkSize);
+        try (ResultSet rs = selectStmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(new long[] {rs.getLong(1), toEpochMillis(rs.getString(2))});
+            }
+        }
+
+        if (rows.isEmpty()) {
+            targetIndex++;
+            if (isComplete() && converted > 0) {
+                logger.info("Timestamp backfill finished, converted " + converted + " values.");
+            }
+            return;
+        }
+
+        Connection connection = writer.getConnection();
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement updateStmt = writer.prepare(update);
+            for (long[] row : rows) {
+                updateStmt.setLong(1, row[1]);
+                updateStmt.setLong(2, row[0]);
+                updateStmt.addBatch();
+            }
+            updateStmt.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        converted += rows.size();
+    }
+
+    // Legacy dates are LocalDateTime.toString() in the server's zone
+    private long toEpochMillis(String text) {
+        try {
+            return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            logger.warning("Unparseable purchase date '" + text + "', storing it as 0");
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.glacio.nomad.database;
+
+public record TopItem(String itemMaterial, String itemName, int timesPurchased, double totalRevenue) {
+}
@@ -0,0 +1,4 @@
+package com.glacio.nomad.database;
+
+public record TopSpender(String playerName, int totalPurchases, double totalSpent) {
+}
@@ -0,0 +1,122 @@
+package com.glacio.nomad.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a file off the main thread by writing a temp file, forcing it to
+ * disk and renaming it over the target, so a crash leaves either the old or
+ * the new content. Submissions made while a write is pending are coalesced
+ * into the latest one, and a failed write is retried with a growing delay
+ * until it succeeds or newer content replaces it.
+ */
+public class AtomicFileWriter {
+
+    private static final long MIN_RETRY_MS = 1_000L;
+    private static final long MAX_RETRY_MS = 60_000L;
+
+    private final Path file;
+    private final Logger logger;
+    private final ScheduledThreadPoolExecutor writer;
+    private final AtomicReference<Supplier<String>> pending = new AtomicReference<>();
+    // Separate from pending: content kept after a failure must not stop later submits from scheduling
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private long retryDelayMs = MIN_RETRY_MS;
+
+    public AtomicFileWriter(Path file, String threadName, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A retry still waiting at close is written by close itself
+        this.writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void submit(String content) {
+        submit(() -> content);
+    }
+
+    /**
+     * Like {@link #submit(String)}, but the content is rendered on the writer
+     * thread. The supplier must only read an immutable snapshot; a coalesced
+     * or failed submission may be rendered late, or more than once.
+     */
+    public void submit(Supplier<String> content) {
+        pending.set(content);
+        if (scheduled.compareAndSet(false, true)) {
+            writer.execute(this::writePending);
+        }
+    }
+
+    /** Writes any pending content and stops the writer thread. */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            writer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        writePending();
+    }
+
+    private synchronized void writePending() {
+        // Cleared first so a submit racing with this write schedules another one
+        scheduled.set(false);
+        Supplier<String> content = pending.getAndSet(null);
+        if (content == null) {
+            return;
+        }
+        try {
+            write(file, content.get());
+            retryDelayMs = MIN_RETRY_MS;
+        } catch (IOException e) {
+            // Keep it for the retry unless newer content has arrived
+            pending.compareAndSet(null, content);
+            logger.log(Level.SEVERE, "Could not save " + file.getFileName() + ", retrying in "
+                + retryDelayMs / 1000L + "s", e);
+            if (!writer.isShutdown() && scheduled.compareAndSet(false, true)) {
+                writer.schedule(this::writePending, retryDelayMs, TimeUnit.MILLISECONDS);
+            }
+            retryDelayMs = Math.min(MAX_RETRY_MS, retryDelayMs * 2L);
+        }
+    }
+
+    /** Replaces {@code target} with {@code content} on the calling thread. */
+    public static void write(Path target, String content) throws IOException {
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
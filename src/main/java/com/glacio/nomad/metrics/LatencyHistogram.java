@@ -0,0 +1,99 @@
+package com.glacio.nomad.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram: every power of
+ * two is split into {@value #SUB_BUCKETS} linear buckets, so any recorded
+ * value is known to within about 6% from 1ns up to an hour. Recording is
+ * two array increments and never allocates; safe from any thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // 2^42 ns is about 73 minutes; longer values land in the last bucket
+    private static final int MAX_EXPONENT = 42;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    /** Copy of the histogram at one point in time. */
+    public record Snapshot(long count, long sumNanos, long maxNanos, long[] buckets) {
+
+        public double meanNanos() {
+            return count == 0 ? 0.0 : sumNanos / (double) count;
+        }
+
+        /** Upper bound of the bucket holding the {@code quantile} (0..1) value, capped at the max. */
+        public long percentileNanos(double quantile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos));
+        count.increment();
+        sumNanos.add(nanos);
+        if (nanos > maxNanos.get()) {
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /** Records the time elapsed since a {@link System#nanoTime()} reading. */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        // Bucket totals are the consistent view; the adders may be a record ahead
+        return new Snapshot(total, sumNanos.sum(), maxNanos.get(), copy);
+    }
+
+    static int index(long value) {
+        int exponent = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (exponent < SUB_BITS) {
+            return (int) value;
+        }
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
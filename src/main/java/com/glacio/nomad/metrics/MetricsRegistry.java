@@ -0,0 +1,71 @@
+package com.glacio.nomad.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges and latency histograms. Names follow Prometheus
+ * conventions and may carry labels, e.g.
+ * {@code nomad_purchase_outcomes_total{outcome="sold_out"}}; help text is
+ * kept per family (the name without labels). Lookups happen when a
+ * component starts, so hot paths only touch the returned objects.
+ */
+public final class MetricsRegistry {
+
+    private final Map<String, String> help = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    public LongAdder counter(String name, String description) {
+        help.putIfAbsent(family(name), description);
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /** Registers or replaces a gauge; {@code value} is read from the exporting thread. */
+    public void gauge(String name, String description, DoubleSupplier value) {
+        help.putIfAbsent(family(name), description);
+        gauges.put(name, value);
+    }
+
+    public LatencyHistogram histogram(String name, String description) {
+        help.putIfAbsent(family(name), description);
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public Map<String, LongAdder> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    public Map<String, DoubleSupplier> getGauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    public String getHelp(String family) {
+        return help.getOrDefault(family, "");
+    }
+
+    public static String labeled(String family, String label, String value) {
+        return family + "{" + label + "=\"" + value + "\"}";
+    }
+
+    /** The metric name without its labels. */
+    public static String family(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? name : name.substring(0, brace);
+    }
+
+    /** The labels without braces, or an empty string. */
+    public static String labels(String name) {
+        int brace = name.indexOf('{');
+        return brace < 0 ? "" : name.substring(brace + 1, name.length() - 1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.glacio.nomad.metrics;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Renders a registry in the Prometheus text exposition format. Histograms
+ * are exported as summaries (quantiles plus _sum and _count) in seconds.
+ */
+public final class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private PrometheusFormat() {
+    }
+
+    public static String render(MetricsRegistry registry) {
+        StringBuilder out = new StringBuilder(4096);
+        Set<String> described = new HashSet<>();
+
+        for (Map.Entry<String, LongAdder> entry : registry.getCounters().entrySet()) {
+            header(out, registry, entry.getKey(), "counter", described);
+            out.append(entry.getKey()).append(' ').append(entry.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : registry.getGauges().entrySet()) {
+            header(out, registry, entry.getKey(), "gauge", described);
+            out.append(entry.getKey()).append(' ').append(number(entry.getValue().getAsDouble())).append('\n');
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : registry.getHistograms().entrySet()) {
+            String name = entry.getKey();
+            header(out, registry, name, "summary", described);
+            String family = MetricsRegistry.family(name);
+            String labels = MetricsRegistry.labels(name);
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshot();
+            for (double quantile : QUANTILES) {
+                out.append(family).append('{');
+                if (!labels.isEmpty()) {
+                    out.append(labels).append(',');
+                }
+                out.append("quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(snapshot.percentileNanos(quantile))).append('\n');
+            }
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            out.append(family).append("_sum").append(suffix).append(' ').append(seconds(snapshot.sumNanos())).append('\n');
+            out.append(family).append("_count").append(suffix).append(' ').append(snapshot.count()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, MetricsRegistry registry, String name, String type, Set<String> described) {
+        String family = MetricsRegistry.family(name);
+        if (described.add(family)) {
+            out.append("# HELP ").append(family).append(' ').append(registry.getHelp(family)).append('\n');
+            out.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return number(nanos / 1_000_000_000.0);
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.9g", value);
+    }
+}
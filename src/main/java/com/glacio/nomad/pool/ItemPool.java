@@ -0,0 +1,135 @@
+package com.glacio.nomad.pool;
+
+import com.glacio.nomad.rotation.WeightedSampler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The item pool held in memory and indexed by id. Add and remove are O(1);
+ * removal moves the last entry into the freed position. The sampling index
+ * is rebuilt lazily on the first rotation after a change. Main thread only.
+ */
+public class ItemPool {
+
+    private final List<PoolEntry> entries = new ArrayList<>();
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private int nextId = 1;
+    private WeightedSampler sampler;
+
+    public ItemPool() {
+    }
+
+    /** Restores a saved pool; entries keep their ids. */
+    public ItemPool(Collection<PoolEntry> saved, int nextId) {
+        for (PoolEntry entry : saved) {
+            if (positions.putIfAbsent(entry.id(), entries.size()) == null) {
+                entries.add(entry);
+                this.nextId = Math.max(this.nextId, entry.id() + 1);
+            }
+        }
+        this.nextId = Math.max(this.nextId, nextId);
+    }
+
+    public PoolEntry add(PoolEntry draft) {
+        PoolEntry entry = draft.withId(nextId++);
+        positions.put(entry.id(), entries.size());
+        entries.add(entry);
+        sampler = null;
+        return entry;
+    }
+
+    /** Adds all drafts as one change; returns the number added. */
+    public int addAll(Collection<PoolEntry> drafts) {
+        for (PoolEntry draft : drafts) {
+            add(draft);
+        }
+        return drafts.size();
+    }
+
+    public PoolEntry remove(int id) {
+        Integer position = positions.remove(id);
+        if (position == null) {
+            return null;
+        }
+        PoolEntry removed = entries.get(position);
+        PoolEntry last = entries.remove(entries.size() - 1);
+        if (last != removed) {
+            entries.set(position, last);
+            positions.put(last.id(), position);
+        }
+        sampler = null;
+        return removed;
+    }
+
+    public void clear() {
+        entries.clear();
+        positions.clear();
+        sampler = null;
+    }
+
+    public PoolEntry get(int id) {
+        Integer position = positions.get(id);
+        return position != null ? entries.get(position) : null;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public int getNextId() {
+        return nextId;
+    }
+
+    /** All entries in pool order. Read-only view; do not hold across changes. */
+    public List<PoolEntry> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public PoolPage page(int offset, int limit) {
+        int from = Math.min(offset, entries.size());
+        int to = Math.min(from + limit, entries.size());
+        return new PoolPage(entries.subList(from, to), entries.size());
+    }
+
+    /** Case-insensitive match on material or name (without color codes). */
+    public PoolPage search(String query, int offset, int limit) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        List<PoolEntry> page = new ArrayList<>();
+        int total = 0;
+        for (PoolEntry entry : entries) {
+            if (entry.matches(lowerQuery)) {
+                if (total >= offset && page.size() < limit) {
+                    page.add(entry);
+                }
+                total++;
+            }
+        }
+        return new PoolPage(page, total);
+    }
+
+    /** Up to {@code count} distinct entries picked by weight; see {@link WeightedSampler}. */
+    public List<PoolEntry> sample(int count, long seed) {
+        if (sampler == null) {
+            double[] weights = new double[entries.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = entries.get(i).weight();
+            }
+            sampler = new WeightedSampler(weights);
+        }
+        List<PoolEntry> picks = new ArrayList<>(count);
+        for (int index : sampler.sample(count, seed)) {
+            picks.add(entries.get(index));
+        }
+        return picks;
+    }
+}
@@ -0,0 +1,119 @@
+package com.glacio.nomad.pool;
+
+import com.glacio.nomad.io.AtomicFileWriter;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persists the item pool to item-pool.yml, serialized and written atomically
+ * off the main thread. Also reads and writes the id-less item-pool lists used by
+ * config.yml and /nomad pool import/export.
+ */
+public class ItemPoolStore {
+
+    private final Path file;
+    private final Logger logger;
+    private final AtomicFileWriter writer;
+
+    public ItemPoolStore(File file, Logger logger) {
+        this.file = file.toPath();
+        this.logger = logger;
+        this.writer = new AtomicFileWriter(this.file, "Nomad-PoolWriter", logger);
+    }
+
+    /** Reads the saved pool, or null if there is none or it cannot be read. */
+    public ItemPool load() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.loadFromString(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.log(Level.WARNING, "Could not read the item pool from " + file.getFileName(), e);
+            return null;
+        }
+
+        List<PoolEntry> entries = new ArrayList<>();
+        for (Map<?, ?> raw : yaml.getMapList("entries")) {
+            try {
+                int id = Integer.parseInt(String.valueOf(raw.get("id")));
+                entries.add(PoolEntry.fromMap(id, raw));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping pool entry " + raw.get("id") + ": " + e.getMessage());
+            }
+        }
+        return new ItemPool(entries, yaml.getInt("next-id", 1));
+    }
+
+    /** Copies the entries on the calling thread; the YAML is built on the writer thread. */
+    public void save(ItemPool pool) {
+        List<PoolEntry> snapshot = List.copyOf(pool.entries());
+        int nextId = pool.getNextId();
+        writer.submit(() -> serialize(snapshot, nextId));
+    }
+
+    private static String serialize(List<PoolEntry> snapshot, int nextId) {
+        List<Map<String, Object>> entries = new ArrayList<>(snapshot.size());
+        for (PoolEntry entry : snapshot) {
+            Map<String, Object> data = entry.toConfigMap();
+            data.put("id", entry.id());
+            entries.add(data);
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("next-id", nextId);
+        yaml.set("entries", entries);
+        return yaml.saveToString();
+    }
+
+    /** Writes any pending save and stops the writer thread. */
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * Validates an item-pool list into drafts. Invalid entries are reported
+     * in {@code problems} by their 1-based position.
+     */
+    public static List<PoolEntry> parseItemList(List<Map<?, ?>> items, List<String> problems) {
+        List<PoolEntry> drafts = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            try {
+                drafts.add(PoolEntry.fromMap(0, items.get(i)));
+            } catch (IllegalArgumentException e) {
+                problems.add("entry " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return drafts;
+    }
+
+    /** Parses an export file's item-pool list. */
+    public static List<PoolEntry> readExport(Path source, List<String> problems) throws IOException, InvalidConfigurationException {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.loadFromString(Files.readString(source, StandardCharsets.UTF_8));
+        return parseItemList(yaml.getMapList("item-pool"), problems);
+    }
+
+    /** Serializes entries in the config.yml item-pool form, ready to be imported elsewhere. */
+    public static String toExport(Collection<PoolEntry> entries) {
+        List<Map<String, Object>> items = new ArrayList<>(entries.size());
+        for (PoolEntry entry : entries) {
+            items.add(entry.toConfigMap());
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("item-pool", items);
+        return yaml.saveToString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.glacio.nomad.pool;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One item the daily rotation can pick. {@code id} is stable for the life of
+ * the entry and is what /nomad pool remove takes; drafts that have not been
+ * added to a pool yet use id 0. {@code stock} is the amount for sale per
+ * rotation ({@link #UNLIMITED} for no limit) and {@code playerLimit} the
+ * most one player may buy per rotation (0 for no limit).
+ */
+public record PoolEntry(int id, String material, String name, double price, double weight,
+                        int stock, int playerLimit) {
+
+    public static final int UNLIMITED = -1;
+
+    public PoolEntry withId(int newId) {
+        return new PoolEntry(newId, material, name, price, weight, stock, playerLimit);
+    }
+
+    /** Name without color codes, or the material when unnamed. */
+    public String plainName() {
+        return name != null ? ChatColor.stripColor(ChatColor.translateAlternateColorCodes('&', name)) : material;
+    }
+
+    /** The entry in the daily item form stored in the rotation and compiled into the menu. */
+    public Map<String, Object> toItemData() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("pool-id", id);
+        data.put("material", material);
+        if (name != null) {
+            data.put("name", name);
+        }
+        data.put("price", price);
+        putLimits(data);
+        return data;
+    }
+
+    /** Export/config form, without the id. */
+    public Map<String, Object> toConfigMap() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("material", material);
+        if (name != null) {
+            data.put("name", name);
+        }
+        data.put("price", price);
+        if (weight != 1.0) {
+            data.put("weight", weight);
+        }
+        putLimits(data);
+        return data;
+    }
+
+    private void putLimits(Map<String, Object> data) {
+        if (stock != UNLIMITED) {
+            data.put("stock", stock);
+        }
+        if (playerLimit > 0) {
+            data.put("player-limit", playerLimit);
+        }
+    }
+
+    /**
+     * Validates an item-pool map (material, name, price and optional weight).
+     *
+     * @throws IllegalArgumentException describing the first invalid field
+     */
+    public static PoolEntry fromMap(int id, Map<?, ?> data) {
+        Object rawMaterial = data.get("material");
+        Material material = rawMaterial != null ? Material.matchMaterial(rawMaterial.toString()) : null;
+        if (material == null || material.isAir() || !material.isItem()) {
+            throw new IllegalArgumentException("invalid material: " + rawMaterial);
+        }
+        Object rawName = data.get("name");
+        double price = number(data.get("price"), "price");
+        Object rawWeight = data.get("weight");
+        double weight = rawWeight != null ? number(rawWeight, "weight") : 1.0;
+        Object rawStock = data.get("stock");
+        int stock = rawStock != null ? count(rawStock, "stock") : UNLIMITED;
+        Object rawLimit = data.get("player-limit");
+        int playerLimit = rawLimit != null ? count(rawLimit, "player-limit") : 0;
+        return new PoolEntry(id, material.name(), rawName != null ? rawName.toString() : null, price, weight,
+            stock, playerLimit);
+    }
+
+    private static int count(Object raw, String field) {
+        try {
+            int value = Integer.parseInt(String.valueOf(raw));
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("invalid " + field + ": " + raw);
+    }
+
+    private static double number(Object raw, String field) {
+        double value;
+        try {
+            value = Double.parseDouble(String.valueOf(raw));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + ": " + raw);
+        }
+        if (value < 0 || Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("invalid " + field + ": " + raw);
+        }
+        return value;
+    }
+
+    boolean matches(String lowerQuery) {
+        return material.toLowerCase(Locale.ROOT).contains(lowerQuery)
+            || plainName().toLowerCase(Locale.ROOT).contains(lowerQuery);
+    }
+}
@@ -0,0 +1,11 @@
+package com.glacio.nomad.pool;
+
+import java.util.List;
+
+/** One page of pool entries and the number of entries across all pages. */
+public record PoolPage(List<PoolEntry> entries, int total) {
+
+    public PoolPage {
+        entries = List.copyOf(entries);
+    }
+}
@@ -0,0 +1,73 @@
+package com.glacio.nomad.pricing;
+
+import org.bukkit.Material;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Recent demand per material as an exponentially weighted sales rate in
+ * units per hour, indexed by material ordinal. Sales are counted from any
+ * thread; {@link #update} folds them into the rates and is only called by
+ * the pricing thread. Readers see the rates of the last update.
+ */
+public class DemandTracker {
+
+    private static final Material[] MATERIALS = Material.values();
+
+    private volatile double halfLifeMillis;
+    private final AtomicLongArray pending = new AtomicLongArray(MATERIALS.length);
+    private final double[] rates = new double[MATERIALS.length];
+    private volatile double[] published = new double[MATERIALS.length];
+    private long lastUpdate;
+
+    public DemandTracker(long halfLifeMillis, long now) {
+        this.halfLifeMillis = Math.max(1L, halfLifeMillis);
+        this.lastUpdate = now;
+    }
+
+    /** Takes effect from the next update. */
+    public void setHalfLifeMillis(long halfLifeMillis) {
+        this.halfLifeMillis = Math.max(1L, halfLifeMillis);
+    }
+
+    public void recordSale(Material material, int units) {
+        if (units > 0) {
+            pending.addAndGet(material.ordinal(), units);
+        }
+    }
+
+    /**
+     * Decays every rate by the time since the last update and adds the sales
+     * made in between, spread over that time.
+     */
+    public void update(long now) {
+        long elapsed = now - lastUpdate;
+        if (elapsed <= 0) {
+            return;
+        }
+        double decay = Math.pow(0.5, elapsed / halfLifeMillis);
+        double hours = elapsed / 3_600_000.0;
+        for (int i = 0; i < rates.length; i++) {
+            long units = pending.getAndSet(i, 0L);
+            rates[i] = rates[i] * decay + (1.0 - decay) * (units / hours);
+        }
+        lastUpdate = now;
+        published = rates.clone();
+    }
+
+    /** Sets a rate remembered from before a restart; the downtime does not decay it. */
+    public void restore(Material material, double rate) {
+        rates[material.ordinal()] = Math.max(0.0, rate);
+        published = rates.clone();
+    }
+
+    /** Units per hour as of the last update. */
+    public double rate(Material material) {
+        return published[material.ordinal()];
+    }
+
+    /** Rates of the last update by material ordinal; must not be modified. */
+    double[] rates() {
+        return published;
+    }
+}
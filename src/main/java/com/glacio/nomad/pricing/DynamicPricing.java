@@ -0,0 +1,207 @@
+package com.glacio.nomad.pricing;
+
+import com.glacio.nomad.metrics.LatencyHistogram;
+import com.glacio.nomad.metrics.MetricsRegistry;
+import com.glacio.nomad.shop.ShopCatalog;
+import com.glacio.nomad.shop.ShopItem;
+import org.bukkit.Material;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves each rotation item's price with its recent demand. Sales feed a
+ * {@link DemandTracker}; at a fixed interval the pricing thread updates the
+ * rates, prices the current rotation and hands a repriced catalog to the
+ * server thread, which swaps it in for new and open menus at once.
+ *
+ * <p>An item's multiplier is {@code 1 + sensitivity * (rate / mean - 1)},
+ * where mean is the average rate over the rotation, clamped to the
+ * configured range. Without any recent demand every item sells at its
+ * configured price.
+ */
+public class DynamicPricing {
+
+    private final DemandTracker demand;
+    private final PriceHistory history;
+    // Replaced as a whole on reload, so a repricing never mixes old and new limits
+    private volatile PricingSettings settings;
+    private final int historyDays;
+    private final LatencyHistogram updateTimes;
+    private final Logger logger;
+    // Last price written to the history per material; pricing thread only once started
+    private final Map<Material, Double> recorded = new EnumMap<>(Material.class);
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> updates;
+    private Runnable updateTask;
+
+    public DynamicPricing(PricingSettings settings, Path historyFile, MetricsRegistry metrics, Logger logger) {
+        this.settings = settings;
+        this.historyDays = settings.historyDays();
+        this.demand = new DemandTracker(settings.halfLifeMillis(), System.currentTimeMillis());
+        this.history = new PriceHistory(historyFile, settings.historyMillis(), logger);
+        this.updateTimes = metrics.histogram("nomad_pricing_update_seconds", "Time to update demand and reprice the rotation");
+        this.logger = logger;
+    }
+
+    /** Resumes demand and last prices from the history file. Call once, before {@link #start}. */
+    public void load() {
+        try {
+            int restored = 0;
+            for (PriceHistory.Point point : history.load().values()) {
+                Material material = Material.matchMaterial(point.material());
+                if (material != null) {
+                    demand.restore(material, point.rate());
+                    recorded.put(material, point.price());
+                    restored++;
+                }
+            }
+            if (restored > 0) {
+                logger.info("Restored demand for " + restored + " materials from price history.");
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not read the price history, starting without demand", e);
+        }
+    }
+
+    /**
+     * Applies reloaded settings: the new limits and half-life from the next
+     * update, and a changed interval right away. Server thread.
+     */
+    public synchronized void configure(PricingSettings updated) {
+        PricingSettings previous = settings;
+        settings = updated;
+        demand.setHalfLifeMillis(updated.halfLifeMillis());
+        if (updates != null && updated.updateIntervalSeconds() != previous.updateIntervalSeconds()) {
+            updates.cancel(false);
+            updates = executor.scheduleWithFixedDelay(updateTask, updated.updateIntervalMillis(),
+                updated.updateIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** The history-days this instance was started with; changing it needs a restart. */
+    public int getHistoryDays() {
+        return historyDays;
+    }
+
+    public void recordSale(Material material, int units) {
+        demand.recordSale(material, units);
+    }
+
+    /** Prices by rotation index for the demand of the last update. Any thread. */
+    public double[] prices(List<ShopItem> items) {
+        PricingSettings current = settings;
+        double[] rates = demand.rates();
+        int size = 0;
+        double total = 0.0;
+        for (ShopItem item : items) {
+            size = Math.max(size, item.index() + 1);
+            total += rates[item.material().ordinal()];
+        }
+        double mean = items.isEmpty() ? 0.0 : total / items.size();
+
+        double[] prices = new double[size];
+        for (ShopItem item : items) {
+            double multiplier = 1.0;
+            if (mean > 0.0) {
+                multiplier = 1.0 + current.sensitivity() * (rates[item.material().ordinal()] / mean - 1.0);
+                multiplier = Math.min(current.maxMultiplier(), Math.max(current.minMultiplier(), multiplier));
+            }
+            prices[item.index()] = Math.round(item.basePrice() * multiplier * 100.0) / 100.0;
+        }
+        return prices;
+    }
+
+    /**
+     * Starts repricing. {@code publish} is called on the pricing thread with
+     * the current catalog at new prices, only when a price changed.
+     */
+    public synchronized void start(Supplier<ShopCatalog> current, Consumer<ShopCatalog> publish) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Nomad-Pricing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        updateTask = () -> update(current, publish);
+        long intervalMillis = settings.updateIntervalMillis();
+        updates = executor.scheduleWithFixedDelay(updateTask, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void update(Supplier<ShopCatalog> current, Consumer<ShopCatalog> publish) {
+        // An exception would cancel the schedule
+        try {
+            long start = System.nanoTime();
+            long now = System.currentTimeMillis();
+            demand.update(now);
+            ShopCatalog catalog = current.get();
+            double[] prices = prices(catalog.getItems());
+
+            boolean changed = false;
+            List<PriceHistory.Point> points = new ArrayList<>();
+            for (ShopItem item : catalog.getItems()) {
+                double price = prices[item.index()];
+                changed |= price != item.price();
+                Double last = recorded.put(item.material(), price);
+                if (last == null || last != price) {
+                    points.add(new PriceHistory.Point(item.material().name(), now, demand.rate(item.material()), price));
+                }
+            }
+            appendHistory(points);
+            if (changed) {
+                publish.accept(catalog.withPrices(prices));
+            }
+            updateTimes.recordSince(start);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Dynamic pricing update failed", e);
+        }
+    }
+
+    /** Stops repricing and saves the demand of every material that has some. */
+    public void shutdown() {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+            updates = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        demand.update(now);
+        List<PriceHistory.Point> points = new ArrayList<>();
+        for (Material material : Material.values()) {
+            double rate = demand.rate(material);
+            if (rate >= 0.001) {
+                points.add(new PriceHistory.Point(material.name(), now, rate, recorded.getOrDefault(material, 0.0)));
+            }
+        }
+        appendHistory(points);
+    }
+
+    private void appendHistory(List<PriceHistory.Point> points) {
+        try {
+            history.append(points);
+        } catch (IOException e) {
+            logger.warning("Could not write the price history: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.glacio.nomad.pricing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Append-only binary log of dynamic prices ({@code price-history.bin}). A
+ * material name is written once and then referred to by a short id; each
+ * point is 19 bytes: minute, id, sales rate and price. Points are only
+ * written when a price changes, plus one per material with demand on
+ * shutdown, so the newest point of a material is what a restart resumes from.
+ *
+ * <p>A record cut short by a crash is dropped on load. Points older than
+ * the kept history are dropped on load too, keeping the newest point of
+ * every material.
+ */
+public class PriceHistory {
+
+    public record Point(String material, long at, double rate, double price) {
+    }
+
+    private static final int MAGIC = 0x4E4D5048;
+    private static final int VERSION = 1;
+    private static final int DEFINE = 1;
+    private static final int POINT = 2;
+
+    private final Path file;
+    private final long keepMillis;
+    private final Logger logger;
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public PriceHistory(Path file, long keepMillis, Logger logger) {
+        this.file = file;
+        this.keepMillis = keepMillis;
+        this.logger = logger;
+    }
+
+    /** Reads the newest point per material and tidies the file. Called once, before any append. */
+    public Map<String, Point> load() throws IOException {
+        ids.clear();
+        Map<String, Point> latest = new HashMap<>();
+        if (!Files.exists(file)) {
+            return latest;
+        }
+
+        long cutoff = System.currentTimeMillis() - keepMillis;
+        Map<Integer, String> names = new HashMap<>();
+        long valid = 0L;
+        int expired = 0;
+        boolean foreign = false;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            foreign = in.readInt() != MAGIC || in.readUnsignedByte() != VERSION;
+            valid = counter.count;
+            try {
+                while (!foreign) {
+                    int type = in.read();
+                    if (type < 0) {
+                        break;
+                    }
+                    if (type == DEFINE) {
+                        int id = in.readUnsignedShort();
+                        names.put(id, in.readUTF());
+                    } else if (type == POINT) {
+                        long at = in.readInt() * 60_000L;
+                        String material = names.get(in.readUnsignedShort());
+                        float rate = in.readFloat();
+                        double price = in.readDouble();
+                        if (material != null) {
+                            latest.put(material, new Point(material, at, rate, price));
+                            if (at < cutoff) {
+                                expired++;
+                            }
+                        }
+                    } else {
+                        break;
+                    }
+                    valid = counter.count;
+                }
+            } catch (EOFException e) {
+                // Partial trailing record
+            }
+        } catch (EOFException e) {
+            // Not even a header
+        }
+        if (foreign) {
+            logger.warning(file.getFileName() + " is not a Nomad price history, starting a new one.");
+            Files.move(file, file.resolveSibling(file.getFileName() + ".bad"), StandardCopyOption.REPLACE_EXISTING);
+            return latest;
+        }
+        if (valid == 0L) {
+            Files.delete(file);
+            return latest;
+        }
+
+        // The newest point of a material is kept however old it is
+        for (Point point : latest.values()) {
+            if (point.at() < cutoff) {
+                expired--;
+            }
+        }
+        if (expired > 0) {
+            compact(cutoff, latest);
+        } else {
+            if (valid < Files.size(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                ids.put(entry.getValue(), entry.getKey());
+            }
+        }
+        return latest;
+    }
+
+    // Rewrites the file with the newest point of every material and all recent points
+    private void compact(long cutoff, Map<String, Point> latest) throws IOException {
+        Map<Integer, String> names = new HashMap<>();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            in.readInt();
+            in.readUnsignedByte();
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (Point point : latest.values()) {
+                if (point.at() < cutoff) {
+                    writePoint(out, point);
+                }
+            }
+            try {
+                while (true) {
+                    int type = in.read();
+                    if (type == DEFINE) {
+                        int id = in.readUnsignedShort();
+                        names.put(id, in.readUTF());
+                    } else if (type == POINT) {
+                        long at = in.readInt() * 60_000L;
+                        String material = names.get(in.readUnsignedShort());
+                        float rate = in.readFloat();
+                        double price = in.readDouble();
+                        if (material != null && at >= cutoff) {
+                            writePoint(out, new Point(material, at, rate, price));
+                        }
+                    } else {
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // Partial trailing record
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Appends points and forces them to disk. */
+    public void append(List<Point> points) throws IOException {
+        if (points.isEmpty()) {
+            return;
+        }
+        boolean created = !Files.exists(file);
+        if (created) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            ids.clear();
+        }
+        try (FileOutputStream stream = new FileOutputStream(file.toFile(), true)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            if (created) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+            }
+            for (Point point : points) {
+                writePoint(out, point);
+            }
+            out.flush();
+            stream.getFD().sync();
+        }
+    }
+
+    private void writePoint(DataOutputStream out, Point point) throws IOException {
+        Integer id = ids.get(point.material());
+        if (id == null) {
+            id = ids.size();
+            ids.put(point.material(), id);
+            out.writeByte(DEFINE);
+            out.writeShort(id);
+            out.writeUTF(point.material());
+        }
+        out.writeByte(POINT);
+        out.writeInt((int) (point.at() / 60_000L));
+        out.writeShort(id);
+        out.writeFloat((float) point.rate());
+        out.writeDouble(point.price());
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.glacio.nomad.pricing;
+
+/**
+ * The dynamic-pricing section of config.yml, validated by NomadSettings.
+ * {@code enabled} and {@code historyDays} take effect on restart; the rest
+ * is applied by {@link DynamicPricing#configure} on reload.
+ */
+public record PricingSettings(boolean enabled, int updateIntervalSeconds, int halfLifeMinutes, double sensitivity,
+                              double minMultiplier, double maxMultiplier, int historyDays) {
+
+    public long updateIntervalMillis() {
+        return updateIntervalSeconds * 1000L;
+    }
+
+    public long halfLifeMillis() {
+        return halfLifeMinutes * 60_000L;
+    }
+
+    public long historyMillis() {
+        return historyDays * 86_400_000L;
+    }
+}
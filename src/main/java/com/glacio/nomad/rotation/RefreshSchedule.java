@@ -0,0 +1,99 @@
+package com.glacio.nomad.rotation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Computes rotation deadlines from refresh-hour and refresh-interval-minutes.
+ *
+ * <p>If the interval divides a day, rotations happen at refresh-hour every
+ * day and every interval after it, anchored in the configured zone so DST
+ * shifts move with the wall clock. Other intervals run on a fixed grid that
+ * starts at refresh-hour on 2000-01-01.
+ */
+public final class RefreshSchedule {
+
+    private static final long MINUTES_PER_DAY = 24 * 60;
+    private static final LocalDate GRID_ORIGIN = LocalDate.of(2000, 1, 1);
+
+    private final int refreshHour;
+    private final Duration interval;
+    private final ZoneId zone;
+    private final boolean dailyAnchor;
+    private final long seedSalt;
+
+    public RefreshSchedule(int refreshHour, int intervalMinutes, ZoneId zone, String seedSalt) {
+        this.refreshHour = refreshHour;
+        this.interval = Duration.ofMinutes(intervalMinutes);
+        this.zone = zone;
+        this.dailyAnchor = MINUTES_PER_DAY % intervalMinutes == 0;
+        this.seedSalt = mix(seedSalt.hashCode());
+    }
+
+    /** The most recent rotation instant at or before {@code now}. */
+    public Instant previousBoundary(Instant now) {
+        Instant anchor = dailyAnchor ? dayAnchorAtOrBefore(now) : gridOrigin();
+        long steps = Duration.between(anchor, now).toMillis() / interval.toMillis();
+        if (now.isBefore(anchor)) {
+            steps--;
+        }
+        return anchor.plus(interval.multipliedBy(steps));
+    }
+
+    /** The first rotation instant strictly after {@code now}. */
+    public Instant nextBoundary(Instant now) {
+        Instant next = previousBoundary(now).plus(interval);
+        if (dailyAnchor) {
+            // A DST change can make the next day's anchor come before the last interval step
+            Instant nextAnchor = dayAnchorAtOrBefore(now).atZone(zone).plusDays(1)
+                .withHour(refreshHour).withMinute(0).withSecond(0).withNano(0).toInstant();
+            if (nextAnchor.isBefore(next)) {
+                next = nextAnchor;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * True when a rotation boundary has passed since {@code lastRefresh},
+     * including boundaries missed while the server was down.
+     */
+    public boolean isDue(Instant lastRefresh, Instant now) {
+        return lastRefresh == null || lastRefresh.isBefore(previousBoundary(now));
+    }
+
+    /**
+     * Seed for the rotation that starts at {@code rotationAt}. Depends only
+     * on the instant and the configured salt, so a rotation can be replayed.
+     */
+    public long seedFor(Instant rotationAt) {
+        return mix(rotationAt.toEpochMilli() ^ seedSalt);
+    }
+
+    // SplitMix64 finalizer, spreads nearby instants over the whole seed space
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private Instant dayAnchorAtOrBefore(Instant now) {
+        ZonedDateTime local = now.atZone(zone);
+        ZonedDateTime anchor = local.toLocalDate().atTime(refreshHour, 0).atZone(zone);
+        if (anchor.toInstant().isAfter(now)) {
+            anchor = local.toLocalDate().minusDays(1).atTime(refreshHour, 0).atZone(zone);
+        }
+        return anchor.toInstant();
+    }
+
+    private Instant gridOrigin() {
+        return GRID_ORIGIN.atTime(refreshHour, 0).atZone(zone).toInstant();
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+}
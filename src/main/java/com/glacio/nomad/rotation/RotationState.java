@@ -0,0 +1,16 @@
+package com.glacio.nomad.rotation;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The active rotation: when it was rolled (epoch millis), the sampler seed
+ * that picked it and the daily items, in menu order. Also the refresh
+ * interval set with /nomad settime, or 0 to use config.yml's.
+ */
+public record RotationState(long refreshedAt, long seed, List<Map<String, Object>> items, int intervalMinutes) {
+
+    public RotationState {
+        items = List.copyOf(items);
+    }
+}
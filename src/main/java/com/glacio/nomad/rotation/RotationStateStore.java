@@ -0,0 +1,76 @@
+package com.glacio.nomad.rotation;
+
+import com.glacio.nomad.io.AtomicFileWriter;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runtime rotation state, kept in its own small file so config.yml is never
+ * rewritten by the plugin. Saves are serialized on the caller's thread and
+ * written atomically in the background.
+ */
+public class RotationStateStore {
+
+    private final Path file;
+    private final Logger logger;
+    private final AtomicFileWriter writer;
+
+    public RotationStateStore(File file, Logger logger) {
+        this.file = file.toPath();
+        this.logger = logger;
+        this.writer = new AtomicFileWriter(this.file, "Nomad-StateWriter", logger);
+    }
+
+    /** Reads the saved state, or null if there is none or it cannot be read. */
+    public RotationState load() {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.loadFromString(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.log(Level.WARNING, "Could not read rotation state from " + file.getFileName(), e);
+            return null;
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Map<?, ?> raw : yaml.getMapList("items")) {
+            Map<String, Object> item = new HashMap<>();
+            for (Map.Entry<?, ?> entry : raw.entrySet()) {
+                item.put(entry.getKey().toString(), entry.getValue());
+            }
+            items.add(item);
+        }
+        return new RotationState(yaml.getLong("refreshed-at", 0L), yaml.getLong("seed", 0L), items,
+            yaml.getInt("refresh-interval-minutes", 0));
+    }
+
+    public void save(RotationState state) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("refreshed-at", state.refreshedAt());
+        yaml.set("seed", state.seed());
+        yaml.set("items", state.items());
+        if (state.intervalMinutes() > 0) {
+            yaml.set("refresh-interval-minutes", state.intervalMinutes());
+        }
+        writer.submit(yaml.saveToString());
+    }
+
+    /** Writes any pending state and stops the writer thread. */
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.glacio.nomad.rotation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Picks k distinct pool indices without touching the whole pool. Equal
+ * weights use a partial Fisher–Yates shuffle over a sparse swap map, O(k).
+ * Otherwise picks walk a Fenwick tree of the weights, O(k log n) plus the
+ * already-picked entries, which are masked per call so the shared tree is
+ * never modified. The same weights and seed always give the same picks.
+ */
+public final class WeightedSampler {
+
+    private final double[] weights;
+    private final double[] tree;
+    private final double totalWeight;
+    private final int selectable;
+    private final boolean uniform;
+
+    /** Entries with a weight of zero or less are never picked. */
+    public WeightedSampler(double[] weights) {
+        this.weights = weights.clone();
+        this.tree = new double[weights.length + 1];
+
+        double total = 0;
+        int positive = 0;
+        boolean allSame = true;
+        for (int i = 0; i < weights.length; i++) {
+            double weight = Math.max(0.0, weights[i]);
+            this.weights[i] = weight;
+            if (weight > 0) {
+                positive++;
+                total += weight;
+            }
+            if (weight != this.weights[0]) {
+                allSame = false;
+            }
+            tree[i + 1] += weight;
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= weights.length) {
+                tree[parent] += tree[i + 1];
+            }
+        }
+        this.totalWeight = total;
+        this.selectable = positive;
+        this.uniform = allSame && positive == weights.length;
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    /** Up to {@code k} distinct indices, in pick order. */
+    public List<Integer> sample(int k, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int count = Math.min(k, selectable);
+        return uniform ? sampleUniform(count, random) : sampleWeighted(count, random);
+    }
+
+    private List<Integer> sampleUniform(int count, SplittableRandom random) {
+        int n = weights.length;
+        Map<Integer, Integer> swapped = new HashMap<>();
+        List<Integer> picks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int picked = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault(i, i));
+            picks.add(picked);
+        }
+        return picks;
+    }
+
+    private List<Integer> sampleWeighted(int count, SplittableRandom random) {
+        List<Integer> picks = new ArrayList<>(count);
+        double remaining = totalWeight;
+        while (picks.size() < count) {
+            int index = find(random.nextDouble() * remaining, picks);
+            if (index < 0 || weights[index] <= 0 || picks.contains(index)) {
+                // Only reachable through rounding at the very end of the range
+                index = firstAvailable(picks);
+            }
+            picks.add(index);
+            remaining -= weights[index];
+        }
+        return picks;
+    }
+
+    // Fenwick descent for the entry whose cumulative range contains target, skipping picked entries
+    private int find(double target, List<Integer> picked) {
+        int n = weights.length;
+        int position = 0;
+        for (int step = Integer.highestOneBit(n); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next > n) {
+                continue;
+            }
+            double span = tree[next];
+            for (int index : picked) {
+                if (index >= position && index < next) {
+                    span -= weights[index];
+                }
+            }
+            if (span <= target) {
+                position = next;
+                target -= span;
+            }
+        }
+        return position < n ? position : -1;
+    }
+
+    private int firstAvailable(List<Integer> picked) {
+        for (int i = weights.length - 1; i >= 0; i--) {
+            if (weights[i] > 0 && !picked.contains(i)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No selectable entries left");
+    }
+}
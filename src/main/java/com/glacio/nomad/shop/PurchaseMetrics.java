@@ -0,0 +1,64 @@
+package com.glacio.nomad.shop;
+
+import com.glacio.nomad.metrics.LatencyHistogram;
+import com.glacio.nomad.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome counters for the purchase pipeline, registered as
+ * {@code nomad_purchase_stage_seconds} and {@code nomad_purchase_outcomes_total}.
+ * Recording is a few atomic increments, safe from the main and economy
+ * threads alike.
+ */
+public class PurchaseMetrics {
+
+    public enum Stage {
+        RESERVE,
+        ECONOMY,
+        DELIVERY,
+        TOTAL
+    }
+
+    public enum Outcome {
+        COMPLETED,
+        BUSY,
+        SOLD_OUT,
+        LIMIT_REACHED,
+        UNAVAILABLE,
+        INSUFFICIENT_FUNDS,
+        ECONOMY_FAILED,
+        REFUNDED
+    }
+
+    private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+
+    public PurchaseMetrics(MetricsRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, registry.histogram(
+                MetricsRegistry.labeled("nomad_purchase_stage_seconds", "stage", stage.name().toLowerCase(Locale.ROOT)),
+                "Time spent in each purchase stage; economy is the Vault withdrawal"));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, registry.counter(
+                MetricsRegistry.labeled("nomad_purchase_outcomes_total", "outcome", outcome.name().toLowerCase(Locale.ROOT)),
+                "Purchase attempts by how they ended"));
+        }
+    }
+
+    public void record(Stage stage, long startNanos) {
+        stages.get(stage).recordSince(startNanos);
+    }
+
+    public void increment(Outcome outcome) {
+        outcomes.get(outcome).increment();
+    }
+
+    public long total(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+}
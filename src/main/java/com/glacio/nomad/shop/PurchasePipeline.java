@@ -0,0 +1,282 @@
+package com.glacio.nomad.shop;
+
+import com.glacio.nomad.Nomad;
+import com.glacio.nomad.database.DatabaseManager;
+import com.glacio.nomad.pricing.DynamicPricing;
+import com.glacio.nomad.shop.PurchaseMetrics.Outcome;
+import com.glacio.nomad.shop.PurchaseMetrics.Stage;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.IllegalPluginAccessException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs a shop purchase as reserve stock, charge, deliver. Each player has
+ * at most one purchase in flight, so repeated clicks cannot all pass the
+ * balance check. Stock reservation and delivery run on the main thread; the
+ * charge runs on an economy worker when async withdrawals are enabled.
+ * Anything that cannot be delivered is refunded and its stock released.
+ */
+public class PurchasePipeline {
+
+    private enum Charge {
+        CHARGED,
+        INSUFFICIENT_FUNDS,
+        FAILED
+    }
+
+    private final Nomad plugin;
+    private final Economy economy;
+    private final ShopViews views;
+    private final PurchaseMetrics metrics;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Runnable> pendingCompletions = new ConcurrentHashMap<>();
+    private final ExecutorService economyExecutor;
+
+    public PurchasePipeline(Nomad plugin, Economy economy, ShopViews views, boolean asyncEconomy, int threads) {
+        this.plugin = plugin;
+        this.economy = economy;
+        this.views = views;
+        this.metrics = new PurchaseMetrics(plugin.getMetrics());
+        if (asyncEconomy) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.economyExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "Nomad-Economy-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.economyExecutor = null;
+        }
+    }
+
+    /**
+     * Starts a purchase of {@code quantity} units on the main thread: one
+     * reservation, one withdrawal, one inventory insertion and one purchase
+     * row. The result is reported to the player.
+     */
+    public void purchase(Player player, StockLedger ledger, ShopItem item, int quantity) {
+        long startNanos = System.nanoTime();
+        UUID playerId = player.getUniqueId();
+        if (!inFlight.add(playerId)) {
+            metrics.increment(Outcome.BUSY);
+            player.sendMessage(ChatColor.YELLOW + "Önceki satın alma işleminiz sürüyor, lütfen bekleyin.");
+            return;
+        }
+
+        StockLedger.Result reservation = ledger.reserve(item.index(), playerId, quantity);
+        metrics.record(Stage.RESERVE, startNanos);
+        if (reservation != StockLedger.Result.RESERVED) {
+            inFlight.remove(playerId);
+            if (reservation == StockLedger.Result.SOLD_OUT) {
+                metrics.increment(Outcome.SOLD_OUT);
+                player.sendMessage(ChatColor.RED + "Bu ürün tükendi!");
+            } else if (reservation == StockLedger.Result.UNKNOWN_ITEM) {
+                metrics.increment(Outcome.UNAVAILABLE);
+                player.sendMessage(ChatColor.RED + "Bu ürün artık satışta değil, lütfen menüyü yeniden açın.");
+            } else {
+                metrics.increment(Outcome.LIMIT_REACHED);
+                player.sendMessage(ChatColor.RED + "Bu üründen bu dönem en fazla " + ledger.playerLimit(item.index())
+                    + " adet alabilirsiniz!");
+            }
+            playSound(player, plugin.getSettings().getErrorSound());
+            return;
+        }
+        stockChanged(ledger, item);
+
+        double total = item.price() * quantity;
+        if (economyExecutor == null) {
+            Charge charge = charge(player, total);
+            complete(player, ledger, item, quantity, total, charge, startNanos);
+            return;
+        }
+
+        try {
+            economyExecutor.execute(() -> {
+                Charge charge = charge(player, total);
+                Runnable completion = () -> {
+                    if (pendingCompletions.remove(playerId) != null) {
+                        complete(player, ledger, item, quantity, total, charge, startNanos);
+                    }
+                };
+                pendingCompletions.put(playerId, completion);
+                if (plugin.isEnabled()) {
+                    try {
+                        Bukkit.getScheduler().runTask(plugin, completion);
+                    } catch (IllegalPluginAccessException e) {
+                        // Disabled since the check above; shutdown() completes it on the main thread
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            ledger.release(item.index(), playerId, quantity);
+            stockChanged(ledger, item);
+            inFlight.remove(playerId);
+            player.sendMessage(ChatColor.RED + "Satın alma şu anda yapılamıyor, lütfen tekrar deneyin.");
+        }
+    }
+
+    // Runs on the economy thread when async withdrawals are enabled
+    private Charge charge(Player player, double total) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!economy.has(player, total)) {
+                return Charge.INSUFFICIENT_FUNDS;
+            }
+            EconomyResponse response = economy.withdrawPlayer(player, total);
+            if (response.transactionSuccess()) {
+                return Charge.CHARGED;
+            }
+            plugin.getLogger().warning("Withdrawal of " + total + " from " + player.getName()
+                + " failed: " + response.errorMessage);
+            return Charge.FAILED;
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Economy provider failed to charge " + player.getName(), e);
+            return Charge.FAILED;
+        } finally {
+            metrics.record(Stage.ECONOMY, startNanos);
+        }
+    }
+
+    private void complete(Player player, StockLedger ledger, ShopItem item, int quantity, double total,
+                          Charge charge, long startNanos) {
+        long deliveryStart = System.nanoTime();
+        UUID playerId = player.getUniqueId();
+        try {
+            if (charge != Charge.CHARGED) {
+                ledger.release(item.index(), playerId, quantity);
+                stockChanged(ledger, item);
+                if (charge == Charge.INSUFFICIENT_FUNDS) {
+                    metrics.increment(Outcome.INSUFFICIENT_FUNDS);
+                    player.sendMessage(ChatColor.RED + "Yeterli paranız yok! Gereken: " + total + " Para");
+                } else {
+                    metrics.increment(Outcome.ECONOMY_FAILED);
+                    player.sendMessage(ChatColor.RED + "Ödeme alınamadı, lütfen tekrar deneyin.");
+                }
+                playSound(player, plugin.getSettings().getErrorSound());
+                return;
+            }
+
+            int undelivered = quantity;
+            if (player.isOnline()) {
+                undelivered = 0;
+                Map<Integer, ItemStack> leftovers = player.getInventory().addItem(new ItemStack(item.material(), quantity));
+                for (ItemStack leftover : leftovers.values()) {
+                    undelivered += leftover.getAmount();
+                }
+            }
+
+            if (undelivered > 0) {
+                metrics.increment(Outcome.REFUNDED);
+                ledger.release(item.index(), playerId, undelivered);
+                stockChanged(ledger, item);
+                double refund = item.price() * undelivered;
+                refundAsync(player, refund);
+                player.sendMessage(ChatColor.RED + "Envanterinizde yer yok! " + undelivered + " adet için "
+                    + refund + " Para iade edildi.");
+            }
+
+            int delivered = quantity - undelivered;
+            if (delivered > 0) {
+                metrics.increment(Outcome.COMPLETED);
+                String amount = delivered > 1 ? delivered + "x " : "";
+                double paid = item.price() * delivered;
+                player.sendMessage(ChatColor.GREEN + "Başarıyla satın aldınız: " + ChatColor.YELLOW + amount
+                    + item.material().name() + ChatColor.GREEN + " (-" + paid + " Para)");
+                DatabaseManager databaseManager = plugin.getDatabaseManager();
+                if (databaseManager != null) {
+                    databaseManager.recordPurchase(playerId, player.getName(), item.material().name(),
+                        item.recordName(), paid, delivered);
+                }
+                DynamicPricing pricing = plugin.getPricing();
+                if (pricing != null) {
+                    pricing.recordSale(item.material(), delivered);
+                }
+                playSound(player, plugin.getSettings().getPurchaseSound());
+            } else {
+                playSound(player, plugin.getSettings().getErrorSound());
+            }
+        } finally {
+            inFlight.remove(playerId);
+            metrics.record(Stage.DELIVERY, deliveryStart);
+            metrics.record(Stage.TOTAL, startNanos);
+        }
+    }
+
+    private void refundAsync(Player player, double amount) {
+        if (economyExecutor == null) {
+            refund(player, amount);
+            return;
+        }
+        try {
+            economyExecutor.execute(() -> refund(player, amount));
+        } catch (RejectedExecutionException e) {
+            refund(player, amount);
+        }
+    }
+
+    private void refund(Player player, double amount) {
+        try {
+            EconomyResponse response = economy.depositPlayer(player, amount);
+            if (!response.transactionSuccess()) {
+                plugin.getLogger().severe("Could not refund " + amount + " to " + player.getName()
+                    + " for undeliverable items: " + response.errorMessage);
+            }
+        } catch (RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Could not refund " + amount + " to " + player.getName()
+                + " for undeliverable items", e);
+        }
+    }
+
+    private void stockChanged(StockLedger ledger, ShopItem item) {
+        if (ledger.isLimited(item.index())) {
+            views.stockChanged(ledger, item.index());
+        }
+    }
+
+    private static void playSound(Player player, Sound sound) {
+        if (sound != null && player.isOnline()) {
+            player.playSound(player.getLocation(), sound, 1.0f, 1.0f);
+        }
+    }
+
+
+    /**
+     * Stops the economy workers, then completes charged purchases whose
+     * delivery task will no longer run. Call on the main thread.
+     */
+    public void shutdown() {
+        if (economyExecutor == null) {
+            return;
+        }
+        economyExecutor.shutdown();
+        try {
+            if (!economyExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                economyExecutor.shutdownNow();
+                plugin.getLogger().warning("Economy calls were still running at shutdown; their purchases may be incomplete");
+            }
+        } catch (InterruptedException e) {
+            economyExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (Runnable completion : List.copyOf(pendingCompletions.values())) {
+            completion.run();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.glacio.nomad.shop;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.List;
+
+/**
+ * The quantity selector opened by right-clicking a shop item. Each option
+ * slot buys that many units as a single purchase; the last slot goes back
+ * to the shop.
+ */
+public class QuantityMenuHolder implements InventoryHolder {
+
+    public static final int BACK_SLOT = 8;
+
+    private static final int[] OPTIONS = {1, 4, 8, 16, 32, 64};
+    // Player inventory storage slots, the most that can be delivered in one go
+    private static final int STORAGE_SLOTS = 36;
+
+    private final ShopCatalog catalog;
+    private final StockLedger ledger;
+    private final ShopItem item;
+    private final int[] quantities = new int[9];
+    private Inventory inventory;
+
+    private QuantityMenuHolder(ShopCatalog catalog, StockLedger ledger, ShopItem item) {
+        this.catalog = catalog;
+        this.ledger = ledger;
+        this.item = item;
+    }
+
+    public static Inventory create(ShopCatalog catalog, StockLedger ledger, ShopItem item) {
+        QuantityMenuHolder holder = new QuantityMenuHolder(catalog, ledger, item);
+        String title = ChatColor.DARK_GRAY + "Miktar: " + (item.displayName() != null
+            ? ChatColor.stripColor(item.displayName()) : item.material().name());
+        Inventory inventory = Bukkit.createInventory(holder, 9, title);
+        holder.inventory = inventory;
+
+        int maxStack = Math.max(1, item.material().getMaxStackSize());
+        int slot = 0;
+        for (int quantity : OPTIONS) {
+            if (quantity > maxStack * STORAGE_SLOTS) {
+                break;
+            }
+            holder.quantities[slot] = quantity;
+            inventory.setItem(slot++, optionIcon(item, quantity, maxStack));
+        }
+        inventory.setItem(BACK_SLOT, named(new ItemStack(Material.ARROW), ChatColor.YELLOW + "Geri", List.of()));
+        return inventory;
+    }
+
+    private static ItemStack optionIcon(ShopItem item, int quantity, int maxStack) {
+        return named(new ItemStack(item.material(), Math.min(quantity, maxStack)),
+            ChatColor.GREEN + String.valueOf(quantity) + " adet",
+            List.of(ChatColor.GRAY + "Toplam: " + ChatColor.GOLD + (item.price() * quantity) + " Para",
+                "", ChatColor.YELLOW + "Satın almak için tıklayın!"));
+    }
+
+    private static ItemStack named(ItemStack stack, String name, List<String> lore) {
+        ItemMeta meta = stack.getItemMeta();
+        if (meta != null) {
+            meta.setDisplayName(name);
+            meta.setLore(lore);
+            stack.setItemMeta(meta);
+        }
+        return stack;
+    }
+
+    /** Units bought by clicking a raw slot, or 0 if the slot is not an option. */
+    public int quantityAt(int rawSlot) {
+        return rawSlot >= 0 && rawSlot < quantities.length ? quantities[rawSlot] : 0;
+    }
+
+    public ShopCatalog getCatalog() {
+        return catalog;
+    }
+
+    public StockLedger getLedger() {
+        return ledger;
+    }
+
+    public ShopItem getItem() {
+        return item;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+}
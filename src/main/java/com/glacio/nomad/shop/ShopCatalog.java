@@ -0,0 +1,234 @@
+package com.glacio.nomad.shop;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The current rotation compiled into menu form. Built once whenever the
+ * daily items change; opening the shop copies {@link #contents()} and the
+ * click handler resolves slots through {@link #itemAt(int)}.
+ */
+public class ShopCatalog {
+
+    public static final int[] DEFAULT_SLOTS = {11, 12, 13, 14, 15, 10, 16};
+
+    private static final ShopCatalog EMPTY = new ShopCatalog(0, 27, List.of());
+
+    private final int version;
+    private final int size;
+    private final List<ShopItem> items;
+    private final ShopItem[] bySlot;
+    private final ShopItem[] byIndex;
+    private final ItemStack[] contents;
+
+    private ShopCatalog(int version, int size, List<ShopItem> items) {
+        this.version = version;
+        this.size = size;
+        this.items = Collections.unmodifiableList(items);
+        this.bySlot = new ShopItem[size];
+        this.contents = new ItemStack[size];
+        this.byIndex = new ShopItem[items.isEmpty() ? 0 : items.get(items.size() - 1).index() + 1];
+        for (ShopItem item : items) {
+            byIndex[item.index()] = item;
+            bySlot[item.slot()] = item;
+            contents[item.slot()] = item.icon();
+        }
+    }
+
+    public static ShopCatalog empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Validates and compiles the daily items. Entries with an unknown
+     * material or bad price are skipped with a warning instead of failing
+     * silently every time the menu opens.
+     */
+    public static ShopCatalog compile(int version, List<Map<String, Object>> dailyItems, int size, int[] slots, Logger logger) {
+        List<Integer> usableSlots = new ArrayList<>();
+        for (int slot : slots) {
+            if (slot < 0 || slot >= size) {
+                logger.warning("Ignoring menu slot " + slot + ", it is outside the " + size + "-slot menu");
+            } else {
+                usableSlots.add(slot);
+            }
+        }
+
+        List<ShopItem> items = new ArrayList<>();
+        for (int index = 0; index < dailyItems.size(); index++) {
+            if (items.size() >= usableSlots.size()) {
+                break;
+            }
+            Map<String, Object> data = dailyItems.get(index);
+
+            Material material = Material.matchMaterial(String.valueOf(data.get("material")));
+            if (material == null || material.isAir() || !material.isItem()) {
+                logger.warning("Skipping daily item with invalid material: " + data.get("material"));
+                continue;
+            }
+
+            double price;
+            try {
+                price = Double.parseDouble(String.valueOf(data.get("price")));
+            } catch (NumberFormatException e) {
+                logger.warning("Skipping daily item " + material + " with invalid price: " + data.get("price"));
+                continue;
+            }
+            if (price < 0 || Double.isNaN(price) || Double.isInfinite(price)) {
+                logger.warning("Skipping daily item " + material + " with invalid price: " + price);
+                continue;
+            }
+
+            int stock = limit(data.get("stock"), -1);
+            int playerLimit = limit(data.get("player-limit"), 0);
+            if (stock < -1 || playerLimit < 0) {
+                logger.warning("Ignoring invalid stock limits for daily item " + material);
+                stock = -1;
+                playerLimit = 0;
+            }
+
+            int slot = usableSlots.get(items.size());
+            Object rawName = data.get("name");
+            String name = rawName != null ? rawName.toString() : null;
+            String displayName = name != null ? ChatColor.translateAlternateColorCodes('&', name) : null;
+            items.add(new ShopItem(index, slot, material, name, displayName, price, price, stock, playerLimit,
+                buildIcon(material, displayName, price, price, stock, stock, playerLimit)));
+        }
+
+        return new ShopCatalog(version, size, items);
+    }
+
+    private static int limit(Object raw, int unlimited) {
+        if (raw == null) {
+            return unlimited;
+        }
+        try {
+            return Integer.parseInt(raw.toString());
+        } catch (NumberFormatException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static ItemStack buildIcon(Material material, String displayName, double basePrice, double price,
+                                       int remaining, int stock, int playerLimit) {
+        ItemStack item = new ItemStack(material);
+        ItemMeta meta = item.getItemMeta();
+
+        if (meta != null) {
+            if (displayName != null) meta.setDisplayName(displayName);
+
+            List<String> lore = new ArrayList<>();
+            lore.add("");
+            String change = "";
+            if (basePrice > 0 && price != basePrice) {
+                long percent = Math.round((price / basePrice - 1.0) * 100.0);
+                change = percent == 0 ? "" : (percent > 0 ? ChatColor.RED + " (+" : ChatColor.GREEN + " (") + percent + "%)";
+            }
+            lore.add(ChatColor.GRAY + "Fiyat: " + ChatColor.GOLD + price + " Para" + change);
+            if (stock >= 0) {
+                lore.add(remaining > 0
+                    ? ChatColor.GRAY + "Stok: " + ChatColor.WHITE + remaining + "/" + stock
+                    : ChatColor.RED + "Tükendi!");
+            }
+            if (playerLimit > 0) {
+                lore.add(ChatColor.GRAY + "Kişi başı limit: " + ChatColor.WHITE + playerLimit);
+            }
+            lore.add("");
+            lore.add(ChatColor.YELLOW + "Satın almak için tıklayın!");
+            lore.add(ChatColor.GRAY + "Shift+Tık: 1 deste, Sağ Tık: miktar seç");
+            meta.setLore(lore);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+
+    /** The item shown in a raw slot of the menu, or null. */
+    public ShopItem itemAt(int rawSlot) {
+        return rawSlot >= 0 && rawSlot < bySlot.length ? bySlot[rawSlot] : null;
+    }
+
+    /** The item at a rotation position, or null if it is not shown. */
+    public ShopItem itemByIndex(int index) {
+        return index >= 0 && index < byIndex.length ? byIndex[index] : null;
+    }
+
+    /**
+     * Menu contents for {@code Inventory#setContents}, which copies the
+     * stacks, so the shared icons are never handed out for mutation.
+     */
+    public ItemStack[] contents() {
+        return contents.clone();
+    }
+
+    /** Like {@link #contents()}, with the current stock shown on limited items. */
+    public ItemStack[] contents(StockLedger ledger) {
+        ItemStack[] stacks = contents.clone();
+        for (ShopItem item : items) {
+            if (ledger.isLimited(item.index())) {
+                stacks[item.slot()] = iconFor(item, ledger);
+            }
+        }
+        return stacks;
+    }
+
+    /** The item's icon with its current stock; the shared icon when unlimited. */
+    public static ItemStack iconFor(ShopItem item, StockLedger ledger) {
+        if (!ledger.isLimited(item.index())) {
+            return item.icon();
+        }
+        return buildIcon(item.material(), item.displayName(), item.basePrice(), item.price(),
+            ledger.remaining(item.index()), item.stock(), item.playerLimit());
+    }
+
+    /**
+     * The same rotation at new prices, by rotation index. Keeps the version,
+     * so menus built from this catalog stay valid and their stock and click
+     * handling are unchanged.
+     */
+    public ShopCatalog withPrices(double[] prices) {
+        List<ShopItem> repriced = new ArrayList<>(items.size());
+        for (ShopItem item : items) {
+            double price = item.index() < prices.length ? prices[item.index()] : item.basePrice();
+            repriced.add(new ShopItem(item.index(), item.slot(), item.material(), item.name(), item.displayName(),
+                item.basePrice(), price, item.stock(), item.playerLimit(),
+                buildIcon(item.material(), item.displayName(), item.basePrice(), price, item.stock(), item.stock(),
+                    item.playerLimit())));
+        }
+        return new ShopCatalog(version, size, repriced);
+    }
+
+    /** A copy of {@code icon} that also tells the viewer how many they have bought so far. */
+    public static ItemStack withUnitsBought(ItemStack icon, long bought) {
+        ItemStack item = icon.clone();
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null || !meta.hasLore()) {
+            return item;
+        }
+        List<String> lore = new ArrayList<>(meta.getLore());
+        // Above the blank line and the two click hints
+        lore.add(Math.max(0, lore.size() - 3), ChatColor.GRAY + "Satın aldığınız: " + ChatColor.WHITE + bought + " adet");
+        meta.setLore(lore);
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    public List<ShopItem> getItems() {
+        return items;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
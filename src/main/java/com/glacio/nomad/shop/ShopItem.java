@@ -0,0 +1,22 @@
+package com.glacio.nomad.shop;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * A validated daily item. {@code index} is its position in the rotation,
+ * {@code name} is the raw configured name (may be null) and
+ * {@code displayName} the colored form. {@code basePrice} is the configured
+ * price and {@code price} the one shown and charged, which differs only with
+ * dynamic pricing. {@code stock} is -1 when unlimited and {@code playerLimit}
+ * 0 when unlimited. {@code icon} is the prebuilt menu item; it is shared, so
+ * callers must clone it before changing it.
+ */
+public record ShopItem(int index, int slot, Material material, String name, String displayName,
+                       double basePrice, double price, int stock, int playerLimit, ItemStack icon) {
+
+    /** The name stored with purchases, as before: the configured name or the material. */
+    public String recordName() {
+        return name != null ? name : material.name();
+    }
+}
@@ -0,0 +1,66 @@
+package com.glacio.nomad.shop;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+import java.util.UUID;
+
+/**
+ * Marks an inventory as an open Nomad shop and carries the state of that
+ * open menu. Listeners identify shop inventories with an instanceof check
+ * on the holder instead of comparing titles.
+ */
+public class ShopMenuHolder implements InventoryHolder {
+
+    private final UUID viewer;
+    private final int page;
+    private ShopCatalog catalog;
+    private final StockLedger ledger;
+    private Inventory inventory;
+
+    public ShopMenuHolder(UUID viewer, int page, ShopCatalog catalog, StockLedger ledger) {
+        this.viewer = viewer;
+        this.page = page;
+        this.catalog = catalog;
+        this.ledger = ledger;
+    }
+
+    public UUID getViewer() {
+        return viewer;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    /** The catalog this menu was built from, i.e. exactly what the viewer sees. */
+    public ShopCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Swaps in the same rotation at new prices. Main thread only, together
+     * with redrawing the icons, so a click always charges what is shown.
+     */
+    public void setCatalog(ShopCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /** Stock counters of the rotation the catalog belongs to. */
+    public StockLedger getLedger() {
+        return ledger;
+    }
+
+    public int getRotationVersion() {
+        return catalog.getVersion();
+    }
+
+    public void setInventory(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+}
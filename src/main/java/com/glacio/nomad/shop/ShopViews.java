@@ -0,0 +1,122 @@
+package com.glacio.nomad.shop;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Keeps open shop menus in sync with stock. Changes are collected and
+ * applied once on the next tick by replacing only the affected slots, so a
+ * rush of purchases costs one icon per changed item per tick instead of
+ * rebuilding every open inventory. Icons also show how many of an item
+ * the viewer has bought, looked up through {@code unitsBought} (player,
+ * material name). Main thread only.
+ */
+public class ShopViews {
+
+    private final Plugin plugin;
+    private final ToLongBiFunction<UUID, String> unitsBought;
+    private final Set<ShopMenuHolder> open = new HashSet<>();
+    private final Set<Integer> changed = new HashSet<>();
+    private StockLedger changedLedger;
+    private boolean flushScheduled;
+
+    public ShopViews(Plugin plugin, ToLongBiFunction<UUID, String> unitsBought) {
+        this.plugin = plugin;
+        this.unitsBought = unitsBought;
+    }
+
+    /** Contents for a menu that is about to open, with the current stock and the viewer's counts. */
+    public ItemStack[] contents(ShopMenuHolder holder) {
+        ItemStack[] stacks = holder.getCatalog().contents(holder.getLedger());
+        for (ShopItem item : holder.getCatalog().getItems()) {
+            stacks[item.slot()] = personalized(holder, item, stacks[item.slot()]);
+        }
+        return stacks;
+    }
+
+    public void opened(ShopMenuHolder holder) {
+        open.add(holder);
+    }
+
+    public void closed(ShopMenuHolder holder) {
+        open.remove(holder);
+    }
+
+    public void stockChanged(StockLedger ledger, int index) {
+        if (ledger != changedLedger) {
+            changed.clear();
+            changedLedger = ledger;
+        }
+        changed.add(index);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Bukkit.getScheduler().runTask(plugin, this::flush);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        Map<ShopItem, ItemStack> icons = new IdentityHashMap<>();
+        for (ShopMenuHolder holder : open) {
+            Inventory inventory = holder.getInventory();
+            if (holder.getLedger() != changedLedger || inventory == null) {
+                continue;
+            }
+            for (int index : changed) {
+                ShopItem item = holder.getCatalog().itemByIndex(index);
+                if (item != null) {
+                    inventory.setItem(item.slot(), personalized(holder, item, icons.computeIfAbsent(item,
+                        key -> ShopCatalog.iconFor(key, changedLedger))));
+                }
+            }
+        }
+        changed.clear();
+    }
+
+    /** Redraws every item in the menus {@code viewer} has open, after their purchase counts changed. */
+    public void refresh(UUID viewer) {
+        for (ShopMenuHolder holder : open) {
+            Inventory inventory = holder.getInventory();
+            if (!holder.getViewer().equals(viewer) || inventory == null) {
+                continue;
+            }
+            for (ShopItem item : holder.getCatalog().getItems()) {
+                inventory.setItem(item.slot(), personalized(holder, item, ShopCatalog.iconFor(item, holder.getLedger())));
+            }
+        }
+    }
+
+    /** Shows new prices of the current rotation in every open menu of it. */
+    public void repriced(ShopCatalog priced) {
+        for (ShopMenuHolder holder : open) {
+            Inventory inventory = holder.getInventory();
+            if (holder.getRotationVersion() != priced.getVersion() || inventory == null) {
+                continue;
+            }
+            holder.setCatalog(priced);
+            for (ShopItem item : priced.getItems()) {
+                inventory.setItem(item.slot(), personalized(holder, item, ShopCatalog.iconFor(item, holder.getLedger())));
+            }
+        }
+    }
+
+    private ItemStack personalized(ShopMenuHolder holder, ShopItem item, ItemStack icon) {
+        long bought = unitsBought.applyAsLong(holder.getViewer(), item.material().name());
+        return bought > 0 ? ShopCatalog.withUnitsBought(icon, bought) : icon;
+    }
+
+    public void clear() {
+        open.clear();
+        changed.clear();
+        changedLedger = null;
+    }
+}
@@ -0,0 +1,191 @@
+package com.glacio.nomad.shop;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Stock and per-player purchase counts for one rotation, indexed by the
+ * daily item's position. All updates are compare-and-set loops on atomic
+ * arrays, so the click path never takes a lock.
+ */
+public class StockLedger {
+
+    public enum Result {
+        RESERVED,
+        SOLD_OUT,
+        LIMIT_REACHED,
+        /** The index is not part of this ledger's catalog. */
+        UNKNOWN_ITEM
+    }
+
+    private final long rotationId;
+    private final int[] stock;
+    private final int[] playerLimits;
+    private final AtomicIntegerArray remaining;
+    private final Map<UUID, AtomicIntegerArray> bought = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+
+    private StockLedger(long rotationId, int[] stock, int[] playerLimits) {
+        this.rotationId = rotationId;
+        this.stock = stock;
+        this.playerLimits = playerLimits;
+        this.remaining = new AtomicIntegerArray(stock);
+    }
+
+    /** A fresh ledger for the items of a rotation's catalog. */
+    public static StockLedger forCatalog(long rotationId, ShopCatalog catalog) {
+        int size = 0;
+        for (ShopItem item : catalog.getItems()) {
+            size = Math.max(size, item.index() + 1);
+        }
+        int[] stock = new int[size];
+        int[] playerLimits = new int[size];
+        Arrays.fill(stock, -1);
+        for (ShopItem item : catalog.getItems()) {
+            stock[item.index()] = item.stock();
+            playerLimits[item.index()] = item.playerLimit();
+        }
+        return new StockLedger(rotationId, stock, playerLimits);
+    }
+
+    /**
+     * The same rotation's counters for a recompiled catalog, e.g. after
+     * /nomad reload changed the menu slots. Sold units and per-player counts
+     * carry over by index; items that did not fit before start full.
+     */
+    public StockLedger carriedOver(ShopCatalog catalog) {
+        StockLedger next = forCatalog(rotationId, catalog);
+        int shared = Math.min(stock.length, next.size());
+        for (int i = 0; i < shared; i++) {
+            if (stock[i] >= 0) {
+                next.restoreRemaining(i, next.stock[i] - (stock[i] - remaining.get(i)));
+            }
+        }
+        for (Map.Entry<UUID, AtomicIntegerArray> entry : bought.entrySet()) {
+            AtomicIntegerArray counts = entry.getValue();
+            for (int i = 0; i < shared; i++) {
+                if (counts.get(i) > 0) {
+                    next.restoreBought(entry.getKey(), i, counts.get(i));
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Takes {@code quantity} units for a player if both the stock and the
+     * player's cap allow it; otherwise changes nothing.
+     */
+    public Result reserve(int index, UUID player, int quantity) {
+        if (index < 0 || index >= stock.length) {
+            return Result.UNKNOWN_ITEM;
+        }
+        AtomicIntegerArray counts = null;
+        if (playerLimits[index] > 0) {
+            counts = bought.computeIfAbsent(player, k -> new AtomicIntegerArray(stock.length));
+            int current;
+            do {
+                current = counts.get(index);
+                if (current + quantity > playerLimits[index]) {
+                    return Result.LIMIT_REACHED;
+                }
+            } while (!counts.compareAndSet(index, current, current + quantity));
+        }
+
+        if (stock[index] >= 0) {
+            int left;
+            do {
+                left = remaining.get(index);
+                if (left < quantity) {
+                    if (counts != null) {
+                        counts.addAndGet(index, -quantity);
+                    }
+                    return Result.SOLD_OUT;
+                }
+            } while (!remaining.compareAndSet(index, left, left - quantity));
+        }
+
+        dirty.set(true);
+        return Result.RESERVED;
+    }
+
+    /** Gives back a reservation whose purchase did not go through. */
+    public void release(int index, UUID player, int quantity) {
+        if (index < 0 || index >= stock.length) {
+            return;
+        }
+        if (playerLimits[index] > 0) {
+            AtomicIntegerArray counts = bought.get(player);
+            if (counts != null) {
+                counts.addAndGet(index, -quantity);
+            }
+        }
+        if (stock[index] >= 0) {
+            remaining.addAndGet(index, quantity);
+        }
+        dirty.set(true);
+    }
+
+    public boolean isLimited(int index) {
+        return index < stock.length && stock[index] >= 0;
+    }
+
+    /** Units left, or {@code -1} when the item is unlimited. */
+    public int remaining(int index) {
+        return isLimited(index) ? remaining.get(index) : -1;
+    }
+
+    /** Units the player could still buy right now, {@link Integer#MAX_VALUE} when nothing limits it. */
+    public int available(int index, UUID player) {
+        int available = Integer.MAX_VALUE;
+        if (isLimited(index)) {
+            available = remaining.get(index);
+        }
+        int limit = playerLimit(index);
+        if (limit > 0) {
+            available = Math.min(available, limit - bought(player, index));
+        }
+        return Math.max(0, available);
+    }
+
+    public int playerLimit(int index) {
+        return index < playerLimits.length ? playerLimits[index] : 0;
+    }
+
+    public int bought(UUID player, int index) {
+        AtomicIntegerArray counts = bought.get(player);
+        return counts != null && index < counts.length() ? counts.get(index) : 0;
+    }
+
+    public long getRotationId() {
+        return rotationId;
+    }
+
+    public int size() {
+        return stock.length;
+    }
+
+    /** True once per change; the caller is expected to save when it sees true. */
+    boolean takeDirty() {
+        return dirty.getAndSet(false);
+    }
+
+    Map<UUID, AtomicIntegerArray> boughtCounts() {
+        return bought;
+    }
+
+    // Restore helpers, only used before the ledger is published
+    void restoreRemaining(int index, int value) {
+        if (stock[index] >= 0) {
+            remaining.set(index, Math.max(0, Math.min(stock[index], value)));
+        }
+    }
+
+    void restoreBought(UUID player, int index, int value) {
+        bought.computeIfAbsent(player, k -> new AtomicIntegerArray(stock.length)).set(index, value);
+    }
+}
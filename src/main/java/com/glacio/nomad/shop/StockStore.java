@@ -0,0 +1,112 @@
+package com.glacio.nomad.shop;
+
+import com.glacio.nomad.io.AtomicFileWriter;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves stock counters to rotation-stock.yml so a restart keeps sold-out
+ * items sold out. Saves are batched: {@link #saveIfDirty} is called on a
+ * timer and only writes when something was sold since the last save.
+ */
+public class StockStore {
+
+    private final Path file;
+    private final Logger logger;
+    private final AtomicFileWriter writer;
+    private long latestRotation = Long.MIN_VALUE;
+
+    public StockStore(File file, Logger logger) {
+        this.file = file.toPath();
+        this.logger = logger;
+        this.writer = new AtomicFileWriter(this.file, "Nomad-StockWriter", logger);
+    }
+
+    /** Loads saved counters into a fresh ledger if they belong to the same rotation. */
+    public void restore(StockLedger ledger) {
+        if (!Files.exists(file)) {
+            return;
+        }
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.loadFromString(Files.readString(file, StandardCharsets.UTF_8));
+        } catch (IOException | InvalidConfigurationException e) {
+            logger.log(Level.WARNING, "Could not read stock counters from " + file.getFileName(), e);
+            return;
+        }
+        if (yaml.getLong("rotation", 0L) != ledger.getRotationId()) {
+            return;
+        }
+
+        List<Integer> remaining = yaml.getIntegerList("remaining");
+        for (int i = 0; i < Math.min(remaining.size(), ledger.size()); i++) {
+            ledger.restoreRemaining(i, remaining.get(i));
+        }
+        ConfigurationSection players = yaml.getConfigurationSection("bought");
+        if (players != null) {
+            for (String key : players.getKeys(false)) {
+                UUID player;
+                try {
+                    player = UUID.fromString(key);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                List<Integer> counts = players.getIntegerList(key);
+                for (int i = 0; i < Math.min(counts.size(), ledger.size()); i++) {
+                    if (counts.get(i) > 0) {
+                        ledger.restoreBought(player, i, counts.get(i));
+                    }
+                }
+            }
+        }
+        ledger.takeDirty();
+    }
+
+    /** Writes the counters if they changed since the last save. Safe from any thread. */
+    public synchronized void saveIfDirty(StockLedger ledger) {
+        // A timer run that picked up the previous rotation must not overwrite the new one
+        if (ledger == null || ledger.getRotationId() < latestRotation || !ledger.takeDirty()) {
+            return;
+        }
+        latestRotation = ledger.getRotationId();
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("rotation", ledger.getRotationId());
+        List<Integer> remaining = new ArrayList<>(ledger.size());
+        for (int i = 0; i < ledger.size(); i++) {
+            remaining.add(ledger.remaining(i));
+        }
+        yaml.set("remaining", remaining);
+        for (Map.Entry<UUID, AtomicIntegerArray> entry : ledger.boughtCounts().entrySet()) {
+            AtomicIntegerArray counts = entry.getValue();
+            List<Integer> values = new ArrayList<>(counts.length());
+            boolean any = false;
+            for (int i = 0; i < counts.length(); i++) {
+                values.add(counts.get(i));
+                any |= counts.get(i) > 0;
+            }
+            if (any) {
+                yaml.set("bought." + entry.getKey(), values);
+            }
+        }
+        writer.submit(yaml.saveToString());
+    }
+
+    /** Writes any pending save and stops the writer thread. */
+    public void close() {
+        writer.close();
+    }
+}
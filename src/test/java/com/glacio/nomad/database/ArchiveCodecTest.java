@@ -0,0 +1,63 @@
+package com.glacio.nomad.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArchiveCodecTest {
+
+    private static ArchivedPurchase purchase(String playerName, String itemName) {
+        return new ArchivedPurchase(42L, new PurchaseRecord(UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e"),
+            playerName, "DIAMOND", itemName, 150.5, 3, 1_700_000_000_123L, "2023-11-14T22:13:20.123", "lobby"));
+    }
+
+    private static void assertRoundTrip(ArchivedPurchase purchase) {
+        String line = ArchiveCodec.encode(purchase);
+        assertFalse(line.contains("\n"), "one purchase per line");
+        assertEquals(purchase, ArchiveCodec.decode(line));
+    }
+
+    @Test
+    void roundTripsQuotesAndBackslashes() {
+        assertRoundTrip(purchase("Steve \"the\" Builder", "C:\\items\\\"special\" \\u0041"));
+    }
+
+    @Test
+    void roundTripsNonAsciiAndControlCharacters() {
+        assertRoundTrip(purchase("Şükrü Çağlar", "§6Altın Elma ✦ 金 \uD83D\uDC8E"));
+        assertRoundTrip(purchase("tab\there", "line\nbreak\r\u0001<&>='"));
+    }
+
+    @Test
+    void roundTripsMissingNames() {
+        assertRoundTrip(purchase(null, null));
+    }
+
+    @Test
+    void readsLinesWrittenByTheEarlierEncoder() {
+        String line = "{\"id\":7,\"at\":1700000000000,\"uuid\":\"0f8fad5b-d9cb-469f-a165-70867728950e\","
+            + "\"player\":\"Alex \\\"A\\\"\",\"material\":\"EMERALD\",\"item\":\"Z\\u00fcmr\\u00fct\\\\1\","
+            + "\"price\":50.0,\"qty\":2,\"date\":null,\"server\":\"survival\"}";
+        ArchivedPurchase decoded = ArchiveCodec.decode(line);
+        assertEquals(7L, decoded.id());
+        assertEquals("Alex \"A\"", decoded.record().playerName());
+        assertEquals("Zümrüt\\1", decoded.record().itemName());
+        assertEquals(2, decoded.record().quantity());
+        assertEquals(null, decoded.record().purchaseDate());
+    }
+
+    @Test
+    void unparsableUuidFallsBackToPlaceholder() {
+        ArchivedPurchase decoded = ArchiveCodec.decode("{\"id\":1,\"uuid\":\"not-a-uuid\",\"qty\":1}");
+        assertEquals(new UUID(0L, 0L), decoded.record().playerUuid());
+    }
+
+    @Test
+    void rejectsMalformedLines() {
+        assertThrows(IllegalArgumentException.class, () -> ArchiveCodec.decode("{\"id\":1,\"player\":\"unterminated"));
+    }
+}
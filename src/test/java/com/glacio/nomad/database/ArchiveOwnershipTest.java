@@ -0,0 +1,58 @@
+package com.glacio.nomad.database;
+
+import com.glacio.nomad.metrics.MetricsRegistry;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveOwnershipTest {
+
+    private static final String URL = "jdbc:h2:mem:ownership;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private static DatabaseManager server(Path dataFolder, long archiveAfterDays, boolean owner) {
+        YamlConfiguration config = new YamlConfiguration();
+        config.set("database.type", "mysql");
+        config.set("database.mysql.url", URL);
+        config.set("database.mysql.driver", "org.h2.Driver");
+        config.set("database.retention.archive-after-days", archiveAfterDays);
+        config.set("database.retention.owner", owner);
+        DatabaseManager database = new DatabaseManager(dataFolder.toFile(), config, "test",
+            Logger.getLogger("ArchiveOwnershipTest"), new MetricsRegistry());
+        assertTrue(database.connect());
+        return database;
+    }
+
+    @Test
+    void onlyTheServerHoldingTheArchiveCanRebuild(@TempDir Path owner, @TempDir Path other, @TempDir Path second)
+            throws SQLException {
+        try (Connection keepAlive = DriverManager.getConnection(URL, "root", "");
+             Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("CREATE ALIAS IF NOT EXISTS GET_LOCK FOR \"" + MySqlDialectTest.class.getName() + ".getLock\"");
+            stmt.execute("CREATE ALIAS IF NOT EXISTS RELEASE_LOCK FOR \"" + MySqlDialectTest.class.getName() + ".releaseLock\"");
+
+            DatabaseManager archiving = server(owner, 30, true);
+            // Retention left off locally must not let a server rebuild without the archive
+            DatabaseManager plain = server(other, 0, false);
+            DatabaseManager secondOwner = server(second, 30, true);
+            try {
+                assertTrue(archiving.canRebuildHere());
+                assertFalse(plain.canRebuildHere());
+                assertFalse(secondOwner.canRebuildHere());
+            } finally {
+                archiving.disconnect();
+                plain.disconnect();
+                secondOwner.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.glacio.nomad.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The MySQL statements, run against H2 in MySQL mode. Public so H2 can call the lock stand-ins. */
+public class MySqlDialectTest {
+
+    private static final Logger LOGGER = Logger.getLogger("MySqlDialectTest");
+    private static final UUID PLAYER = new UUID(0L, 7L);
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final AtomicInteger LOCKS_HELD = new AtomicInteger();
+
+    private PooledConnection writer;
+
+    // Stand-ins for MySQL's advisory locks, which H2 does not have
+    public static int getLock(String name, int timeoutSeconds) {
+        return LOCKS_HELD.incrementAndGet() == 1 ? 1 : 0;
+    }
+
+    public static int releaseLock(String name) {
+        LOCKS_HELD.decrementAndGet();
+        return 1;
+    }
+
+    @BeforeEach
+    void open() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:h2:mem:nomad" + DATABASES.incrementAndGet()
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE ALIAS GET_LOCK FOR \"" + MySqlDialectTest.class.getName() + ".getLock\"");
+            stmt.execute("CREATE ALIAS RELEASE_LOCK FOR \"" + MySqlDialectTest.class.getName() + ".releaseLock\"");
+        }
+        writer = new PooledConnection(connection);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        writer.close();
+    }
+
+    private SchemaMigrator migrator() {
+        return new SchemaMigrator(writer.getConnection(), SqlDialect.MYSQL, ZoneId.of("UTC"), LOGGER);
+    }
+
+    private static PurchaseRecord purchase(String name, long at) {
+        return new PurchaseRecord(PLAYER, name, "DIAMOND", "Diamond", 10.0, 2, at, "date-" + at, "test");
+    }
+
+    @Test
+    void migratesToTheLatestVersionAndReleasesTheLock() throws SQLException {
+        SchemaMigrator migrator = migrator();
+        migrator.migrate();
+        migrator.migrate();
+
+        assertEquals(migrator.getLatestVersion(), migrator.currentVersion());
+        assertEquals(0, LOCKS_HELD.get());
+    }
+
+    @Test
+    void olderDeltasDoNotMoveLastPurchaseBack() throws SQLException {
+        migrator().migrate();
+
+        AggregateCounters newer = new AggregateCounters();
+        newer.add(purchase("Steve", 2_000L));
+        newer.flush(writer, SqlDialect.MYSQL);
+        AggregateCounters older = new AggregateCounters();
+        older.add(purchase("OldSteve", 1_000L));
+        older.flush(writer, SqlDialect.MYSQL);
+
+        try (Statement stmt = writer.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT player_name, total_purchases, total_spent, first_purchase_at, "
+                 + "first_purchase_date, last_purchase_at, last_purchase_date FROM player_stats")) {
+            rs.next();
+            assertEquals("Steve", rs.getString(1));
+            assertEquals(4L, rs.getLong(2));
+            assertEquals(20.0, rs.getDouble(3));
+            assertEquals(1_000L, rs.getLong(4));
+            assertEquals("date-1000", rs.getString(5));
+            assertEquals(2_000L, rs.getLong(6));
+            assertEquals("date-2000", rs.getString(7));
+        }
+        try (Statement stmt = writer.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT times_purchased, last_purchased, last_purchased_at FROM item_popularity")) {
+            rs.next();
+            assertEquals(4L, rs.getLong(1));
+            assertEquals("date-2000", rs.getString(2));
+            assertEquals(2_000L, rs.getLong(3));
+        }
+    }
+
+    @Test
+    void unitsPerMaterialAddUpAcrossFlushes() throws SQLException {
+        migrator().migrate();
+
+        AggregateCounters counters = new AggregateCounters();
+        counters.add(purchase("Steve", 1_000L));
+        assertEquals(Map.of("DIAMOND", 2L), counters.pendingUnits(PLAYER));
+        counters.flush(writer, SqlDialect.MYSQL);
+        counters.confirmFlush();
+        counters.add(purchase("Steve", 2_000L));
+        counters.flush(writer, SqlDialect.MYSQL);
+
+        try (Statement stmt = writer.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT units FROM player_item_stats WHERE item_material = 'DIAMOND'")) {
+            rs.next();
+            assertEquals(4L, rs.getLong(1));
+        }
+    }
+}
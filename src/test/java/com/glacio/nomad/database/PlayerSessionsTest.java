@@ -0,0 +1,52 @@
+package com.glacio.nomad.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PlayerSessionsTest {
+
+    private static final UUID PLAYER = new UUID(0L, 1L);
+
+    private static PlayerSession session(long loadedAt) {
+        return new PlayerSession(new PlayerStats("Steve", 3, 30.0, 1L, 2L), List.of(), false,
+            Map.of("DIAMOND", 3L), loadedAt);
+    }
+
+    @Test
+    void expiredSessionIsStillServedAndRefreshedOnce() {
+        PlayerSessions sessions = new PlayerSessions(10, 60_000L, 10);
+        List<UUID> refreshed = new ArrayList<>();
+        sessions.setRefresher(refreshed::add);
+        PlayerSession stale = session(System.currentTimeMillis() - 120_000L);
+        sessions.put(PLAYER, stale);
+
+        assertSame(stale, sessions.get(PLAYER));
+        assertSame(stale, sessions.get(PLAYER));
+        assertEquals(List.of(PLAYER), refreshed);
+
+        PlayerSession fresh = session(System.currentTimeMillis());
+        sessions.put(PLAYER, fresh);
+        assertSame(fresh, sessions.get(PLAYER));
+        assertEquals(1, refreshed.size());
+    }
+
+    @Test
+    void failedRefreshIsRequestedAgain() {
+        PlayerSessions sessions = new PlayerSessions(10, 60_000L, 10);
+        List<UUID> refreshed = new ArrayList<>();
+        sessions.setRefresher(refreshed::add);
+        sessions.put(PLAYER, session(System.currentTimeMillis() - 120_000L));
+
+        sessions.get(PLAYER);
+        sessions.refreshFailed(PLAYER);
+        sessions.get(PLAYER);
+        assertEquals(List.of(PLAYER, PLAYER), refreshed);
+    }
+}
@@ -0,0 +1,99 @@
+package com.glacio.nomad.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PurchaseJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger("PurchaseJournalTest");
+
+    private static PurchaseRecord purchase(int n) {
+        return new PurchaseRecord(new UUID(0L, n), "player" + n, "DIAMOND", "Diamond", 10.0, 1,
+            1_700_000_000_000L + n, "2023-11-14T22:13:20", "test");
+    }
+
+    @Test
+    void failedBatchIsRetriedUntilItIsWritten() throws InterruptedException {
+        List<PurchaseRecord> written = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch allWritten = new CountDownLatch(5);
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        PurchaseJournal journal = new PurchaseJournal(batch -> {
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new SQLTransientConnectionException("database is locked");
+            }
+            written.addAll(batch);
+            batch.forEach(record -> allWritten.countDown());
+        }, batch -> { }, 100, 10, LOGGER);
+        journal.start();
+        for (int i = 0; i < 5; i++) {
+            journal.enqueue(purchase(i));
+        }
+
+        assertTrue(allWritten.await(5, TimeUnit.SECONDS));
+        assertTrue(journal.shutdown(5_000L));
+        assertEquals(2, journal.getFailedWrites());
+        assertEquals(List.of(purchase(0), purchase(1), purchase(2), purchase(3), purchase(4)), written);
+    }
+
+    @Test
+    void failingBatchesGoToDeadLetterOnShutdown() {
+        List<PurchaseRecord> deadLetters = Collections.synchronizedList(new ArrayList<>());
+        PurchaseJournal journal = new PurchaseJournal(batch -> {
+            throw new SQLException("connection lost");
+        }, deadLetters::addAll, 100, 2, LOGGER);
+        journal.start();
+        for (int i = 0; i < 5; i++) {
+            journal.enqueue(purchase(i));
+        }
+
+        assertTrue(journal.shutdown(5_000L));
+        assertEquals(5, deadLetters.size());
+        assertTrue(deadLetters.containsAll(List.of(purchase(0), purchase(1), purchase(2), purchase(3), purchase(4))));
+    }
+
+    @Test
+    void fullQueueSpillsToDeadLetterWithoutBlocking() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<PurchaseRecord> written = Collections.synchronizedList(new ArrayList<>());
+        List<PurchaseRecord> deadLetters = Collections.synchronizedList(new ArrayList<>());
+        PurchaseJournal journal = new PurchaseJournal(batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written.addAll(batch);
+        }, deadLetters::addAll, 2, 2, LOGGER);
+        journal.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            journal.enqueue(purchase(i));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000L);
+        assertTrue(journal.getQueueDepth() <= 2);
+        assertEquals(deadLetters.size(), journal.getSpilledRecords());
+
+        release.countDown();
+        assertTrue(journal.shutdown(5_000L));
+        List<PurchaseRecord> saved = new ArrayList<>(written);
+        saved.addAll(deadLetters);
+        assertEquals(20, saved.size());
+        for (int i = 0; i < 20; i++) {
+            assertTrue(saved.contains(purchase(i)));
+        }
+    }
+}
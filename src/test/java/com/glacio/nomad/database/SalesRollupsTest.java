@@ -0,0 +1,59 @@
+package com.glacio.nomad.database;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SalesRollupsTest {
+
+    @Test
+    void rebuildPutsPurchasesInTheirLocalDayForHalfHourOffsets() throws SQLException {
+        ZoneId zone = ZoneId.of("Asia/Kolkata");
+        SalesRollups rollups = new SalesRollups(zone);
+        // 23:50 and 00:10 local time, both within the same UTC hour (18:00)
+        long beforeMidnight = ZonedDateTime.of(2024, 3, 1, 23, 50, 0, 0, zone).toInstant().toEpochMilli();
+        long afterMidnight = ZonedDateTime.of(2024, 3, 2, 0, 10, 0, 0, zone).toInstant().toEpochMilli();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("CREATE TABLE purchases (item_material TEXT, quantity INTEGER, price REAL, purchased_at INTEGER)");
+                for (String table : new String[] {"sales_hourly", "sales_daily"}) {
+                    stmt.execute("CREATE TABLE " + table + " (bucket_start INTEGER, item_material TEXT, "
+                        + "times_purchased INTEGER, total_revenue REAL, PRIMARY KEY (bucket_start, item_material))");
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO purchases (item_material, quantity, price, purchased_at) VALUES (?, ?, ?, ?)")) {
+                for (long at : new long[] {beforeMidnight, afterMidnight}) {
+                    insert.setString(1, "DIAMOND");
+                    insert.setInt(2, 1);
+                    insert.setDouble(3, 100.0);
+                    insert.setLong(4, at);
+                    insert.executeUpdate();
+                }
+            }
+
+            SalesRollups.rebuild(connection, zone);
+
+            Map<Long, Long> days = new HashMap<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT bucket_start, times_purchased FROM sales_daily WHERE item_material = 'DIAMOND'")) {
+                while (rs.next()) {
+                    days.put(rs.getLong(1), rs.getLong(2));
+                }
+            }
+            assertEquals(Map.of(rollups.dayStart(beforeMidnight), 1L, rollups.dayStart(afterMidnight), 1L), days);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.glacio.nomad.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtomicFileWriterTest {
+
+    @Test
+    void keepsSavingAfterAFailedWrite(@TempDir Path dir) throws IOException, InterruptedException {
+        // A regular file where the parent directory should be makes every write fail
+        Path blocker = dir.resolve("state");
+        Files.writeString(blocker, "not a directory");
+        Path target = blocker.resolve("rotation-state.yml");
+        AtomicFileWriter writer = new AtomicFileWriter(target, "AtomicFileWriterTest", Logger.getLogger("AtomicFileWriterTest"));
+
+        writer.submit("first");
+        Thread.sleep(200L);
+        Files.delete(blocker);
+        writer.submit("second");
+
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!Files.exists(target) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50L);
+        }
+        assertTrue(Files.exists(target));
+        assertEquals("second", Files.readString(target, StandardCharsets.UTF_8));
+        writer.close();
+    }
+
+    @Test
+    void rendersSuppliedContentOnTheWriterThread(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("item-pool.yml");
+        AtomicFileWriter writer = new AtomicFileWriter(target, "AtomicFileWriterTest", Logger.getLogger("AtomicFileWriterTest"));
+        AtomicReference<String> renderedOn = new AtomicReference<>();
+
+        writer.submit(() -> {
+            renderedOn.set(Thread.currentThread().getName());
+            return "entries: []";
+        });
+        writer.close();
+
+        assertEquals("entries: []", Files.readString(target, StandardCharsets.UTF_8));
+        assertEquals("AtomicFileWriterTest", renderedOn.get());
+    }
+}